@@ -52,8 +52,10 @@ public interface ISettings {
     /**
      * Returns a map of the currently maintenance-whitelisted players as their uuid mapped to their saved name.
      * Note that the names might be incorrect/outdated.
+     * <p>
+     * The returned map is an unmodifiable snapshot, later changes to the whitelist are not reflected in it.
      *
-     * @return map of uuids of whitelisted players with their given names
+     * @return unmodifiable map of uuids of whitelisted players with their given names
      */
     Map<UUID, String> getWhitelistedPlayers();
 
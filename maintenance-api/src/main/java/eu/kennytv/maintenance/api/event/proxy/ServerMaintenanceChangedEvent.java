@@ -23,6 +23,8 @@ import eu.kennytv.maintenance.api.proxy.Server;
 
 /**
  * Notification event fired when maintenance mode has been changed on a proxied server.
+ * <br>
+ * Changes of multiple servers at once fire this for each server, followed by a single {@link ServersMaintenanceChangedEvent}.
  *
  * @author KennyTV
  * @since 3.0.1
@@ -0,0 +1,62 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.api.event.proxy;
+
+import eu.kennytv.maintenance.api.event.manager.MaintenanceEvent;
+import eu.kennytv.maintenance.api.proxy.Server;
+
+import java.util.Collection;
+
+/**
+ * Notification event fired when maintenance mode has been changed on multiple proxied servers at once,
+ * e.g. via {@link eu.kennytv.maintenance.api.proxy.IMaintenanceProxy#setMaintenanceToServers(Collection, boolean)}.
+ * <br>
+ * A {@link ServerMaintenanceChangedEvent} is still fired for each of the servers before this event.
+ *
+ * @author KennyTV
+ * @since 3.0.7
+ */
+public final class ServersMaintenanceChangedEvent implements MaintenanceEvent {
+    private final Collection<Server> servers;
+    private final boolean maintenance;
+
+    public ServersMaintenanceChangedEvent(final Collection<Server> servers, final boolean maintenance) {
+        this.servers = servers;
+        this.maintenance = maintenance;
+    }
+
+    /**
+     * Returns wrapped server objects for the servers.
+     * <br>
+     * These do not necessarily have to be existing servers:
+     * If maintenance is disabled on *previously* registered servers, see {@link Server#isRegisteredServer()}.
+     *
+     * @return unmodifiable collection of wrapped server objects for the changed servers
+     */
+    public Collection<Server> getServers() {
+        return servers;
+    }
+
+    /**
+     * @return true if maintenance has been enabled on the servers, false otherwise
+     */
+    public boolean isMaintenance() {
+        return maintenance;
+    }
+}
@@ -21,6 +21,7 @@ package eu.kennytv.maintenance.api.proxy;
 import eu.kennytv.maintenance.api.IMaintenance;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -41,6 +42,20 @@ public interface IMaintenanceProxy extends IMaintenance {
      */
     boolean setMaintenanceToServer(Server server, boolean maintenance);
 
+    /**
+     * Enables/disables maintenance mode on multiple proxied servers at once.
+     * Other than calling {@link #setMaintenanceToServer(Server, boolean)} for each server,
+     * the changes are saved in a single database transaction or config save.
+     * A {@link eu.kennytv.maintenance.api.event.proxy.ServerMaintenanceChangedEvent} is fired for each changed server,
+     * followed by a single {@link eu.kennytv.maintenance.api.event.proxy.ServersMaintenanceChangedEvent}.
+     *
+     * @param servers     servers to apply the maintenance status to
+     * @param maintenance true to enable, false to disable maintenance mode
+     * @return servers the mode was changed on, empty if it was already set on all of them
+     * @see #getServer(String)
+     */
+    Collection<Server> setMaintenanceToServers(Collection<Server> servers, boolean maintenance);
+
     /**
      * @param server server to check
      * @return true if maintenance is currently enabled on the proxied server
@@ -19,6 +19,8 @@
 package eu.kennytv.maintenance.bungee;
 
 import eu.kennytv.maintenance.api.bungee.MaintenanceBungeeAPI;
+import eu.kennytv.maintenance.api.event.MaintenanceReloadedEvent;
+import eu.kennytv.maintenance.api.event.manager.EventListener;
 import eu.kennytv.maintenance.api.proxy.IMaintenanceProxy;
 import eu.kennytv.maintenance.api.proxy.Server;
 import eu.kennytv.maintenance.bungee.command.MaintenanceBungeeCommand;
@@ -29,33 +31,44 @@ import eu.kennytv.maintenance.bungee.metrics.MetricsLite;
 import eu.kennytv.maintenance.bungee.util.BungeeSenderInfo;
 import eu.kennytv.maintenance.bungee.util.BungeeServer;
 import eu.kennytv.maintenance.bungee.util.BungeeTask;
+import eu.kennytv.maintenance.bungee.util.ComponentUtil;
 import eu.kennytv.maintenance.core.dump.PluginDump;
 import eu.kennytv.maintenance.core.hook.ServerListPlusHook;
+import eu.kennytv.maintenance.core.icon.FaviconRotation;
+import eu.kennytv.maintenance.core.icon.MaintenanceIcon;
 import eu.kennytv.maintenance.core.proxy.MaintenanceProxyPlugin;
 import eu.kennytv.maintenance.core.proxy.SettingsProxy;
+import eu.kennytv.maintenance.core.text.ComponentCache;
 import eu.kennytv.maintenance.core.util.SenderInfo;
 import eu.kennytv.maintenance.core.util.ServerType;
 import eu.kennytv.maintenance.core.util.Task;
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.Favicon;
 import net.md_5.bungee.api.ProxyServer;
+import net.md_5.bungee.api.chat.BaseComponent;
 import net.md_5.bungee.api.chat.ClickEvent;
 import net.md_5.bungee.api.chat.ComponentBuilder;
 import net.md_5.bungee.api.chat.HoverEvent;
 import net.md_5.bungee.api.chat.TextComponent;
+import net.md_5.bungee.api.config.ListenerInfo;
 import net.md_5.bungee.api.config.ServerInfo;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.plugin.Plugin;
 import net.md_5.bungee.api.plugin.PluginManager;
 import org.jetbrains.annotations.Nullable;
 
-import javax.imageio.ImageIO;
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -66,7 +79,9 @@ import java.util.stream.Collectors;
  */
 public final class MaintenanceBungeePlugin extends MaintenanceProxyPlugin {
     private final MaintenanceBungeeBase plugin;
-    private Favicon favicon;
+    private final ComponentCache<BaseComponent> componentCache = new ComponentCache<>(ComponentUtil::toComponent);
+    private final FaviconRotation<Favicon> favicons = new FaviconRotation<>();
+    private volatile Map<String, Favicon> serverFavicons = Collections.emptyMap();
 
     MaintenanceBungeePlugin(final MaintenanceBungeeBase plugin) {
         super(plugin.getDescription().getVersion(), ServerType.BUNGEE);
@@ -74,6 +89,12 @@ public final class MaintenanceBungeePlugin extends MaintenanceProxyPlugin {
 
         settingsProxy = new SettingsProxy(this);
         settings = settingsProxy;
+        eventManager.registerListener(new EventListener<MaintenanceReloadedEvent>() {
+            @Override
+            public void onEvent(final MaintenanceReloadedEvent event) {
+                componentCache.invalidate();
+            }
+        }, MaintenanceReloadedEvent.class);
 
         sendEnableMessage();
 
@@ -120,9 +141,10 @@ public final class MaintenanceBungeePlugin extends MaintenanceProxyPlugin {
 
     @Override
     protected void kickPlayersFromProxy() {
+        final BaseComponent kickMessage = getComponent(settingsProxy.getKickMessage());
         for (final ProxiedPlayer p : getProxy().getPlayers()) {
             if (!hasPermission(p, "bypass") && !settingsProxy.isWhitelisted(p.getUniqueId())) {
-                p.disconnect(settingsProxy.getKickMessage());
+                p.disconnect(kickMessage);
             }
         }
     }
@@ -132,16 +154,18 @@ public final class MaintenanceBungeePlugin extends MaintenanceProxyPlugin {
         // Kick players from a proxied server
         final ServerInfo fallbackServer = fallback != null ? ((BungeeServer) fallback).getServer() : null;
         final boolean checkForFallback = fallbackServer != null && !isMaintenance(fallback);
+        final String activatedMessage = settingsProxy.getMessage("singleMaintenanceActivated").replace("%SERVER%", server.getName());
+        final BaseComponent kickMessage = getComponent(settingsProxy.getFullServerKickMessage(server.getName()));
         for (final ProxiedPlayer player : ((BungeeServer) server).getServer().getPlayers()) {
             if (!hasPermission(player, "bypass") && !settingsProxy.isWhitelisted(player.getUniqueId())) {
                 if (checkForFallback && fallbackServer.canAccess(player)) {
-                    player.sendMessage(settingsProxy.getMessage("singleMaintenanceActivated").replace("%SERVER%", server.getName()));
+                    player.sendMessage(activatedMessage);
                     player.connect(fallbackServer);
                 } else {
-                    player.disconnect(settingsProxy.getFullServerKickMessage(server.getName()));
+                    player.disconnect(kickMessage);
                 }
             } else {
-                player.sendMessage(settingsProxy.getMessage("singleMaintenanceActivated").replace("%SERVER%", server.getName()));
+                player.sendMessage(activatedMessage);
             }
         }
     }
@@ -151,15 +175,17 @@ public final class MaintenanceBungeePlugin extends MaintenanceProxyPlugin {
         // Kick all players to a single waiting server
         final ServerInfo serverInfo = ((BungeeServer) server).getServer();
         // Notifications done in global method
+        final String sentMessage = settingsProxy.getMessage("sentToWaitingServer").replace("%SERVER%", server.getName());
+        final BaseComponent kickMessage = getComponent(settingsProxy.getKickMessage());
         for (final ProxiedPlayer player : getProxy().getPlayers()) {
             if (hasPermission(player, "bypass") || settingsProxy.isWhitelisted(player.getUniqueId())) continue;
             if (player.getServer() != null && player.getServer().getInfo().getName().equals(serverInfo.getName()))
                 continue;
             if (serverInfo.canAccess(player) && !isMaintenance(serverInfo)) {
-                player.sendMessage(settingsProxy.getMessage("sentToWaitingServer").replace("%SERVER%", server.getName()));
+                player.sendMessage(sentMessage);
                 player.connect(serverInfo);
             } else {
-                player.disconnect(settingsProxy.getKickMessage());
+                player.disconnect(kickMessage);
             }
         }
     }
@@ -169,6 +195,36 @@ public final class MaintenanceBungeePlugin extends MaintenanceProxyPlugin {
         return new BungeeTask(getProxy().getScheduler().schedule(plugin, runnable, 0, 1, TimeUnit.SECONDS).getId());
     }
 
+    @Override
+    public Collection<String> getServerNames() {
+        return getProxy().getServers().keySet();
+    }
+
+    @Override
+    protected CompletableFuture<Integer> pingServer(final String server) {
+        final CompletableFuture<Integer> future = new CompletableFuture<>();
+        final ServerInfo serverInfo = getProxy().getServerInfo(server);
+        if (serverInfo == null) {
+            future.completeExceptionally(new IllegalArgumentException("Unknown server " + server));
+            return future;
+        }
+
+        serverInfo.ping((ping, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+            } else {
+                future.complete(ping.getPlayers() != null ? ping.getPlayers().getOnline() : 0);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public Task scheduleAsyncRepeatingTask(final Runnable runnable, final long interval, final TimeUnit unit) {
+        // Bungee's scheduler runs each task in its own thread
+        return new BungeeTask(getProxy().getScheduler().schedule(plugin, runnable, 0, interval, unit).getId());
+    }
+
     @Override
     @Nullable
     public Server getServer(final String server) {
@@ -255,8 +311,33 @@ public final class MaintenanceBungeePlugin extends MaintenanceProxyPlugin {
     }
 
     @Override
-    protected void loadIcon(final File file) throws IOException {
-        favicon = Favicon.create(ImageIO.read(file));
+    protected void loadIcons(final List<MaintenanceIcon> icons) {
+        final List<Favicon> list = new ArrayList<>(icons.size());
+        for (final MaintenanceIcon icon : icons) {
+            // Already encoded and of the right size, no need to encode it again
+            list.add(Favicon.create(icon.getEncoded()));
+        }
+        favicons.set(list);
+    }
+
+    @Override
+    protected void loadServerIcons(final Map<String, MaintenanceIcon> icons) {
+        final Map<String, Favicon> map = new HashMap<>();
+        for (final Map.Entry<String, MaintenanceIcon> entry : icons.entrySet()) {
+            map.put(entry.getKey(), Favicon.create(entry.getValue().getEncoded()));
+        }
+        serverFavicons = map;
+    }
+
+    @Override
+    protected Map<String, String> loadForcedHosts() {
+        final Map<String, String> forcedHosts = new HashMap<>();
+        for (final ListenerInfo listener : getProxy().getConfig().getListeners()) {
+            for (final Map.Entry<String, String> entry : listener.getForcedHosts().entrySet()) {
+                forcedHosts.put(entry.getKey().toLowerCase(Locale.ROOT), entry.getValue());
+            }
+        }
+        return forcedHosts;
     }
 
     public boolean hasPermission(final CommandSender sender, final String permission) {
@@ -267,7 +348,29 @@ public final class MaintenanceBungeePlugin extends MaintenanceProxyPlugin {
         return plugin.getProxy();
     }
 
-    public Favicon getFavicon() {
-        return favicon;
+    /**
+     * @param server proxied server the ping is for, or null
+     * @return the server's own favicon if set, otherwise the next maintenance favicon
+     */
+    @Nullable
+    public Favicon getFavicon(@Nullable final String server) {
+        if (server != null) {
+            final Favicon favicon = serverFavicons.get(server);
+            if (favicon != null) {
+                return favicon;
+            }
+        }
+        return favicons.next();
+    }
+
+    /**
+     * Returns the cached component of the legacy message, created only once until the next reload.
+     * Should only be used for messages that are sent often and rarely change, like kick messages.
+     *
+     * @param s legacy message
+     * @return cached component, must not be modified
+     */
+    public BaseComponent getComponent(final String s) {
+        return componentCache.get(s);
     }
 }
\ No newline at end of file
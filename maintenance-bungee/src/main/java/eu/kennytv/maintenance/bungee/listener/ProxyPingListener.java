@@ -19,15 +19,23 @@
 package eu.kennytv.maintenance.bungee.listener;
 
 import eu.kennytv.maintenance.bungee.MaintenanceBungeePlugin;
+import eu.kennytv.maintenance.bungee.util.ComponentUtil;
+import eu.kennytv.maintenance.core.PingResponse;
 import eu.kennytv.maintenance.core.proxy.SettingsProxy;
+import eu.kennytv.maintenance.core.proxy.util.PingGuard;
+import net.md_5.bungee.api.Favicon;
 import net.md_5.bungee.api.ServerPing;
 import net.md_5.bungee.api.event.ProxyPingEvent;
 import net.md_5.bungee.api.plugin.Listener;
 import net.md_5.bungee.event.EventHandler;
 
+import java.net.InetSocketAddress;
+
 public final class ProxyPingListener implements Listener {
     private final MaintenanceBungeePlugin plugin;
     private final SettingsProxy settings;
+    // Only the maintenance fields, applied to the ping of each limited client
+    private volatile PingResponse lastResponse;
 
     public ProxyPingListener(final MaintenanceBungeePlugin plugin, final SettingsProxy settings) {
         this.plugin = plugin;
@@ -36,31 +44,58 @@ public final class ProxyPingListener implements Listener {
 
     @EventHandler(priority = 80)
     public void proxyPing(final ProxyPingEvent event) {
-        if (!settings.isMaintenance() || !settings.isEnablePingMessages()) return;
+        final PingGuard pingGuard = settings.getPingGuard();
+        if (pingGuard != null && event.getConnection().getSocketAddress() instanceof InetSocketAddress
+                && !pingGuard.tryAcquire(((InetSocketAddress) event.getConnection().getSocketAddress()).getAddress())) {
+            if (pingGuard.isDropLimited()) {
+                event.getConnection().disconnect();
+                return;
+            }
+
+            final PingResponse lastResponse = this.lastResponse;
+            if (lastResponse != null) {
+                applyResponse(event.getResponse(), lastResponse);
+            }
+            return;
+        }
+
+        final InetSocketAddress virtualHost = event.getConnection().getVirtualHost();
+        final PingResponse response = plugin.getPingResponse(virtualHost != null ? virtualHost.getHostString() : null);
+        if (pingGuard != null) {
+            lastResponse = response;
+        }
+        if (response != null) {
+            applyResponse(event.getResponse(), response);
+        }
+    }
 
-        final ServerPing ping = event.getResponse();
+    private void applyResponse(final ServerPing ping, final PingResponse response) {
         ServerPing.Players players = ping.getPlayers();
         if (players == null) {
             ping.setPlayers(players = new ServerPing.Players(0, 0,  null));
         }
 
-        if (settings.hasCustomPlayerCountMessage()) {
-            ping.setVersion(new ServerPing.Protocol(settings.getPlayerCountMessage()
-                    .replace("%ONLINE%", Integer.toString(players.getOnline()))
-                    .replace("%MAX%", Integer.toString(players.getMax())), 1));
+        if (response.getVersionName() != null) {
+            ping.setVersion(new ServerPing.Protocol(response.getVersionName(), 1));
         }
 
-        ping.setDescription(settings.getRandomPingMessage());
+        ping.setDescriptionComponent(response.getMotd(ComponentUtil::fromLegacy));
+        players.setSample(response.getPlatformData(ProxyPingListener::createSamplePlayers));
 
-        final String[] split = settings.getPlayerCountHoverMessage().split("\n");
-        final ServerPing.PlayerInfo[] samplePlayers = new ServerPing.PlayerInfo[split.length];
-        for (int i = 0; i < split.length; i++) {
-            samplePlayers[i] = new ServerPing.PlayerInfo(split[i], "");
+        if (settings.hasCustomIcon()) {
+            final Favicon favicon = plugin.getFavicon(response.getServer());
+            if (favicon != null) {
+                ping.setFavicon(favicon);
+            }
         }
-        players.setSample(samplePlayers);
+    }
 
-        if (settings.hasCustomIcon() && plugin.getFavicon() != null) {
-            ping.setFavicon(plugin.getFavicon());
+    private static ServerPing.PlayerInfo[] createSamplePlayers(final PingResponse response) {
+        final String[] lines = response.getHoverLines();
+        final ServerPing.PlayerInfo[] samplePlayers = new ServerPing.PlayerInfo[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            samplePlayers[i] = new ServerPing.PlayerInfo(lines[i], "");
         }
+        return samplePlayers;
     }
 }
@@ -66,7 +66,7 @@ public final class ServerConnectListener extends ProxyJoinListenerBase implement
             }
 
             event.setCancelled(true);
-            event.getPlayer().disconnect(settings.getKickMessage());
+            event.getPlayer().disconnect(plugin.getComponent(settings.getKickMessage()));
             if (settings.isJoinNotifications()) {
                 broadcastJoinNotification(sender.getName());
             }
@@ -91,7 +91,7 @@ public final class ServerConnectListener extends ProxyJoinListenerBase implement
 
             // Player has no server to connect to
             if (player.getServer() == null) {
-                player.disconnect(settings.getKickMessage());
+                player.disconnect(plugin.getComponent(settings.getKickMessage()));
             }
         } else if (connectResult.getTarget() != null) {
             event.setTarget(((BungeeServer) connectResult.getTarget()).getServer());
@@ -109,7 +109,7 @@ public final class ServerConnectListener extends ProxyJoinListenerBase implement
     }
 
     private void sendJoinMessage(final Iterable<ProxiedPlayer> players, final String name) {
-        final BaseComponent[] message = TextComponent.fromLegacyText(settings.getMessage("joinNotification").replace("%PLAYER%", name));
+        final BaseComponent[] message = TextComponent.fromLegacyText(settings.getJoinNotification(name));
         for (final ProxiedPlayer player : players) {
             if (plugin.hasPermission(player, "joinnotification")) {
                 player.sendMessage(message);
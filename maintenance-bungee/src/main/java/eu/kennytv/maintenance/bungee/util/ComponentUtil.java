@@ -0,0 +1,69 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.bungee.util;
+
+import eu.kennytv.maintenance.core.text.RichText;
+import eu.kennytv.maintenance.core.text.TextSegment;
+import net.md_5.bungee.api.ChatColor;
+import net.md_5.bungee.api.chat.BaseComponent;
+import net.md_5.bungee.api.chat.TextComponent;
+
+import java.awt.Color;
+
+public final class ComponentUtil {
+
+    private ComponentUtil() {
+    }
+
+    /**
+     * @param legacy message with § color codes, hex colors and gradients
+     * @return component of the message
+     */
+    public static BaseComponent fromLegacy(final String legacy) {
+        return toComponent(RichText.parse(legacy));
+    }
+
+    public static BaseComponent toComponent(final RichText text) {
+        final BaseComponent[] children = new BaseComponent[text.getSegments().size()];
+        for (int i = 0; i < children.length; i++) {
+            final TextSegment segment = text.getSegments().get(i);
+            final TextComponent child = new TextComponent(segment.getText());
+            if (segment.hasColor()) {
+                child.setColor(segment.isLegacyColor() ? ChatColor.getByChar(segment.getLegacyColor()) : ChatColor.of(new Color(segment.getColor())));
+            }
+            if (segment.hasDecoration(TextSegment.BOLD)) {
+                child.setBold(true);
+            }
+            if (segment.hasDecoration(TextSegment.ITALIC)) {
+                child.setItalic(true);
+            }
+            if (segment.hasDecoration(TextSegment.UNDERLINED)) {
+                child.setUnderlined(true);
+            }
+            if (segment.hasDecoration(TextSegment.STRIKETHROUGH)) {
+                child.setStrikethrough(true);
+            }
+            if (segment.hasDecoration(TextSegment.OBFUSCATED)) {
+                child.setObfuscated(true);
+            }
+            children[i] = child;
+        }
+        return new TextComponent(children);
+    }
+}
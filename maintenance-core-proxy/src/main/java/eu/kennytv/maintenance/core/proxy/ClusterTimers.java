@@ -0,0 +1,253 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy;
+
+import eu.kennytv.maintenance.core.proxy.mysql.TimerLeases;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes sure each timer is only run by a single proxy of the network, while the others can take it over if that proxy stops.
+ * <p>
+ * Only the owner of a timer ticks and broadcasts it. Once it has run out, the owner first removes it from the database
+ * and only applies the result if that succeeded, so that maintenance is never changed twice.
+ */
+final class ClusterTimers {
+    static final String GLOBAL = "global";
+    private static final String SERVER_PREFIX = "server:";
+    private final MaintenanceProxyPlugin plugin;
+    private final TimerLeases leases;
+    // Keeps writes in order, e.g. removing a finished scheduled timer before creating its endtimer
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Maintenance Timer Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Timers known to the other proxies, only these are stopped when missing in the database
+    private final Set<String> registeredTimers = ConcurrentHashMap.newKeySet();
+    // Timers that could not be written yet, they keep running locally and are written again on every sync
+    private final Map<String, PendingTimer> pendingTimers = new ConcurrentHashMap<>();
+    // Timers stopped locally that could not be removed from the database yet, removed again on every sync
+    private final Set<String> pendingDeletes = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> networkTimers = new HashSet<>();
+    // Guarded by this, used to not act on timers loaded before local changes were written
+    private int pendingWrites;
+    private long writeGeneration;
+
+    ClusterTimers(final MaintenanceProxyPlugin plugin, final TimerLeases leases) {
+        this.plugin = plugin;
+        this.leases = leases;
+    }
+
+    static String serverTimerId(final String server) {
+        return SERVER_PREFIX + server;
+    }
+
+    /**
+     * @param id timer id
+     * @return proxied server of the timer, or null for the global timer
+     */
+    @Nullable
+    static String getServer(final String id) {
+        return id.startsWith(SERVER_PREFIX) ? id.substring(SERVER_PREFIX.length()) : null;
+    }
+
+    void started(final String id, final boolean enable, final int seconds, final int maintenanceDuration) {
+        final PendingTimer timer = new PendingTimer(enable, System.currentTimeMillis() + seconds * 1000L, maintenanceDuration);
+        registeredTimers.remove(id);
+        pendingDeletes.remove(id);
+        pendingTimers.put(id, timer);
+        write(() -> create(id, timer));
+    }
+
+    void cancelled(final String id) {
+        registeredTimers.remove(id);
+        pendingTimers.remove(id);
+        pendingDeletes.add(id);
+        write(() -> delete(id));
+    }
+
+    /**
+     * Applies the result of the run out timer if this proxy still owns it, else stops the local timer.
+     *
+     * @param id     timer id
+     * @param finish action applying the result of the timer
+     */
+    void complete(final String id, final Runnable finish) {
+        // Always on the writer, so that the timer cannot be written at the same time
+        write(() -> {
+            if (pendingTimers.remove(id) != null || !registeredTimers.remove(id)) {
+                // Never written or started before the database was connected, so no other proxy knows about it
+                finish.run();
+                return;
+            }
+
+            final TimerLeases.Completion completion = leases.complete(id);
+            if (completion == TimerLeases.Completion.NOT_OWNED) {
+                plugin.getLogger().info("Timer " + id + " is owned by another proxy, it will be finished there.");
+                plugin.cancelTimerLocally(id);
+                return;
+            }
+
+            if (completion == TimerLeases.Completion.FAILED) {
+                // Remove it once the database is back, so that it is not continued by this or another proxy
+                plugin.getLogger().warning("Unable to remove timer " + id + " from the database, finishing it on this proxy.");
+                pendingDeletes.add(id);
+            }
+            finish.run();
+        });
+    }
+
+    /**
+     * Writes the timer if it has not been replaced or cancelled in the meantime. Only run on the writer.
+     */
+    private void create(final String id, final PendingTimer timer) {
+        if (pendingTimers.get(id) != timer) return;
+
+        final long millis = Math.max(0, timer.deadline - System.currentTimeMillis());
+        if (!leases.create(id, timer.enable, millis, timer.maintenanceDuration)) {
+            plugin.getLogger().warning("Unable to save timer " + id + " in the database, it keeps running on this proxy.");
+            return;
+        }
+
+        if (pendingTimers.remove(id, timer)) {
+            registeredTimers.add(id);
+        }
+    }
+
+    /**
+     * Removes the timer unless it has been started again in the meantime. Only run on the writer.
+     */
+    private void delete(final String id) {
+        if (pendingDeletes.contains(id) && leases.delete(id)) {
+            pendingDeletes.remove(id);
+        }
+    }
+
+    /**
+     * @param id timer id
+     * @return true if any proxy currently runs the timer
+     */
+    boolean isRunning(final String id) {
+        return networkTimers.contains(id);
+    }
+
+    private void write(final Runnable write) {
+        synchronized (this) {
+            pendingWrites++;
+        }
+        writer.execute(() -> {
+            try {
+                write.run();
+            } finally {
+                synchronized (this) {
+                    pendingWrites--;
+                    writeGeneration++;
+                }
+            }
+        });
+    }
+
+    /**
+     * Renews this proxy's leases, takes over timers of stopped proxies and stops local timers owned by others.
+     * Only run on the async timer task.
+     */
+    void sync() {
+        for (final Map.Entry<String, PendingTimer> entry : pendingTimers.entrySet()) {
+            write(() -> create(entry.getKey(), entry.getValue()));
+        }
+        for (final String id : pendingDeletes) {
+            write(() -> delete(id));
+        }
+
+        final long generation;
+        synchronized (this) {
+            generation = writeGeneration;
+        }
+
+        final List<TimerLeases.Timer> timers = leases.claim();
+        if (timers == null) return;
+
+        synchronized (this) {
+            if (pendingWrites != 0 || generation != writeGeneration) return;
+        }
+
+        final Set<String> timerIds = new HashSet<>();
+        for (final TimerLeases.Timer timer : timers) {
+            // Already stopped on this proxy
+            if (pendingDeletes.contains(timer.getId())) continue;
+
+            timerIds.add(timer.getId());
+            final boolean runningLocally = plugin.isTimerRunningLocally(timer.getId());
+            if (timer.isOwned()) {
+                registeredTimers.add(timer.getId());
+                if (!runningLocally) {
+                    plugin.takeOverTimer(timer);
+                }
+            } else if (runningLocally) {
+                registeredTimers.remove(timer.getId());
+                plugin.cancelTimerLocally(timer.getId());
+            }
+        }
+
+        // Aborted or finished on another proxy
+        final Collection<String> localTimers = plugin.getLocalTimerIds();
+        for (final String id : localTimers) {
+            if (!timerIds.contains(id) && registeredTimers.remove(id)) {
+                plugin.cancelTimerLocally(id);
+            }
+        }
+        networkTimers = timerIds;
+    }
+
+    /**
+     * Writes all pending changes and hands this proxy's timers over to the other proxies, blocking until it is done.
+     */
+    void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        leases.release();
+    }
+
+    private static final class PendingTimer {
+        private final boolean enable;
+        private final long deadline;
+        private final int maintenanceDuration;
+
+        private PendingTimer(final boolean enable, final long deadline, final int maintenanceDuration) {
+            this.enable = enable;
+            this.deadline = deadline;
+            this.maintenanceDuration = maintenanceDuration;
+        }
+    }
+}
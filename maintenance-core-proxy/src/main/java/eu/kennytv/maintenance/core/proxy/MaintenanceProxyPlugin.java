@@ -18,11 +18,17 @@
 
 package eu.kennytv.maintenance.core.proxy;
 
+import eu.kennytv.maintenance.api.event.MaintenanceReloadedEvent;
+import eu.kennytv.maintenance.api.event.manager.EventListener;
 import eu.kennytv.maintenance.api.event.proxy.ServerMaintenanceChangedEvent;
+import eu.kennytv.maintenance.api.event.proxy.ServersMaintenanceChangedEvent;
 import eu.kennytv.maintenance.api.proxy.IMaintenanceProxy;
 import eu.kennytv.maintenance.api.proxy.Server;
 import eu.kennytv.maintenance.core.MaintenancePlugin;
+import eu.kennytv.maintenance.core.PingResponse;
 import eu.kennytv.maintenance.core.proxy.command.MaintenanceProxyCommand;
+import eu.kennytv.maintenance.core.proxy.mysql.NetworkPlayerCount;
+import eu.kennytv.maintenance.core.proxy.mysql.TimerLeases;
 import eu.kennytv.maintenance.core.proxy.runnable.SingleMaintenanceRunnable;
 import eu.kennytv.maintenance.core.proxy.runnable.SingleMaintenanceScheduleRunnable;
 import eu.kennytv.maintenance.core.runnable.MaintenanceRunnableBase;
@@ -32,11 +38,16 @@ import eu.kennytv.maintenance.core.util.Task;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -44,16 +55,32 @@ import java.util.concurrent.TimeUnit;
  * @since 3.0
  */
 public abstract class MaintenanceProxyPlugin extends MaintenancePlugin implements IMaintenanceProxy {
-    private final Map<String, Task> serverTasks = new HashMap<>();
+    // Changed by commands, timer tasks and the cluster timer sync
+    private final Map<String, Task> serverTasks = new ConcurrentHashMap<>();
     protected SettingsProxy settingsProxy;
+    private volatile Map<String, String> forcedHosts = Collections.emptyMap();
 
     protected MaintenanceProxyPlugin(final String version, final ServerType serverType) {
         super(version, serverType);
+        // The proxy's forced hosts might have been changed as well
+        eventManager.registerListener(new EventListener<MaintenanceReloadedEvent>() {
+            @Override
+            public void onEvent(final MaintenanceReloadedEvent event) {
+                forcedHosts = loadForcedHosts();
+            }
+        }, MaintenanceReloadedEvent.class);
+
+        placeholders.registerArgument("SERVER_ONLINE", (builder, context, server) -> builder.append(settingsProxy.getServerOnlinePlayers(server)));
+        placeholders.registerArgument("SERVER_STATUS", (builder, context, server) -> builder.append(settingsProxy.getServerStatus(server)));
     }
 
     @Override
     public void disable() {
         super.disable();
+        settingsProxy.closeSyncBackend();
+        settingsProxy.cancelMySQLRefresh();
+        settingsProxy.closeClusterTimers();
+        settingsProxy.closeNetworkPlayerCount();
         if (settingsProxy.getMySQL() != null) {
             settingsProxy.getMySQL().close();
         }
@@ -83,29 +110,80 @@ public abstract class MaintenanceProxyPlugin extends MaintenancePlugin implement
         return true;
     }
 
+    @Override
+    public Collection<Server> setMaintenanceToServers(final Collection<Server> servers, final boolean maintenance) {
+        final Map<String, Server> serversByName = new LinkedHashMap<>();
+        for (final Server server : servers) {
+            serversByName.put(server.getName(), server);
+        }
+
+        final List<String> changedServerNames = settingsProxy.setMaintenanceToServers(serversByName.keySet(), maintenance);
+        if (changedServerNames.isEmpty()) return Collections.emptyList();
+
+        final List<Server> changedServers = new ArrayList<>(changedServerNames.size());
+        for (final String serverName : changedServerNames) {
+            changedServers.add(serversByName.get(serverName));
+        }
+        serverActions(changedServers, maintenance);
+        return Collections.unmodifiableList(changedServers);
+    }
+
     public void serverActions(final Server server, final boolean maintenance) {
         if (server == null) return;
 
+        // Server status placeholders may have changed
+        settingsProxy.invalidatePingResponse();
+
         // Skip to the even fire for dummy servers
         if (server.isRegisteredServer()) {
-            if (maintenance) {
-                final Server fallback = settingsProxy.getFallbackServer();
-                if (fallback == null) {
-                    if (server.hasPlayers()) {
-                        getLogger().warning("The set fallback could not be found! Instead kicking players from that server off the network!");
-                    }
-                }
-                kickPlayers(server, fallback);
-            } else {
-                server.broadcast(settingsProxy.getMessage("singleMaintenanceDeactivated").replace("%SERVER%", server.getName()));
-            }
-
+            movePlayers(server, maintenance, maintenance ? settingsProxy.getFallbackServer() : null);
             cancelSingleTask(server);
         }
 
         eventManager.callEvent(new ServerMaintenanceChangedEvent(server, maintenance));
     }
 
+    /**
+     * Runs the actions for multiple changed servers, moving their players concurrently.
+     * Fires the event of each server, followed by a single event for all of them.
+     *
+     * @param servers     changed servers
+     * @param maintenance new maintenance state of the servers
+     */
+    public void serverActions(final Collection<Server> servers, final boolean maintenance) {
+        if (servers.isEmpty()) return;
+
+        settingsProxy.invalidatePingResponse();
+
+        // All of the servers are already under maintenance, so the fallback only has to be looked up once
+        final Server fallback = maintenance ? settingsProxy.getFallbackServer() : null;
+        for (final Server server : servers) {
+            if (!server.isRegisteredServer()) continue;
+
+            async(() -> movePlayers(server, maintenance, fallback));
+            cancelSingleTask(server);
+        }
+
+        // Listeners of the single server event would otherwise miss these changes
+        for (final Server server : servers) {
+            eventManager.callEvent(new ServerMaintenanceChangedEvent(server, maintenance));
+        }
+        eventManager.callEvent(new ServersMaintenanceChangedEvent(Collections.unmodifiableCollection(servers), maintenance));
+    }
+
+    private void movePlayers(final Server server, final boolean maintenance, @Nullable final Server fallback) {
+        if (maintenance) {
+            if (fallback == null) {
+                if (server.hasPlayers()) {
+                    getLogger().warning("The set fallback could not be found! Instead kicking players from that server off the network!");
+                }
+            }
+            kickPlayers(server, fallback);
+        } else {
+            server.broadcast(settingsProxy.getMessage("singleMaintenanceDeactivated").replace("%SERVER%", server.getName()));
+        }
+    }
+
     @Override
     public boolean isServerTaskRunning(final Server server) {
         return serverTasks.containsKey(server.getName());
@@ -113,19 +191,27 @@ public abstract class MaintenanceProxyPlugin extends MaintenancePlugin implement
 
     @Override
     public Set<String> getMaintenanceServers() {
-        return Collections.unmodifiableSet(settingsProxy.getMaintenanceServers());
+        return settingsProxy.getMaintenanceServers();
     }
 
     public void cancelSingleTask(final Server server) {
         final Task task = serverTasks.remove(server.getName());
         if (task != null) {
             task.cancel();
+            final ClusterTimers clusterTimers = settingsProxy.getClusterTimers();
+            if (clusterTimers != null) {
+                clusterTimers.cancelled(ClusterTimers.serverTimerId(server.getName()));
+            }
         }
     }
 
     public MaintenanceRunnableBase startSingleMaintenanceRunnable(final Server server, final long duration, final TimeUnit unit, final boolean enable) {
         final MaintenanceRunnableBase runnable = new SingleMaintenanceRunnable(this, settingsProxy, (int) unit.toSeconds(duration), enable, server);
         serverTasks.put(server.getName(), runnable.getTask());
+        final ClusterTimers clusterTimers = settingsProxy.getClusterTimers();
+        if (clusterTimers != null) {
+            clusterTimers.started(ClusterTimers.serverTimerId(server.getName()), enable, runnable.getSecondsLeft(), 0);
+        }
         return runnable;
     }
 
@@ -133,9 +219,169 @@ public abstract class MaintenanceProxyPlugin extends MaintenancePlugin implement
         final MaintenanceRunnableBase runnable = new SingleMaintenanceScheduleRunnable(this, settingsProxy,
                 (int) unit.toSeconds(duration), (int) unit.toSeconds(maintenanceDuration), server);
         serverTasks.put(server.getName(), runnable.getTask());
+        final ClusterTimers clusterTimers = settingsProxy.getClusterTimers();
+        if (clusterTimers != null) {
+            clusterTimers.started(ClusterTimers.serverTimerId(server.getName()), true, runnable.getSecondsLeft(), (int) unit.toSeconds(maintenanceDuration));
+        }
         return runnable;
     }
 
+    @Override
+    public void startMaintenanceRunnable(final long duration, final TimeUnit unit, final boolean enable) {
+        super.startMaintenanceRunnable(duration, unit, enable);
+        final ClusterTimers clusterTimers = settingsProxy.getClusterTimers();
+        if (clusterTimers != null) {
+            clusterTimers.started(ClusterTimers.GLOBAL, enable, runnable.getSecondsLeft(), 0);
+        }
+    }
+
+    @Override
+    public void scheduleMaintenanceRunnable(final long duration, final int maintenanceDuration, final TimeUnit unit) {
+        super.scheduleMaintenanceRunnable(duration, maintenanceDuration, unit);
+        final ClusterTimers clusterTimers = settingsProxy.getClusterTimers();
+        if (clusterTimers != null) {
+            clusterTimers.started(ClusterTimers.GLOBAL, true, runnable.getSecondsLeft(), (int) unit.toSeconds(maintenanceDuration));
+        }
+    }
+
+    @Override
+    public void cancelTask() {
+        super.cancelTask();
+        final ClusterTimers clusterTimers = settingsProxy.getClusterTimers();
+        if (clusterTimers != null) {
+            clusterTimers.cancelled(ClusterTimers.GLOBAL);
+        }
+    }
+
+    @Override
+    public void completeTimer(final MaintenanceRunnableBase runnable, final Runnable finish) {
+        final ClusterTimers clusterTimers = settingsProxy.getClusterTimers();
+        if (clusterTimers == null) {
+            finish.run();
+            return;
+        }
+
+        final String id = runnable instanceof SingleMaintenanceRunnable
+                ? ClusterTimers.serverTimerId(((SingleMaintenanceRunnable) runnable).getServer().getName()) : ClusterTimers.GLOBAL;
+        clusterTimers.complete(id, finish);
+    }
+
+    /**
+     * Cancels a timer run by another proxy of the network.
+     *
+     * @param server server of the timer, or null for the global timer
+     * @return true if the timer is running and has been cancelled
+     */
+    public boolean cancelNetworkTimer(@Nullable final Server server) {
+        final ClusterTimers clusterTimers = settingsProxy.getClusterTimers();
+        if (clusterTimers == null) return false;
+
+        final String id = server != null ? ClusterTimers.serverTimerId(server.getName()) : ClusterTimers.GLOBAL;
+        if (!clusterTimers.isRunning(id)) return false;
+
+        clusterTimers.cancelled(id);
+        return true;
+    }
+
+    boolean isTimerRunningLocally(final String id) {
+        final String server = ClusterTimers.getServer(id);
+        return server != null ? serverTasks.containsKey(server) : runnable != null;
+    }
+
+    Collection<String> getLocalTimerIds() {
+        final List<String> ids = new ArrayList<>();
+        if (runnable != null) {
+            ids.add(ClusterTimers.GLOBAL);
+        }
+        for (final String server : serverTasks.keySet()) {
+            ids.add(ClusterTimers.serverTimerId(server));
+        }
+        return ids;
+    }
+
+    /**
+     * Stops the local timer without removing it from the database, as it is run or has been removed by another proxy.
+     */
+    void cancelTimerLocally(final String id) {
+        final String server = ClusterTimers.getServer(id);
+        if (server == null) {
+            if (runnable != null) {
+                super.cancelTask();
+            }
+            return;
+        }
+
+        final Task task = serverTasks.remove(server);
+        if (task != null) {
+            task.cancel();
+        }
+    }
+
+    /**
+     * Starts running a timer of the network, e.g. after the proxy that ran it has stopped.
+     */
+    void takeOverTimer(final TimerLeases.Timer timer) {
+        final long seconds = Math.max(0, (timer.getRemainingMillis() + 999) / 1000);
+        final String serverName = ClusterTimers.getServer(timer.getId());
+        if (serverName == null) {
+            if (timer.getMaintenanceDuration() > 0) {
+                scheduleMaintenanceRunnable(seconds, timer.getMaintenanceDuration(), TimeUnit.SECONDS);
+            } else {
+                startMaintenanceRunnable(seconds, TimeUnit.SECONDS, timer.shouldEnable());
+            }
+        } else {
+            final Server server = getServer(serverName);
+            if (server == null) return;
+
+            if (timer.getMaintenanceDuration() > 0) {
+                scheduleSingleMaintenanceRunnable(server, seconds, timer.getMaintenanceDuration(), TimeUnit.SECONDS);
+            } else {
+                startSingleMaintenanceRunnable(server, seconds, TimeUnit.SECONDS, timer.shouldEnable());
+            }
+        }
+        getLogger().info("Continuing timer " + timer.getId() + " of another proxy, " + seconds + " seconds left.");
+    }
+
+    @Override
+    public int getDisplayedOnlinePlayers() {
+        final NetworkPlayerCount networkPlayerCount = settingsProxy != null ? settingsProxy.getNetworkPlayerCount() : null;
+        return networkPlayerCount != null ? networkPlayerCount.getOnlinePlayers() : getOnlinePlayers();
+    }
+
+    int getLocalOnlinePlayers() {
+        return getOnlinePlayers();
+    }
+
+    /**
+     * Returns the ping response to send to a ping with the given virtual host.
+     * Global maintenance takes precedence, otherwise the response of the server the host is forced to is used if it is under maintenance.
+     *
+     * @param virtualHost host the client pinged, or null if unknown
+     * @return ping response, or null if the normal ping should be sent
+     */
+    @Nullable
+    public PingResponse getPingResponse(@Nullable final String virtualHost) {
+        if (!settingsProxy.isEnablePingMessages()) return null;
+        if (settingsProxy.isMaintenance()) {
+            return settingsProxy.getPingResponse();
+        }
+
+        if (virtualHost == null || settingsProxy.getMaintenanceServers().isEmpty()) return null;
+        final String server = getForcedHost(virtualHost);
+        return server != null && settingsProxy.isMaintenance(server) ? settingsProxy.getServerPingResponse(server) : null;
+    }
+
+    /**
+     * @param virtualHost host the client connected with
+     * @return name of the server the host is forced to, or null if none
+     */
+    @Nullable
+    public String getForcedHost(final String virtualHost) {
+        // Strip the trailing dot of fully qualified names
+        final String host = virtualHost.endsWith(".") ? virtualHost.substring(0, virtualHost.length() - 1) : virtualHost;
+        return forcedHosts.get(host.toLowerCase(Locale.ROOT));
+    }
+
     @Override
     @Nullable
     public List<String> getMaintenanceServersDump() {
@@ -179,4 +425,34 @@ public abstract class MaintenanceProxyPlugin extends MaintenancePlugin implement
     protected abstract void kickPlayersTo(Server server);
 
     protected abstract void kickPlayersFromProxy();
+
+    /**
+     * Schedules a task to be run repeatedly, starting immediately, off the proxy's network threads.
+     *
+     * @param runnable runnable to run
+     * @param interval interval between runs
+     * @param unit     unit of the interval
+     * @return scheduled task
+     */
+    public abstract Task scheduleAsyncRepeatingTask(Runnable runnable, long interval, TimeUnit unit);
+
+    /**
+     * @return names of all servers registered under the proxy
+     */
+    public abstract Collection<String> getServerNames();
+
+    /**
+     * Pings a registered server asynchronously.
+     *
+     * @param server server name
+     * @return future completed with the server's online players, or completed exceptionally if it could not be reached
+     */
+    protected abstract CompletableFuture<Integer> pingServer(String server);
+
+    /**
+     * Collects the forced hosts of the proxy, called on every reload.
+     *
+     * @return map of lowercase hostnames to server names
+     */
+    protected abstract Map<String, String> loadForcedHosts();
 }
\ No newline at end of file
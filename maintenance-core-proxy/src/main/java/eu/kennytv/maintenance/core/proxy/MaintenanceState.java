@@ -0,0 +1,75 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the global maintenance flag and the proxied servers under maintenance.
+ * A new instance is published on every change, so readers on ping and connect threads only need a single volatile read.
+ */
+public final class MaintenanceState {
+    private final boolean maintenance;
+    private final Set<String> maintenanceServers;
+
+    public MaintenanceState(final boolean maintenance, final Collection<String> maintenanceServers) {
+        this.maintenance = maintenance;
+        this.maintenanceServers = Collections.unmodifiableSet(new HashSet<>(maintenanceServers));
+    }
+
+    public boolean isMaintenance() {
+        return maintenance;
+    }
+
+    public boolean isMaintenance(final String server) {
+        return maintenanceServers.contains(server);
+    }
+
+    /**
+     * @return unmodifiable set of the servers under maintenance
+     */
+    public Set<String> getMaintenanceServers() {
+        return maintenanceServers;
+    }
+
+    public MaintenanceState withMaintenance(final boolean maintenance) {
+        return maintenance == this.maintenance ? this : new MaintenanceState(maintenance, maintenanceServers);
+    }
+
+    public MaintenanceState withMaintenance(final String server, final boolean maintenance) {
+        if (maintenanceServers.contains(server) == maintenance) return this;
+
+        final Set<String> servers = new HashSet<>(maintenanceServers);
+        if (maintenance) {
+            servers.add(server);
+        } else {
+            servers.remove(server);
+        }
+        return new MaintenanceState(this.maintenance, servers);
+    }
+
+    public MaintenanceState withMaintenance(final Collection<String> servers, final boolean maintenance) {
+        final Set<String> changedServers = new HashSet<>(maintenanceServers);
+        final boolean changed = maintenance ? changedServers.addAll(servers) : changedServers.removeAll(servers);
+        return changed ? new MaintenanceState(this.maintenance, changedServers) : this;
+    }
+}
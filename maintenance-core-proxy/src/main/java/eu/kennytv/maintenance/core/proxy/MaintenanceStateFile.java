@@ -0,0 +1,126 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Local copy of the last known maintenance state of the database, used to start without having to wait for the database.
+ */
+public final class MaintenanceStateFile {
+    private static final String VERSION_PREFIX = "version=";
+    private static final String MAINTENANCE_PREFIX = "maintenance=";
+    private static final String SERVER_PREFIX = "server=";
+    private final Path path;
+
+    public MaintenanceStateFile(final File file) {
+        this.path = file.toPath();
+    }
+
+    /**
+     * @return saved snapshot, or null if none has been saved yet
+     * @throws IOException if the file could not be read
+     */
+    @Nullable
+    public Snapshot load() throws IOException {
+        if (!Files.exists(path)) return null;
+
+        long version = -1;
+        boolean maintenance = false;
+        final Set<String> servers = new HashSet<>();
+        for (final String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.startsWith(VERSION_PREFIX)) {
+                try {
+                    version = Long.parseLong(line.substring(VERSION_PREFIX.length()));
+                } catch (final NumberFormatException e) {
+                    throw new IOException("Invalid version: " + line, e);
+                }
+            } else if (line.startsWith(MAINTENANCE_PREFIX)) {
+                maintenance = Boolean.parseBoolean(line.substring(MAINTENANCE_PREFIX.length()));
+            } else if (line.startsWith(SERVER_PREFIX)) {
+                servers.add(line.substring(SERVER_PREFIX.length()));
+            }
+        }
+        return new Snapshot(version, new MaintenanceState(maintenance, servers));
+    }
+
+    /**
+     * @return time in milliseconds the snapshot was last saved, or 0 if none has been saved yet
+     */
+    public long getLastModified() {
+        return path.toFile().lastModified();
+    }
+
+    /**
+     * Replaces the saved snapshot, so that the file is never left half written.
+     *
+     * @param version database version of the state, or -1 if unknown
+     * @param state   state to save
+     * @throws IOException if the file could not be written
+     */
+    public synchronized void save(final long version, final MaintenanceState state) throws IOException {
+        final List<String> lines = new ArrayList<>(state.getMaintenanceServers().size() + 2);
+        lines.add(VERSION_PREFIX + version);
+        lines.add(MAINTENANCE_PREFIX + state.isMaintenance());
+        for (final String server : state.getMaintenanceServers()) {
+            lines.add(SERVER_PREFIX + server);
+        }
+
+        final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tempPath, lines, StandardCharsets.UTF_8);
+        try {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static final class Snapshot {
+        private final long version;
+        private final MaintenanceState state;
+
+        private Snapshot(final long version, final MaintenanceState state) {
+            this.version = version;
+            this.state = state;
+        }
+
+        /**
+         * @return database version of the state, or -1 if unknown
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public MaintenanceState getState() {
+            return state;
+        }
+    }
+}
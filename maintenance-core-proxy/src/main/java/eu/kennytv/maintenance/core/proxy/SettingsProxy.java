@@ -19,78 +19,222 @@
 package eu.kennytv.maintenance.core.proxy;
 
 import eu.kennytv.maintenance.api.proxy.Server;
+import eu.kennytv.maintenance.core.PingResponse;
+import eu.kennytv.maintenance.core.Placeholders;
 import eu.kennytv.maintenance.core.Settings;
 import eu.kennytv.maintenance.core.config.ConfigSection;
 import eu.kennytv.maintenance.core.proxy.mysql.MySQL;
+import eu.kennytv.maintenance.core.proxy.mysql.NetworkPlayerCount;
+import eu.kennytv.maintenance.core.proxy.mysql.StateChangeLog;
+import eu.kennytv.maintenance.core.proxy.mysql.TimerLeases;
+import eu.kennytv.maintenance.core.proxy.mysql.WhitelistTable;
+import eu.kennytv.maintenance.core.proxy.sync.PeerSyncBackend;
+import eu.kennytv.maintenance.core.proxy.sync.SyncBackend;
+import eu.kennytv.maintenance.core.proxy.util.PingGuard;
+import eu.kennytv.maintenance.core.proxy.util.ServerStatusPoller;
+import eu.kennytv.maintenance.core.util.Task;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 public final class SettingsProxy extends Settings {
+    // Proxies taking longer than this to renew their leases are considered stopped
+    private static final long TIMER_LEASE_MILLIS = 10_000;
+    private static final long TIMER_SYNC_MILLIS = 2_000;
     private final MaintenanceProxyPlugin proxyPlugin;
-    private Set<String> maintenanceServers;
+    private final Placeholders<String> serverPlaceholders;
+    // Replaced on reload, not initialized here as the first load runs in the super constructor
+    private volatile Map<String, PingResponse> serverPingResponses;
+    private volatile Map<String, List<String>> serverPingMessages;
+    private volatile MaintenanceState state;
     private List<String> fallbackServers;
     private String waitingServer;
+    private volatile PingGuard pingGuard;
 
-    private String mySQLTable;
-    private String serverTable;
     private String maintenanceQuery;
     private String serverQuery;
-    private MySQL mySQL;
-
-    private long millisecondsToCheck;
-    private long lastMySQLCheck;
-    private long lastServerCheck;
+    private boolean useMySQL;
+    private volatile MySQL mySQL;
+    private volatile StateChangeLog changeLog;
+    private volatile WhitelistTable whitelistTable;
+    private boolean sharedWhitelist;
+    private volatile ClusterTimers clusterTimers;
+    private boolean useClusterTimers;
+    private Task timerSyncTask;
+    private MaintenanceStateFile stateFile;
+    private Task mySQLConnectTask;
+    private boolean connectingMySQL;
+    private int failedConnects;
+    private NetworkPlayerCount networkPlayerCount;
+    private Task networkPlayerCountTask;
+    private volatile ServerStatusPoller serverStatusPoller;
+    private Task serverStatusTask;
+    private String serverStatusOnline;
+    private String serverStatusOffline;
+    private String serverStatusMaintenance;
+
+    private Task mySQLRefreshTask;
+    private volatile SyncBackend syncBackend;
+    // Guarded by this, used to not override local changes with outdated database values
+    private List<BooleanSupplier> queuedWrites;
+    private int pendingWrites;
+    private long writeGeneration;
+    private long stateVersion;
+    private Map<UUID, String> queuedWhitelistChanges;
+    private long whitelistVersion;
 
     public SettingsProxy(final MaintenanceProxyPlugin plugin) {
         super(plugin);
         this.proxyPlugin = plugin;
+        this.serverPlaceholders = new Placeholders<String>(plugin.getPlaceholders()).register("SERVER", StringBuilder::append);
     }
 
     private void setupMySQL() throws Exception {
-        plugin.getLogger().info("Trying to open database connection... (also, you can simply ignore the SLF4J soft-warning if it shows up)");
+        if (failedConnects == 0) {
+            plugin.getLogger().info("Trying to open database connection... (also, you can simply ignore the SLF4J soft-warning if it shows up)");
+        }
         final ConfigSection section = config.getSection("mysql");
         if (section == null) {
-            plugin.getLogger().warning("Section missing: mysql");
-            return;
+            throw new IllegalStateException("Section missing: mysql");
         }
 
-        mySQL = new MySQL(plugin.getLogger(),
-                section.getString("host"),
-                section.getInt("port"),
-                section.getString("username"),
-                section.getString("password"),
-                section.getString("database"),
-                section.getBoolean("use-ssl", true));
+        final MySQL mySQL = new MySQL(plugin.getLogger(), section);
 
         // Varchar as the value regarding the possibility of saving stuff like the motd as well in future updates
-        mySQLTable = section.getString("table", "maintenance_settings");
-        serverTable = section.getString("servertable", "maintenance_servers");
-        mySQL.executeUpdate("CREATE TABLE IF NOT EXISTS " + mySQLTable + " (setting VARCHAR(16) PRIMARY KEY, value VARCHAR(255))");
-        mySQL.executeUpdate("CREATE TABLE IF NOT EXISTS " + serverTable + " (server VARCHAR(64) PRIMARY KEY)");
+        final String mySQLTable = section.getString("table", "maintenance_settings");
+        final String serverTable = section.getString("servertable", "maintenance_servers");
+        final StateChangeLog changeLog = new StateChangeLog(plugin.getLogger(), mySQL, mySQLTable, serverTable, section.getString("changetable", "maintenance_changes"));
+        final WhitelistTable whitelistTable = sharedWhitelist
+                ? new WhitelistTable(plugin.getLogger(), mySQL, mySQLTable, section.getString("whitelisttable", "maintenance_whitelist")) : null;
+        final TimerLeases leases = useClusterTimers ? new TimerLeases(plugin.getLogger(), mySQL, section.getString("timertable", "maintenance_timers"),
+                UUID.randomUUID().toString(), TIMER_LEASE_MILLIS) : null;
+        final boolean tablesCreated = mySQL.executeUpdate("CREATE TABLE IF NOT EXISTS " + mySQLTable + " (setting VARCHAR(16) PRIMARY KEY, value VARCHAR(255))")
+                && mySQL.executeUpdate("CREATE TABLE IF NOT EXISTS " + serverTable + " (server VARCHAR(64) PRIMARY KEY)")
+                && changeLog.createTables()
+                && (whitelistTable == null || whitelistTable.createTables())
+                && (leases == null || leases.createTables());
+        if (!tablesCreated) {
+            // Tried again by the next connect attempt
+            mySQL.close();
+            throw new IllegalStateException("Unable to create the database tables");
+        }
+
         maintenanceQuery = "SELECT * FROM " + mySQLTable + " WHERE setting = ?";
         serverQuery = "SELECT * FROM " + serverTable;
+        this.changeLog = changeLog;
+        this.whitelistTable = whitelistTable;
+        if (leases != null) {
+            clusterTimers = new ClusterTimers((MaintenanceProxyPlugin) plugin, leases);
+        }
+        // Set last, as it marks the database as connected
+        this.mySQL = mySQL;
         plugin.getLogger().info("Done!");
     }
 
-    @Override
-    protected void loadExtraSettings() {
-        // Open database connection if enabled and not already done
-        if (!hasMySQL() && config.getBoolean("mysql.use-mysql")) {
-            try {
-                setupMySQL();
-            } catch (final Exception e) {
-                mySQL = null;
-                plugin.getLogger().warning("Error while trying do open database connection!");
+    /**
+     * Tries to connect to the database until it succeeds, only run on the async connect task.
+     * Once connected, queued writes are written and the state is reconciled by the first refresh.
+     */
+    private void connectMySQL() {
+        synchronized (this) {
+            if (mySQL != null) {
+                cancelMySQLConnect();
+                return;
+            }
+            if (connectingMySQL) return;
+            connectingMySQL = true;
+        }
+
+        try {
+            setupMySQL();
+        } catch (final Exception e) {
+            if (failedConnects++ == 0) {
+                plugin.getLogger().warning("Error while trying do open database connection, using the last known state until it is available!");
                 e.printStackTrace();
+            } else {
+                plugin.getLogger().warning("Still unable to open database connection: " + e.getMessage());
+            }
+            return;
+        } finally {
+            synchronized (this) {
+                connectingMySQL = false;
             }
         }
 
+        final List<BooleanSupplier> writes;
+        synchronized (this) {
+            cancelMySQLConnect();
+            writes = queuedWrites;
+            queuedWrites = null;
+        }
+        if (writes != null) {
+            for (final BooleanSupplier write : writes) {
+                runWrite(write);
+            }
+        }
+        if (whitelistTable != null) {
+            connectWhitelist();
+        }
+
+        loadNetworkPlayerCount();
+        scheduleMySQLRefresh();
+        if (clusterTimers != null) {
+            synchronized (this) {
+                timerSyncTask = ((MaintenanceProxyPlugin) plugin).scheduleAsyncRepeatingTask(clusterTimers::sync, TIMER_SYNC_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private synchronized void scheduleMySQLRefresh() {
+        if (mySQLRefreshTask != null) {
+            mySQLRefreshTask.cancel();
+            mySQLRefreshTask = null;
+        }
+        if (mySQL == null) return;
+
+        final long configValue = config.getInt("mysql.update-interval");
+        // Even if set to 0, only check every 500 millis
+        final long millisecondsToCheck = configValue > 0 ? configValue * 1000 : 500;
+        mySQLRefreshTask = ((MaintenanceProxyPlugin) plugin).scheduleAsyncRepeatingTask(() -> {
+            refreshFromSQL();
+            refreshWhitelistFromSQL();
+        }, millisecondsToCheck, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void cancelMySQLConnect() {
+        if (mySQLConnectTask != null) {
+            mySQLConnectTask.cancel();
+            mySQLConnectTask = null;
+        }
+    }
+
+    @Override
+    protected void loadExtraSettings() {
+        // Open database connection in the background if enabled and not already done
+        final boolean startMySQL = !useMySQL && config.getBoolean("mysql.use-mysql");
+        if (startMySQL) {
+            useMySQL = true;
+            sharedWhitelist = config.getBoolean("mysql.shared-whitelist");
+            useClusterTimers = config.getBoolean("mysql.cluster-timers");
+            stateFile = new MaintenanceStateFile(new File(plugin.getDataFolder(), "state-cache.txt"));
+        }
+
         final Object fallback = config.getObject("fallback");
         fallbackServers = fallback instanceof String ? Collections.singletonList((String) fallback) : config.getStringList("fallback");
 
@@ -99,136 +243,667 @@ public final class SettingsProxy extends Settings {
             waitingServer = null;
         }
 
-        if (hasMySQL()) {
-            maintenance = loadMaintenance();
-            maintenanceServers = loadMaintenanceServersFromSQL();
-
-            final long configValue = config.getInt("mysql.update-interval");
-            // Even if set to 0, only check every 500 millis
-            millisecondsToCheck = configValue > 0 ? configValue * 1000 : 500;
-            lastMySQLCheck = System.currentTimeMillis();
-            lastServerCheck = System.currentTimeMillis();
+        final ConfigSection pingGuardSection = config.getSection("ping-guard");
+        if (pingGuardSection != null && pingGuardSection.getBoolean("enabled")) {
+            pingGuard = new PingGuard(Math.max(1, pingGuardSection.getInt("pings-per-second", 2)),
+                    Math.max(1, pingGuardSection.getInt("burst", 10)), pingGuardSection.getBoolean("drop-limited"));
         } else {
-            final List<String> list = config.getStringList("proxied-maintenance-servers");
-            maintenanceServers = list == null ? new HashSet<>() : new HashSet<>(list);
+            pingGuard = null;
+        }
+
+        final Map<String, List<String>> serverPingMessages = new HashMap<>();
+        final ConfigSection serverPingMessagesSection = config.getSection("server-pingmessages");
+        if (serverPingMessagesSection != null) {
+            for (final Map.Entry<String, Object> entry : serverPingMessagesSection.getValues().entrySet()) {
+                if (!(entry.getValue() instanceof List)) continue;
+
+                final List<String> messages = new ArrayList<>();
+                for (final Object message : (List<?>) entry.getValue()) {
+                    messages.add(String.valueOf(message));
+                }
+                serverPingMessages.put(entry.getKey(), messages);
+            }
         }
+        this.serverPingMessages = serverPingMessages;
+        // Drop responses of servers that may no longer be configured, the others are built again on the next ping
+        serverPingResponses = new ConcurrentHashMap<>();
+
+        loadNetworkPlayerCount();
+        loadServerStatusPoller();
+
+        if (startMySQL) {
+            // Start with the last known state, it is reconciled with the database once connected
+            final MaintenanceStateFile.Snapshot snapshot = loadStateSnapshot();
+            if (snapshot != null) {
+                state = snapshot.getState();
+                stateVersion = snapshot.getVersion();
+                maintenance = state.isMaintenance();
+            } else {
+                state = new MaintenanceState(maintenance, Collections.emptySet());
+                stateVersion = -1;
+            }
+
+            mySQLConnectTask = ((MaintenanceProxyPlugin) plugin).scheduleAsyncRepeatingTask(this::connectMySQL, 30, TimeUnit.SECONDS);
+        } else if (hasMySQL()) {
+            // Kept up to date in the background, the config value is not used
+            maintenance = state.isMaintenance();
+            scheduleMySQLRefresh();
+        } else {
+            state = new MaintenanceState(maintenance, loadMaintenanceServers());
+        }
+
+        synchronized (this) {
+            // The whitelist has just been loaded from the file again
+            whitelistVersion = -1;
+        }
+        loadSyncBackend();
     }
 
-    @Override
-    public boolean isMaintenance() {
-        if (hasMySQL() && System.currentTimeMillis() - lastMySQLCheck > millisecondsToCheck) {
-            final boolean databaseValue = loadMaintenance();
-            if (databaseValue != maintenance) {
-                maintenance = databaseValue;
-                plugin.serverActions(maintenance);
+    private void loadSyncBackend() {
+        if (syncBackend != null) {
+            syncBackend.close();
+            syncBackend = null;
+        }
+
+        final ConfigSection section = config.getSection("sync");
+        if (section == null || !section.getBoolean("enabled")) return;
+
+        final String key = section.getString("key", "");
+        if (key.isEmpty()) {
+            plugin.getLogger().warning("Not starting sync, as no key is set!");
+            return;
+        }
+
+        final PeerSyncBackend backend;
+        try {
+            backend = new PeerSyncBackend(plugin.getLogger(),
+                    new InetSocketAddress(section.getString("bind-address", "0.0.0.0"), section.getInt("port", 25590)),
+                    key, state, getStateLastModified(), this::applySyncedChange);
+            // Set before starting, as changes may be received right away
+            syncBackend = backend;
+            backend.start();
+        } catch (final IOException | IllegalArgumentException e) {
+            syncBackend = null;
+            plugin.getLogger().warning("Error while trying to start sync!");
+            e.printStackTrace();
+            return;
+        }
+
+        for (final String peer : section.getStringList("peers")) {
+            final int portIndex = peer.lastIndexOf(':');
+            try {
+                if (portIndex == -1) {
+                    throw new NumberFormatException("Missing port");
+                }
+                backend.addPeer(InetSocketAddress.createUnresolved(peer.substring(0, portIndex), Integer.parseInt(peer.substring(portIndex + 1))));
+            } catch (final IllegalArgumentException e) {
+                plugin.getLogger().warning("Invalid sync peer '" + peer + "': " + e.getMessage());
             }
-            lastMySQLCheck = System.currentTimeMillis();
         }
-        return maintenance;
     }
 
-    public boolean isMaintenance(final String serverName) {
-        if (hasMySQL() && System.currentTimeMillis() - lastServerCheck > millisecondsToCheck) {
-            final Set<String> databaseValue = loadMaintenanceServersFromSQL();
-            if (!maintenanceServers.equals(databaseValue)) {
-                // Enable maintenance on yet unlisted servers
-                for (final String s : databaseValue) {
-                    if (!maintenanceServers.contains(s)) {
-                        proxyPlugin.serverActions(proxyPlugin.getServer(s), true);
-                    }
+    /**
+     * @return time in milliseconds the current state was last saved locally, or 0 if unknown
+     */
+    private long getStateLastModified() {
+        return stateFile != null ? stateFile.getLastModified() : getStorage().getLastModified();
+    }
+
+    /**
+     * Applies a change received from another proxy and runs the actions for it.
+     */
+    private void applySyncedChange(@Nullable final String server) {
+        final MaintenanceState previous;
+        final MaintenanceState current;
+        synchronized (this) {
+            final SyncBackend syncBackend = this.syncBackend;
+            if (syncBackend == null) return;
+
+            // Read here, so that it can't override a newer local change
+            final boolean maintenance = syncBackend.isMaintenance(server);
+            previous = state;
+            current = server == null ? previous.withMaintenance(maintenance) : previous.withMaintenance(server, maintenance);
+            if (current == previous) return;
+
+            state = current;
+            this.maintenance = current.isMaintenance();
+            // Don't let database refreshes in progress revert it
+            writeGeneration++;
+            saveStateSnapshot();
+            if (!hasMySQL()) {
+                if (server == null) {
+                    saveMaintenance(maintenance);
+                } else {
+                    saveMaintenanceServers(Collections.singletonList(server), maintenance);
+                }
+            }
+        }
+
+        runChangeActions(previous, current);
+    }
+
+    /**
+     * Polls the database version and applies the changes since the last known one, then runs the actions for all changes.
+     * If changes are missing, the full state is loaded instead.
+     * Only run on the async refresh task, so that ping and connect threads never have to wait for the database.
+     */
+    private void refreshFromSQL() {
+        final long generation;
+        final long sinceVersion;
+        synchronized (this) {
+            if (pendingWrites != 0) return;
+            generation = writeGeneration;
+            sinceVersion = stateVersion;
+        }
+
+        final StateChangeLog.Changes changes = changeLog.poll(sinceVersion);
+        if (changes == null || changes.getVersion() == sinceVersion) return;
+
+        final MaintenanceState loadedState;
+        if (changes.isComplete(sinceVersion)) {
+            loadedState = null;
+        } else {
+            final Boolean databaseMaintenance = loadMaintenance();
+            final Set<String> databaseServers = loadMaintenanceServersFromSQL();
+            // Don't disable maintenance everywhere just because the database could not be reached
+            if (databaseMaintenance == null || databaseServers == null) return;
+            loadedState = new MaintenanceState(databaseMaintenance, databaseServers);
+        }
+
+        final MaintenanceState previous;
+        final MaintenanceState current;
+        synchronized (this) {
+            // Local changes not yet written or written during the queries would be reverted by the loaded values
+            if (pendingWrites != 0 || generation != writeGeneration) return;
+
+            previous = state;
+            current = loadedState != null ? loadedState : changes.apply(previous);
+            state = current;
+            stateVersion = changes.getVersion();
+            maintenance = current.isMaintenance();
+        }
+
+        saveStateSnapshot();
+        runChangeActions(previous, current);
+    }
+
+    private void runChangeActions(final MaintenanceState previous, final MaintenanceState current) {
+        if (previous.isMaintenance() != current.isMaintenance()) {
+            plugin.serverActions(current.isMaintenance());
+        }
+
+        // May already run before the constructor is done
+        final MaintenanceProxyPlugin proxyPlugin = (MaintenanceProxyPlugin) plugin;
+        // Enable maintenance on yet unlisted servers
+        for (final String server : current.getMaintenanceServers()) {
+            if (!previous.isMaintenance(server)) {
+                proxyPlugin.serverActions(proxyPlugin.getServer(server), true);
+            }
+        }
+        // Disable maintenance on now unlisted servers
+        for (final String server : previous.getMaintenanceServers()) {
+            if (!current.isMaintenance(server)) {
+                proxyPlugin.serverActions(proxyPlugin.getServer(server), false);
+            }
+        }
+    }
+
+    private synchronized void writeToSQL(final BooleanSupplier write) {
+        if (mySQL == null) {
+            // Written once connected
+            if (queuedWrites == null) {
+                queuedWrites = new ArrayList<>();
+            }
+            queuedWrites.add(write);
+            return;
+        }
+        plugin.async(() -> runWrite(write));
+    }
+
+    private void runWrite(final BooleanSupplier write) {
+        boolean written = false;
+        try {
+            written = write.getAsBoolean();
+        } finally {
+            synchronized (this) {
+                pendingWrites--;
+                if (!written) {
+                    // Load the full state again on the next refresh, as the local one now differs from the database
+                    stateVersion = -1;
                 }
-                // Disable maintenance on now unlisted servers
-                for (final String s : maintenanceServers) {
-                    if (!databaseValue.contains(s)) {
-                        proxyPlugin.serverActions(proxyPlugin.getServer(s), false);
-                    }
+            }
+        }
+        saveStateSnapshot();
+    }
+
+    /**
+     * Adds the local whitelist to the shared one if that is still empty and writes the changes made while not connected.
+     */
+    private void connectWhitelist() {
+        whitelistTable.importIfEmpty(getWhitelistedPlayers());
+
+        final Map<UUID, String> changes;
+        synchronized (this) {
+            changes = queuedWhitelistChanges;
+            queuedWhitelistChanges = null;
+        }
+        if (changes != null) {
+            writeWhitelist(changes);
+        }
+    }
+
+    @Override
+    protected void whitelistChanged(final Map<UUID, String> changes) {
+        if (!sharedWhitelist) return;
+
+        synchronized (this) {
+            if (mySQL == null) {
+                // Written once connected, only the last change of each player matters
+                if (queuedWhitelistChanges == null) {
+                    queuedWhitelistChanges = new HashMap<>();
                 }
-                maintenanceServers = databaseValue;
+                queuedWhitelistChanges.putAll(changes);
+                return;
             }
-            lastServerCheck = System.currentTimeMillis();
         }
-        return maintenanceServers.contains(serverName);
+        plugin.async(() -> writeWhitelist(changes));
     }
 
-    public String getServerKickMessage(final String server) {
-        String message = language.getString("singleMaintenanceKicks." + server);
-        if (message == null) {
-            message = getMessage("singleMaintenanceKick");
+    private void writeWhitelist(final Map<UUID, String> changes) {
+        if (whitelistTable.write(changes)) return;
+
+        plugin.getLogger().warning("Could not save whitelist changes in the database, loading the shared whitelist again!");
+        synchronized (this) {
+            whitelistVersion = -1;
         }
-        return plugin.replacePingVariables(message).replace("%SERVER%", server);
+    }
+
+    /**
+     * Applies the whitelist changes made since the last known version, or loads the whole whitelist if none is known.
+     * Only run on the async refresh task, so that {@link #isWhitelisted(UUID)} stays an in-memory lookup.
+     */
+    private void refreshWhitelistFromSQL() {
+        final WhitelistTable whitelistTable = this.whitelistTable;
+        if (whitelistTable == null) return;
+
+        final long sinceVersion;
+        synchronized (this) {
+            sinceVersion = whitelistVersion;
+        }
+
+        final WhitelistTable.Changes changes = whitelistTable.poll(sinceVersion);
+        if (changes == null || changes.getVersion() == sinceVersion) return;
+
+        if (sinceVersion < 0) {
+            final Map<UUID, String> players = new HashMap<>();
+            for (final Map.Entry<UUID, String> entry : changes.getPlayers().entrySet()) {
+                if (entry.getValue() != null) {
+                    players.put(entry.getKey(), entry.getValue());
+                }
+            }
+            replaceWhitelistedPlayers(players);
+        } else {
+            applyWhitelistChanges(changes.getPlayers());
+        }
+
+        synchronized (this) {
+            // Keep it if a failed write requires a full reload
+            if (whitelistVersion == sinceVersion) {
+                whitelistVersion = changes.getVersion();
+            }
+        }
+    }
+
+    @Nullable
+    private MaintenanceStateFile.Snapshot loadStateSnapshot() {
+        try {
+            return stateFile.load();
+        } catch (final IOException e) {
+            plugin.getLogger().warning("Error while trying to load the last known maintenance state!");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Saves the current state to the state file asynchronously, if the database is used.
+     */
+    private void saveStateSnapshot() {
+        if (stateFile == null) return;
+        plugin.async(() -> {
+            final long version;
+            final MaintenanceState state;
+            synchronized (this) {
+                // Unwritten local changes might never make it into the database, so it has to be fully loaded after a restart
+                version = pendingWrites == 0 ? stateVersion : -1;
+                state = this.state;
+            }
+            try {
+                stateFile.save(version, state);
+            } catch (final IOException e) {
+                plugin.getLogger().warning("Error while trying to save the last known maintenance state!");
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void loadNetworkPlayerCount() {
+        if (networkPlayerCountTask != null) {
+            networkPlayerCountTask.cancel();
+            networkPlayerCountTask = null;
+        }
+
+        // Called before the constructor is done, so the proxy plugin field can't be used yet
+        final MaintenanceProxyPlugin proxy = (MaintenanceProxyPlugin) plugin;
+        if (mySQL == null || !config.getBoolean("mysql.network-playercount")) {
+            final NetworkPlayerCount previous = networkPlayerCount;
+            if (previous != null) {
+                networkPlayerCount = null;
+                plugin.async(previous::remove);
+            }
+            return;
+        }
+
+        if (networkPlayerCount == null) {
+            final String table = config.getString("mysql.playercounttable", "maintenance_playercounts");
+            networkPlayerCount = new NetworkPlayerCount(plugin.getLogger(), mySQL, table, proxy::getLocalOnlinePlayers);
+        }
+
+        final int interval = Math.max(1, config.getInt("mysql.network-playercount-interval", 5));
+        networkPlayerCount.setIntervalSeconds(interval);
+        networkPlayerCountTask = proxy.scheduleAsyncRepeatingTask(networkPlayerCount, interval, TimeUnit.SECONDS);
+    }
+
+    private void loadServerStatusPoller() {
+        if (serverStatusTask != null) {
+            serverStatusTask.cancel();
+            serverStatusTask = null;
+        }
+
+        final ConfigSection section = config.getSection("server-status");
+        if (section == null || !section.getBoolean("enabled")) {
+            serverStatusPoller = null;
+            return;
+        }
+
+        serverStatusOnline = getColoredString(section.getString("online", "&aonline"));
+        serverStatusOffline = getColoredString(section.getString("offline", "&coffline"));
+        serverStatusMaintenance = getColoredString(section.getString("maintenance", "&emaintenance"));
+
+        final MaintenanceProxyPlugin proxy = (MaintenanceProxyPlugin) plugin;
+        final int interval = Math.max(1, section.getInt("ping-interval", 10));
+        final ServerStatusPoller poller = new ServerStatusPoller(proxy::getServerNames, proxy::pingServer,
+                this::invalidatePingResponse, TimeUnit.SECONDS.toMillis(interval * 3L));
+        serverStatusPoller = poller;
+        serverStatusTask = proxy.scheduleAsyncRepeatingTask(poller, interval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public boolean isMaintenance() {
+        return state.isMaintenance();
+    }
+
+    @Override
+    public synchronized void setMaintenance(final boolean maintenance) {
+        super.setMaintenance(maintenance);
+        state = state.withMaintenance(maintenance);
+        if (syncBackend != null) {
+            syncBackend.publish(null, maintenance);
+        }
+    }
+
+    public boolean isMaintenance(final String serverName) {
+        return state.isMaintenance(serverName);
+    }
+
+    /**
+     * @return current maintenance state, kept up to date with the database in the background if enabled
+     */
+    public MaintenanceState getState() {
+        return state;
+    }
+
+    public String getServerKickMessage(final String server) {
+        return getTemplate("singleMaintenanceKicks." + server, "singleMaintenanceKick").render(serverPlaceholders, server);
     }
 
     // Full = being kicked from the proxy, not just a proxied server
     public String getFullServerKickMessage(final String server) {
-        String message = language.getString("singleMaintenanceKicksComplete." + server);
-        if (message == null) {
-            message = getMessage("singleMaintenanceKickComplete");
+        return getTemplate("singleMaintenanceKicksComplete." + server, "singleMaintenanceKickComplete").render(serverPlaceholders, server);
+    }
+
+    /**
+     * Returns the ping response for a proxied server under maintenance, shown when pinging one of its forced hosts.
+     * Uses the server's own pingmessages if set, otherwise the global ones.
+     *
+     * @param server name of the proxied server
+     * @return current ping response of the server
+     * @see #getPingResponse()
+     */
+    public PingResponse getServerPingResponse(final String server) {
+        final Map<String, PingResponse> serverPingResponses = this.serverPingResponses;
+        final PingResponse response = serverPingResponses.get(server);
+        if (isUpToDate(response)) {
+            return response;
+        }
+
+        final int generation = getPingResponseGeneration();
+        final List<String> rawMotds = serverPingMessages.getOrDefault(server, getPingMessages());
+        final PingResponse newResponse = createPingResponse(generation, rawMotds,
+                s -> getPingTemplate(s).render(serverPlaceholders, server), server);
+        serverPingResponses.put(server, newResponse);
+        return newResponse;
+    }
+
+    /**
+     * @return network playercount if enabled, else null
+     */
+    @Nullable
+    public NetworkPlayerCount getNetworkPlayerCount() {
+        return networkPlayerCount;
+    }
+
+    /**
+     * Stops sending and receiving changes to and from other proxies.
+     */
+    void closeSyncBackend() {
+        if (syncBackend != null) {
+            syncBackend.close();
+            syncBackend = null;
+        }
+    }
+
+    /**
+     * Stops connecting to and refreshing the maintenance state from the database.
+     */
+    synchronized void cancelMySQLRefresh() {
+        cancelMySQLConnect();
+        if (mySQLRefreshTask != null) {
+            mySQLRefreshTask.cancel();
+            mySQLRefreshTask = null;
         }
-        return plugin.replacePingVariables(message).replace("%SERVER%", server);
+        if (timerSyncTask != null) {
+            timerSyncTask.cancel();
+            timerSyncTask = null;
+        }
+    }
+
+    /**
+     * Hands the timers of this proxy over to the other proxies, blocking until it is done.
+     */
+    void closeClusterTimers() {
+        if (clusterTimers != null) {
+            clusterTimers.close();
+            clusterTimers = null;
+        }
+    }
+
+    /**
+     * @return cluster wide timers, or null if disabled or not yet connected to the database
+     */
+    @Nullable
+    ClusterTimers getClusterTimers() {
+        return clusterTimers;
+    }
+
+    /**
+     * Stops publishing the playercount and removes it from the database, blocking until it is done.
+     */
+    void closeNetworkPlayerCount() {
+        if (networkPlayerCountTask != null) {
+            networkPlayerCountTask.cancel();
+            networkPlayerCountTask = null;
+        }
+        if (networkPlayerCount != null) {
+            networkPlayerCount.remove();
+            networkPlayerCount = null;
+        }
+    }
+
+    /**
+     * @param server server name
+     * @return last pinged online players of the server, 0 if it is offline or server status polling is disabled
+     */
+    public int getServerOnlinePlayers(final String server) {
+        final ServerStatusPoller poller = serverStatusPoller;
+        return poller != null ? Math.max(0, poller.getOnlinePlayers(server)) : 0;
+    }
+
+    /**
+     * Returns the configured status message of the server, without querying the database or the server itself.
+     *
+     * @param server server name
+     * @return maintenance, online or offline status message of the server, empty if server status polling is disabled
+     */
+    public String getServerStatus(final String server) {
+        final ServerStatusPoller poller = serverStatusPoller;
+        if (poller == null) {
+            return "";
+        }
+        if (state.isMaintenance(server)) {
+            return serverStatusMaintenance;
+        }
+        return poller.getOnlinePlayers(server) != -1 ? serverStatusOnline : serverStatusOffline;
+    }
+
+    /**
+     * @return ping guard if enabled, else null
+     */
+    @Nullable
+    public PingGuard getPingGuard() {
+        return pingGuard;
     }
 
+    /**
+     * @return true if the database is used, even if it is not connected yet
+     */
     public boolean hasMySQL() {
-        return mySQL != null;
+        return useMySQL;
     }
 
-    void setMaintenanceToSQL(final boolean maintenance) {
-        plugin.async(() -> {
-            final String s = String.valueOf(maintenance);
-            mySQL.executeUpdate("INSERT INTO " + mySQLTable + " (setting, value) VALUES (?, ?) ON DUPLICATE KEY UPDATE value = ?", "maintenance", s, s);
-            lastMySQLCheck = System.currentTimeMillis();
-        });
+    synchronized void setMaintenanceToSQL(final boolean maintenance) {
+        pendingWrites++;
+        writeGeneration++;
+        writeToSQL(() -> changeLog.write(null, maintenance));
     }
 
-    boolean addMaintenanceServer(final String server) {
+    synchronized boolean addMaintenanceServer(final String server) {
+        final MaintenanceState previous = state;
+        state = previous.withMaintenance(server, true);
+        if (state == previous) return false;
+
+        if (syncBackend != null) {
+            syncBackend.publish(server, true);
+        }
         if (hasMySQL()) {
-            maintenanceServers = loadMaintenanceServersFromSQL();
-            if (!maintenanceServers.add(server)) return false;
-            plugin.async(() -> mySQL.executeUpdate("INSERT INTO " + serverTable + " (server) VALUES (?)", server));
-            lastServerCheck = System.currentTimeMillis();
+            pendingWrites++;
+            writeGeneration++;
+            writeToSQL(() -> changeLog.write(server, true));
         } else {
-            if (!maintenanceServers.add(server)) return false;
-            saveServersToConfig();
+            saveMaintenanceServers(Collections.singletonList(server), true);
         }
         return true;
     }
 
-    boolean removeMaintenanceServer(final String server) {
-        if (hasMySQL()) {
-            maintenanceServers = loadMaintenanceServersFromSQL();
-            if (!maintenanceServers.remove(server)) return false;
+    synchronized boolean removeMaintenanceServer(final String server) {
+        final MaintenanceState previous = state;
+        state = previous.withMaintenance(server, false);
+        if (state == previous) return false;
 
-            plugin.async(() -> mySQL.executeUpdate("DELETE FROM " + serverTable + " WHERE server = ?", server));
-            lastServerCheck = System.currentTimeMillis();
+        if (syncBackend != null) {
+            syncBackend.publish(server, false);
+        }
+        if (hasMySQL()) {
+            pendingWrites++;
+            writeGeneration++;
+            writeToSQL(() -> changeLog.write(server, false));
         } else {
-            if (!maintenanceServers.remove(server)) return false;
-
-            saveServersToConfig();
+            saveMaintenanceServers(Collections.singletonList(server), false);
         }
         return true;
     }
 
+    /**
+     * Changes the maintenance state of all given servers with a single database transaction or config save.
+     *
+     * @return servers whose maintenance state has been changed
+     */
+    synchronized List<String> setMaintenanceToServers(final Collection<String> servers, final boolean maintenance) {
+        final MaintenanceState previous = state;
+        final List<String> changedServers = new ArrayList<>();
+        for (final String server : new LinkedHashSet<>(servers)) {
+            if (previous.isMaintenance(server) != maintenance) {
+                changedServers.add(server);
+            }
+        }
+        if (changedServers.isEmpty()) return changedServers;
+
+        state = previous.withMaintenance(changedServers, maintenance);
+        if (syncBackend != null) {
+            for (final String server : changedServers) {
+                syncBackend.publish(server, maintenance);
+            }
+        }
+        if (hasMySQL()) {
+            pendingWrites++;
+            writeGeneration++;
+            writeToSQL(() -> changeLog.writeServers(changedServers, maintenance));
+        } else {
+            saveMaintenanceServers(changedServers, maintenance);
+        }
+        return changedServers;
+    }
+
+    /**
+     * @return servers under maintenance, or null if they could not be loaded
+     */
+    @Nullable
     private Set<String> loadMaintenanceServersFromSQL() {
         final Set<String> maintenanceServers = new HashSet<>();
+        final boolean[] loaded = {false};
         mySQL.executeQuery(serverQuery, rs -> {
             try {
                 while (rs.next()) {
                     maintenanceServers.add(rs.getString("server"));
                 }
+                loaded[0] = true;
             } catch (final SQLException e) {
                 plugin.getLogger().warning("An error occured while trying to get the list of single servers with maintenance!");
                 e.printStackTrace();
             }
         });
-        return maintenanceServers;
+        return loaded[0] ? maintenanceServers : null;
     }
 
-    private boolean loadMaintenance() {
-        final boolean[] databaseValue = {false};
+    /**
+     * @return maintenance value in the database, or null if it could not be loaded
+     */
+    @Nullable
+    private Boolean loadMaintenance() {
+        final Boolean[] databaseValue = {null};
         mySQL.executeQuery(maintenanceQuery, rs -> {
             try {
-                if (rs.next()) {
-                    databaseValue[0] = Boolean.parseBoolean(rs.getString("value"));
-                }
+                databaseValue[0] = rs.next() && Boolean.parseBoolean(rs.getString("value"));
             } catch (final SQLException e) {
                 plugin.getLogger().warning("An error occured while trying to get the maintenance value from the database!");
                 e.printStackTrace();
@@ -237,13 +912,30 @@ public final class SettingsProxy extends Settings {
         return databaseValue[0];
     }
 
-    private void saveServersToConfig() {
-        config.set("proxied-maintenance-servers", new ArrayList<>(maintenanceServers));
-        saveConfig();
+    private Set<String> loadMaintenanceServers() {
+        try {
+            return getStorage().loadMaintenanceServers();
+        } catch (final IOException e) {
+            plugin.getLogger().warning("Unable to load the maintenance servers!");
+            e.printStackTrace();
+            return Collections.emptySet();
+        }
+    }
+
+    private void saveMaintenanceServers(final Collection<String> servers, final boolean maintenance) {
+        try {
+            getStorage().saveMaintenanceServers(servers, maintenance);
+        } catch (final IOException e) {
+            plugin.getLogger().warning("Unable to save the maintenance servers!");
+            e.printStackTrace();
+        }
     }
 
+    /**
+     * @return unmodifiable set of the servers under maintenance
+     */
     public Set<String> getMaintenanceServers() {
-        return maintenanceServers;
+        return state.getMaintenanceServers();
     }
 
     @Nullable
@@ -262,8 +954,11 @@ public final class SettingsProxy extends Settings {
         return waitingServer;
     }
 
+    /**
+     * @return database connection, or null if it is not used or not connected yet
+     */
     @Nullable
-    MySQL getMySQL() {
+    public MySQL getMySQL() {
         return mySQL;
     }
 }
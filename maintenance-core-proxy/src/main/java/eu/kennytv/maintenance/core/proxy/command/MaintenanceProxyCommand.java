@@ -36,6 +36,8 @@ public abstract class MaintenanceProxyCommand extends MaintenanceCommand {
         super(plugin, settings);
         this.plugin = plugin;
         settingsBungee = settings;
+        add(new PingGuardCommand(plugin), "pingguard");
+        add(new MySQLStatsCommand(plugin), "mysql");
     }
 
     @Override
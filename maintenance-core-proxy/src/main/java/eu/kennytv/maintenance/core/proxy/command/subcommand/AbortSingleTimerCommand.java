@@ -42,7 +42,8 @@ public final class AbortSingleTimerCommand extends ProxyCommandInfo {
         if (args.length == 1) {
             if (checkPermission(sender, "timer")) return;
             if (!plugin.isTaskRunning()) {
-                sender.sendMessage(getMessage("timerNotRunning"));
+                // Might be run by another proxy
+                sender.sendMessage(getMessage(plugin.cancelNetworkTimer(null) ? "timerCancelled" : "timerNotRunning"));
                 return;
             }
 
@@ -56,7 +57,7 @@ public final class AbortSingleTimerCommand extends ProxyCommandInfo {
                 return;
             }
             if (!plugin.isServerTaskRunning(server)) {
-                sender.sendMessage(getMessage("singleTimerNotRunning"));
+                sender.sendMessage(getMessage(plugin.cancelNetworkTimer(server) ? "singleTimerCancelled" : "singleTimerNotRunning"));
                 return;
             }
 
@@ -0,0 +1,64 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.command.subcommand;
+
+import eu.kennytv.maintenance.core.proxy.MaintenanceProxyPlugin;
+import eu.kennytv.maintenance.core.proxy.command.ProxyCommandInfo;
+import eu.kennytv.maintenance.core.proxy.mysql.CircuitBreaker;
+import eu.kennytv.maintenance.core.proxy.mysql.MySQL;
+import eu.kennytv.maintenance.core.proxy.mysql.QueryStats;
+import eu.kennytv.maintenance.core.util.SenderInfo;
+
+import java.util.Locale;
+import java.util.Map;
+
+public final class MySQLStatsCommand extends ProxyCommandInfo {
+    private static final int MAX_QUERY_LENGTH = 50;
+
+    public MySQLStatsCommand(final MaintenanceProxyPlugin plugin) {
+        super(plugin, "mysql");
+    }
+
+    @Override
+    public void execute(final SenderInfo sender, final String[] args) {
+        if (checkArgs(sender, args, 1)) return;
+
+        if (!getSettings().hasMySQL()) {
+            sender.sendMessage(plugin.getPrefix() + "§cMySQL is not enabled in the config.");
+            return;
+        }
+
+        final MySQL mySQL = getSettings().getMySQL();
+        if (mySQL == null) {
+            sender.sendMessage(plugin.getPrefix() + "§cThe database is not connected yet.");
+            return;
+        }
+
+        final CircuitBreaker circuitBreaker = mySQL.getCircuitBreaker();
+        sender.sendMessage(plugin.getPrefix() + "§7Database requests: " + (circuitBreaker.isOpen() ? "§cpaused after too many errors" : "§aactive")
+                + " §7(§b" + circuitBreaker.getRejectedRequests() + " §7rejected)");
+        for (final Map.Entry<String, QueryStats> entry : mySQL.getQueryStats().entrySet()) {
+            final QueryStats stats = entry.getValue();
+            final String query = entry.getKey().length() > MAX_QUERY_LENGTH ? entry.getKey().substring(0, MAX_QUERY_LENGTH) + "..." : entry.getKey();
+            sender.sendMessage("§8- §7" + query);
+            sender.sendMessage(String.format(Locale.ROOT, "  §b%d §7executions, §b%d §7errors, §b%.2fms §7average, §b%.2fms §7max",
+                    stats.getExecutions(), stats.getErrors(), stats.getAverageMillis(), stats.getMaxMillis()));
+        }
+    }
+}
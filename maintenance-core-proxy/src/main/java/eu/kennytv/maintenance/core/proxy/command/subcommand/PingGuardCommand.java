@@ -0,0 +1,46 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.command.subcommand;
+
+import eu.kennytv.maintenance.core.proxy.MaintenanceProxyPlugin;
+import eu.kennytv.maintenance.core.proxy.command.ProxyCommandInfo;
+import eu.kennytv.maintenance.core.proxy.util.PingGuard;
+import eu.kennytv.maintenance.core.util.SenderInfo;
+
+public final class PingGuardCommand extends ProxyCommandInfo {
+
+    public PingGuardCommand(final MaintenanceProxyPlugin plugin) {
+        super(plugin, "pingguard");
+    }
+
+    @Override
+    public void execute(final SenderInfo sender, final String[] args) {
+        if (checkArgs(sender, args, 1)) return;
+
+        final PingGuard pingGuard = getSettings().getPingGuard();
+        if (pingGuard == null) {
+            sender.sendMessage(plugin.getPrefix() + "§cThe ping guard is not enabled in the config.");
+            return;
+        }
+
+        sender.sendMessage(plugin.getPrefix() + "§7Handled pings: §b" + pingGuard.getPassedPings());
+        sender.sendMessage(plugin.getPrefix() + "§7Limited pings: §b" + pingGuard.getLimitedPings() + (pingGuard.isDropLimited() ? " §7(dropped)" : ""));
+        sender.sendMessage(plugin.getPrefix() + "§7Tracked addresses: §b" + pingGuard.getTrackedAddresses());
+    }
+}
@@ -24,8 +24,12 @@ import eu.kennytv.maintenance.core.proxy.command.ProxyCommandInfo;
 import eu.kennytv.maintenance.core.proxy.server.DummyServer;
 import eu.kennytv.maintenance.core.util.SenderInfo;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
 
 public final class SingleToggleCommand extends ProxyCommandInfo {
 
@@ -52,6 +56,11 @@ public final class SingleToggleCommand extends ProxyCommandInfo {
         } else if (args.length == 2) {
             if (checkPermission(sender, "singleserver.toggle")) return;
             final boolean maintenance = args[0].equalsIgnoreCase("on");
+            if (args[1].indexOf('*') != -1) {
+                toggleMatchingServers(sender, args[1], maintenance);
+                return;
+            }
+
             Server server = plugin.getServer(args[1]);
             if (server == null) {
                 if (maintenance) {
@@ -78,6 +87,51 @@ public final class SingleToggleCommand extends ProxyCommandInfo {
         }
     }
 
+    private void toggleMatchingServers(final SenderInfo sender, final String pattern, final boolean maintenance) {
+        final Pattern serverPattern = compileServerPattern(pattern);
+        final List<Server> servers = new ArrayList<>();
+        // Unregistered servers can still be removed from the maintenance list
+        for (final String serverName : maintenance ? plugin.getServerNames() : plugin.getMaintenanceServers()) {
+            if (!serverPattern.matcher(serverName).matches()) continue;
+
+            final Server server = plugin.getServer(serverName);
+            servers.add(server != null ? server : new DummyServer(serverName));
+        }
+        if (servers.isEmpty()) {
+            sender.sendMessage(getMessage("noMatchingServers").replace("%PATTERN%", pattern));
+            return;
+        }
+
+        final Collection<Server> changedServers = plugin.setMaintenanceToServers(servers, maintenance);
+        if (changedServers.isEmpty()) {
+            sender.sendMessage(getMessage(maintenance ? "multipleServersAlreadyEnabled" : "multipleServersAlreadyDisabled").replace("%PATTERN%", pattern));
+            return;
+        }
+
+        final StringJoiner serverNames = new StringJoiner(", ");
+        for (final Server server : changedServers) {
+            serverNames.add(server.getName());
+        }
+        sender.sendMessage(getMessage(maintenance ? "multipleMaintenanceActivated" : "multipleMaintenanceDeactivated")
+                .replace("%AMOUNT%", String.valueOf(changedServers.size())).replace("%SERVERS%", serverNames.toString()));
+    }
+
+    /**
+     * @param pattern server name with * as a wildcard for any amount of characters
+     * @return case insensitive pattern matching the whole server name
+     */
+    private static Pattern compileServerPattern(final String pattern) {
+        final StringBuilder regex = new StringBuilder();
+        int start = 0;
+        int wildcard;
+        while ((wildcard = pattern.indexOf('*', start)) != -1) {
+            regex.append(Pattern.quote(pattern.substring(start, wildcard))).append(".*");
+            start = wildcard + 1;
+        }
+        regex.append(Pattern.quote(pattern.substring(start)));
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+
     @Override
     public List<String> getTabCompletion(final SenderInfo sender, final String[] args) {
         if (args.length != 2 || !sender.hasMaintenancePermission("singleserver.toggle")) return Collections.emptyList();
@@ -0,0 +1,89 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.mysql;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending requests to a failing database for a while, so that callers fail fast and keep using their last known state.
+ * After the open duration, a single request is let through to check whether the database is available again.
+ */
+public final class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean trialRunning;
+    private long rejectedRequests;
+
+    public CircuitBreaker(final int failureThreshold, final long openMillis) {
+        this(failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(final int failureThreshold, final long openMillis, final LongSupplier clock) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * @return true if the request may be sent, false if it should fail right away
+     */
+    public synchronized boolean tryAcquire() {
+        if (consecutiveFailures < failureThreshold) return true;
+        if (trialRunning || clock.getAsLong() < openUntil) {
+            rejectedRequests++;
+            return false;
+        }
+
+        trialRunning = true;
+        return true;
+    }
+
+    /**
+     * @return true if the breaker was open before
+     */
+    public synchronized boolean recordSuccess() {
+        final boolean wasOpen = consecutiveFailures >= failureThreshold;
+        consecutiveFailures = 0;
+        trialRunning = false;
+        return wasOpen;
+    }
+
+    /**
+     * @return true if the breaker has been opened by this failure
+     */
+    public synchronized boolean recordFailure() {
+        trialRunning = false;
+        if (++consecutiveFailures < failureThreshold) return false;
+
+        // Also reopened after a failed trial request
+        openUntil = clock.getAsLong() + openMillis;
+        return consecutiveFailures == failureThreshold;
+    }
+
+    public synchronized boolean isOpen() {
+        return consecutiveFailures >= failureThreshold;
+    }
+
+    public synchronized long getRejectedRequests() {
+        return rejectedRequests;
+    }
+}
@@ -20,81 +20,219 @@ package eu.kennytv.maintenance.core.proxy.mysql;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import eu.kennytv.maintenance.core.config.ConfigSection;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public final class MySQL {
+    private final Map<String, QueryStats> queryStats = new ConcurrentHashMap<>();
     private final Logger logger;
     private final HikariDataSource hikariDataSource;
+    private final CircuitBreaker circuitBreaker;
+    private final int queryTimeoutSeconds;
 
-    public MySQL(final Logger logger, final String hostname, final int port, final String username, final String password, final String database, final boolean useSSL) {
+    public MySQL(final Logger logger, final ConfigSection section) {
         this.logger = logger;
 
         final HikariConfig hikariConfig = new HikariConfig();
-        hikariConfig.setMaximumPoolSize(10);
-        hikariConfig.addDataSourceProperty("serverName", hostname);
-        hikariConfig.addDataSourceProperty("user", username);
-        hikariConfig.addDataSourceProperty("password", password);
-
-        String urlProperty = "jdbc:mysql://" + hostname + ":" + port + "/" + database;
-        if (!useSSL) {
+        String urlProperty = "jdbc:mysql://" + section.getString("host") + ":" + section.getInt("port") + "/" + section.getString("database");
+        if (!section.getBoolean("use-ssl", true)) {
             urlProperty += "?useSSL=false";
         }
-        hikariConfig.addDataSourceProperty("url", urlProperty);
-
+        // Let the driver be found by the url, instead of depending on the legacy data source class
         hikariConfig.setJdbcUrl(urlProperty);
-        hikariConfig.setDataSourceClassName("com.mysql.jdbc.jdbc2.optional.MysqlDataSource");
+        hikariConfig.setUsername(section.getString("username"));
+        hikariConfig.setPassword(section.getString("password"));
+        hikariConfig.setPoolName("Maintenance");
+
+        final int maximumPoolSize = Math.max(1, section.getInt("pool.maximum-pool-size", 10));
+        hikariConfig.setMaximumPoolSize(maximumPoolSize);
+        hikariConfig.setMinimumIdle(Math.min(maximumPoolSize, Math.max(0, section.getInt("pool.minimum-idle", 2))));
+        final long connectionTimeout = Math.max(250, section.getLong("pool.connection-timeout", 5000));
+        hikariConfig.setConnectionTimeout(connectionTimeout);
+        hikariConfig.setValidationTimeout(Math.min(connectionTimeout, Math.max(250, section.getLong("pool.validation-timeout", 3000))));
+        hikariConfig.addDataSourceProperty("connectTimeout", connectionTimeout);
+        queryTimeoutSeconds = Math.max(0, section.getInt("pool.query-timeout", 5));
+
+        if (section.getBoolean("pool.cache-statements", true)) {
+            hikariConfig.addDataSourceProperty("cachePrepStmts", true);
+            hikariConfig.addDataSourceProperty("useServerPrepStmts", true);
+            hikariConfig.addDataSourceProperty("prepStmtCacheSize", Math.max(1, section.getInt("pool.statement-cache-size", 250)));
+            hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", 2048);
+        }
+
+        circuitBreaker = new CircuitBreaker(Math.max(1, section.getInt("circuit-breaker.failures", 5)),
+                TimeUnit.SECONDS.toMillis(Math.max(1, section.getInt("circuit-breaker.open-seconds", 30))));
         hikariDataSource = new HikariDataSource(hikariConfig);
     }
 
-    public void executeUpdate(final String query, final Consumer<Integer> callback, final Object... objects) {
+    /**
+     * @return true if the update has been executed
+     */
+    public boolean executeUpdate(final String query, final Consumer<Integer> callback, final Object... objects) {
+        if (!tryAcquire()) return false;
+
+        final long start = System.nanoTime();
+        boolean recorded = false;
         try (final Connection connection = hikariDataSource.getConnection()) {
-            try (final PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-                int current = 1;
-                for (final Object object : objects) {
-                    preparedStatement.setObject(current, object);
-                    current++;
-                }
-
-                callback.accept(preparedStatement.executeUpdate());
+            try (final PreparedStatement preparedStatement = prepareStatement(connection, query, objects)) {
+                final int result = preparedStatement.executeUpdate();
+                recordSuccess(query, start);
+                recorded = true;
+                callback.accept(result);
+                return true;
             }
         } catch (final SQLException e) {
             logger.log(Level.SEVERE, "Error while executing update method: " + query);
             e.printStackTrace();
+            return false;
+        } finally {
+            // Also on unchecked exceptions, so that a trial request always ends
+            if (!recorded) {
+                recordFailure(query, start);
+            }
         }
     }
 
     public void executeQuery(final String query, final Consumer<ResultSet> callback, final Object... objects) {
+        if (!tryAcquire()) return;
+
+        final long start = System.nanoTime();
+        boolean recorded = false;
         try (final Connection connection = hikariDataSource.getConnection()) {
-            try (final PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-                int current = 1;
-                for (final Object object : objects) {
-                    preparedStatement.setObject(current, object);
-                    current++;
-                }
-
-                final ResultSet resultSet = preparedStatement.executeQuery();
+            try (final PreparedStatement preparedStatement = prepareStatement(connection, query, objects);
+                 final ResultSet resultSet = preparedStatement.executeQuery()) {
+                recordSuccess(query, start);
+                recorded = true;
                 callback.accept(resultSet);
-                resultSet.close();
             }
         } catch (final SQLException e) {
             logger.log(Level.SEVERE, "Error while executing query method: " + query);
             e.printStackTrace();
+        } finally {
+            if (!recorded) {
+                recordFailure(query, start);
+            }
         }
     }
 
-    public void executeUpdate(final String query, final Object... objects) {
-        executeUpdate(query, res -> {
+    /**
+     * @return true if the update has been executed
+     */
+    public boolean executeUpdate(final String query, final Object... objects) {
+        return executeUpdate(query, res -> {
         }, objects);
     }
 
+    /**
+     * Executes the given statements in a single transaction, rolling it back if any of them fail.
+     *
+     * @param name        name of the transaction, used for its stats
+     * @param transaction statements to execute on the connection
+     * @return true if the transaction has been committed
+     */
+    public boolean executeTransaction(final String name, final Transaction transaction) {
+        if (!tryAcquire()) return false;
+
+        final long start = System.nanoTime();
+        boolean recorded = false;
+        try (final Connection connection = hikariDataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                transaction.execute(connection);
+                connection.commit();
+            } catch (final SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            recordSuccess(name, start);
+            recorded = true;
+            return true;
+        } catch (final SQLException e) {
+            logger.log(Level.SEVERE, "Error while executing transaction: " + name);
+            e.printStackTrace();
+            return false;
+        } finally {
+            if (!recorded) {
+                recordFailure(name, start);
+            }
+        }
+    }
+
+    /**
+     * Prepares a statement with the configured query timeout and sets its parameters.
+     *
+     * @param connection connection to prepare the statement on
+     * @param query      query
+     * @param objects    parameters
+     * @return prepared statement, has to be closed by the caller
+     * @throws SQLException if the statement could not be prepared
+     */
+    public PreparedStatement prepareStatement(final Connection connection, final String query, final Object... objects) throws SQLException {
+        final PreparedStatement preparedStatement = connection.prepareStatement(query);
+        try {
+            preparedStatement.setQueryTimeout(queryTimeoutSeconds);
+            int current = 1;
+            for (final Object object : objects) {
+                preparedStatement.setObject(current, object);
+                current++;
+            }
+        } catch (final SQLException e) {
+            preparedStatement.close();
+            throw e;
+        }
+        return preparedStatement;
+    }
+
+    private boolean tryAcquire() {
+        // Fail right away, callers keep their last known state
+        return circuitBreaker.tryAcquire();
+    }
+
+    private void recordSuccess(final String type, final long start) {
+        queryStats.computeIfAbsent(type, key -> new QueryStats()).record(System.nanoTime() - start, false);
+        if (circuitBreaker.recordSuccess()) {
+            logger.info("The database is available again");
+        }
+    }
+
+    private void recordFailure(final String type, final long start) {
+        queryStats.computeIfAbsent(type, key -> new QueryStats()).record(System.nanoTime() - start, true);
+        if (circuitBreaker.recordFailure()) {
+            logger.warning("Too many failed database requests, pausing them for a while and using the last known state");
+        }
+    }
+
+    /**
+     * @return unmodifiable map of stats by query or transaction name
+     */
+    public Map<String, QueryStats> getQueryStats() {
+        return Collections.unmodifiableMap(queryStats);
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
     public void close() {
         hikariDataSource.close();
     }
+
+    @FunctionalInterface
+    public interface Transaction {
+
+        void execute(Connection connection) throws SQLException;
+    }
 }
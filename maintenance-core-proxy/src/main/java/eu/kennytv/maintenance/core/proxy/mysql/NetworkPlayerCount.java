@@ -0,0 +1,108 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.mysql;
+
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the playercount of this proxy to the database and fetches the total of all proxies, meant to be run periodically.
+ * The ping threads only ever read the last fetched total.
+ */
+public final class NetworkPlayerCount implements Runnable {
+    // Rows of crashed proxies are left out of the total after a few missed updates, and deleted after this many seconds
+    private static final int REMOVE_AFTER_SECONDS = 300;
+    private final Logger logger;
+    private final MySQL mySQL;
+    private final IntSupplier localOnlinePlayers;
+    private final String proxyId = UUID.randomUUID().toString();
+    private final String createTableQuery;
+    private final String publishQuery;
+    private final String totalQuery;
+    private final String cleanupQuery;
+    private final String removeQuery;
+    private volatile int intervalSeconds;
+    private volatile int totalOnlinePlayers = -1;
+    private boolean tableCreated;
+    private long nextCleanup;
+
+    public NetworkPlayerCount(final Logger logger, final MySQL mySQL, final String table, final IntSupplier localOnlinePlayers) {
+        this.logger = logger;
+        this.mySQL = mySQL;
+        this.localOnlinePlayers = localOnlinePlayers;
+        createTableQuery = "CREATE TABLE IF NOT EXISTS " + table + " (proxy VARCHAR(36) PRIMARY KEY, online INT NOT NULL, updated BIGINT NOT NULL)";
+        publishQuery = "INSERT INTO " + table + " (proxy, online, updated) VALUES (?, ?, UNIX_TIMESTAMP())"
+                + " ON DUPLICATE KEY UPDATE online = VALUES(online), updated = VALUES(updated)";
+        // Use the database's time, so that clocks of different proxies don't matter
+        totalQuery = "SELECT SUM(online) AS total FROM " + table + " WHERE updated >= UNIX_TIMESTAMP() - ?";
+        cleanupQuery = "DELETE FROM " + table + " WHERE updated < UNIX_TIMESTAMP() - ?";
+        removeQuery = "DELETE FROM " + table + " WHERE proxy = ?";
+    }
+
+    @Override
+    public void run() {
+        if (!tableCreated) {
+            tableCreated = mySQL.executeUpdate(createTableQuery);
+        }
+
+        final long now = System.currentTimeMillis();
+        if (now >= nextCleanup) {
+            mySQL.executeUpdate(cleanupQuery, REMOVE_AFTER_SECONDS);
+            nextCleanup = now + REMOVE_AFTER_SECONDS * 1000L;
+        }
+
+        mySQL.executeUpdate(publishQuery, proxyId, localOnlinePlayers.getAsInt());
+        // Proxies that missed a few updates are most likely offline
+        mySQL.executeQuery(totalQuery, rs -> {
+            try {
+                if (rs.next()) {
+                    totalOnlinePlayers = rs.getInt("total");
+                }
+            } catch (final SQLException e) {
+                logger.warning("An error occured while trying to get the network playercount from the database!");
+                e.printStackTrace();
+            }
+        }, intervalSeconds * 3 + 1);
+    }
+
+    /**
+     * Removes this proxy's playercount from the database, should be called asynchronously.
+     */
+    public void remove() {
+        mySQL.executeUpdate(removeQuery, proxyId);
+    }
+
+    /**
+     * @return last fetched playercount of all proxies, or the local one if it has not been fetched yet
+     */
+    public int getOnlinePlayers() {
+        final int total = totalOnlinePlayers;
+        return total != -1 ? total : localOnlinePlayers.getAsInt();
+    }
+
+    public int getIntervalSeconds() {
+        return intervalSeconds;
+    }
+
+    public void setIntervalSeconds(final int intervalSeconds) {
+        this.intervalSeconds = intervalSeconds;
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.mysql;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution counters and latencies of a single query.
+ */
+public final class QueryStats {
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(final long nanos, final boolean error) {
+        executions.increment();
+        if (error) {
+            errors.increment();
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public double getAverageMillis() {
+        final long executions = getExecutions();
+        return executions != 0 ? totalNanos.sum() / (double) executions / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
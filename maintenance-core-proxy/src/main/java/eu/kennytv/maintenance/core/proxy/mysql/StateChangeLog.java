@@ -0,0 +1,212 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.mysql;
+
+import eu.kennytv.maintenance.core.proxy.MaintenanceState;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a version number and a log of all maintenance changes in the database,
+ * so that proxies only have to poll the version and apply the changes since their last one.
+ */
+public final class StateChangeLog {
+    private static final String VERSION_SETTING = "version";
+    // Proxies further behind than this load the full state instead
+    private static final int KEPT_CHANGES = 1000;
+    private final Logger logger;
+    private final MySQL mySQL;
+    private final String settingsTable;
+    private final String serverTable;
+    private final String changeTable;
+    private final String versionQuery;
+    private final String pollQuery;
+
+    public StateChangeLog(final Logger logger, final MySQL mySQL, final String settingsTable, final String serverTable, final String changeTable) {
+        this.logger = logger;
+        this.mySQL = mySQL;
+        this.settingsTable = settingsTable;
+        this.serverTable = serverTable;
+        this.changeTable = changeTable;
+        versionQuery = "SELECT value FROM " + settingsTable + " WHERE setting = ?";
+        // Current version and all changes since the given one in a single round trip
+        pollQuery = "SELECT v.value AS current_version, c.version, c.server, c.maintenance FROM " + settingsTable + " v"
+                + " LEFT JOIN " + changeTable + " c ON c.version > ? WHERE v.setting = ? ORDER BY c.version";
+    }
+
+    /**
+     * @return true if the tables have been created or already exist
+     */
+    public boolean createTables() {
+        return mySQL.executeUpdate("CREATE TABLE IF NOT EXISTS " + changeTable + " (version BIGINT PRIMARY KEY, server VARCHAR(64), maintenance BOOLEAN NOT NULL)")
+                && mySQL.executeUpdate("INSERT IGNORE INTO " + settingsTable + " (setting, value) VALUES (?, ?)", VERSION_SETTING, "0");
+    }
+
+    /**
+     * Writes the change and bumps the version in a single transaction, should be called asynchronously.
+     *
+     * @param server      server to change, or null for the global maintenance state
+     * @param maintenance new maintenance state
+     * @return true if the change has been written
+     */
+    public boolean write(@Nullable final String server, final boolean maintenance) {
+        return writeAll(Collections.singletonList(server), maintenance);
+    }
+
+    /**
+     * Writes the changes of multiple servers and bumps the version once per server in a single transaction,
+     * should be called asynchronously.
+     *
+     * @param servers     servers to change
+     * @param maintenance new maintenance state
+     * @return true if the changes have been written
+     */
+    public boolean writeServers(final Collection<String> servers, final boolean maintenance) {
+        return servers.isEmpty() || writeAll(servers, maintenance);
+    }
+
+    private boolean writeAll(final Collection<String> servers, final boolean maintenance) {
+        return mySQL.executeTransaction("state change", connection -> {
+            // Locks the version row until the transaction is done, so that versions are committed in order
+            update(connection, "UPDATE " + settingsTable + " SET value = CAST(value AS UNSIGNED) + ? WHERE setting = ?", servers.size(), VERSION_SETTING);
+            final long version;
+            try (final PreparedStatement statement = mySQL.prepareStatement(connection, versionQuery, VERSION_SETTING)) {
+                try (final ResultSet rs = statement.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Missing version row in " + settingsTable);
+                    }
+                    version = Long.parseLong(rs.getString("value"));
+                }
+            }
+
+            final String serverQuery = maintenance ? "INSERT IGNORE INTO " + serverTable + " (server) VALUES (?)" : "DELETE FROM " + serverTable + " WHERE server = ?";
+            try (final PreparedStatement serverStatement = mySQL.prepareStatement(connection, serverQuery);
+                 final PreparedStatement changeStatement = mySQL.prepareStatement(connection, "INSERT INTO " + changeTable + " (version, server, maintenance) VALUES (?, ?, ?)")) {
+                // Each server gets its own version, so that polling proxies still see a gapless change log
+                long changeVersion = version - servers.size();
+                for (final String server : servers) {
+                    if (server == null) {
+                        final String value = String.valueOf(maintenance);
+                        update(connection, "INSERT INTO " + settingsTable + " (setting, value) VALUES (?, ?) ON DUPLICATE KEY UPDATE value = ?", "maintenance", value, value);
+                    } else {
+                        serverStatement.setString(1, server);
+                        serverStatement.addBatch();
+                    }
+
+                    changeStatement.setLong(1, ++changeVersion);
+                    changeStatement.setString(2, server);
+                    changeStatement.setBoolean(3, maintenance);
+                    changeStatement.addBatch();
+                }
+                serverStatement.executeBatch();
+                changeStatement.executeBatch();
+            }
+
+            update(connection, "DELETE FROM " + changeTable + " WHERE version <= ?", version - KEPT_CHANGES);
+        });
+    }
+
+    private void update(final Connection connection, final String query, final Object... objects) throws SQLException {
+        try (final PreparedStatement statement = mySQL.prepareStatement(connection, query, objects)) {
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * @param sinceVersion last version known by this proxy
+     * @return current version and the changes since the given version, or null if they could not be loaded
+     */
+    @Nullable
+    public Changes poll(final long sinceVersion) {
+        final Changes[] changes = {null};
+        mySQL.executeQuery(pollQuery, rs -> {
+            try {
+                long currentVersion = -1;
+                final List<Change> list = new ArrayList<>();
+                while (rs.next()) {
+                    currentVersion = Long.parseLong(rs.getString("current_version"));
+                    final long version = rs.getLong("version");
+                    if (!rs.wasNull()) {
+                        list.add(new Change(version, rs.getString("server"), rs.getBoolean("maintenance")));
+                    }
+                }
+                if (currentVersion != -1) {
+                    changes[0] = new Changes(currentVersion, list);
+                }
+            } catch (final SQLException | NumberFormatException e) {
+                logger.warning("An error occured while trying to get the maintenance changes from the database!");
+                e.printStackTrace();
+            }
+        }, sinceVersion, VERSION_SETTING);
+        return changes[0];
+    }
+
+    public static final class Changes {
+        private final long version;
+        private final List<Change> changes;
+
+        private Changes(final long version, final List<Change> changes) {
+            this.version = version;
+            this.changes = changes;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @param sinceVersion version the changes have been polled for
+         * @return true if all changes up to the current version are present, false if the full state has to be loaded
+         */
+        public boolean isComplete(final long sinceVersion) {
+            if (sinceVersion < 0 || version < sinceVersion) return false;
+            // Versions are gapless, older changes may have been removed already
+            return changes.size() == version - sinceVersion && (changes.isEmpty() || changes.get(0).version == sinceVersion + 1);
+        }
+
+        public MaintenanceState apply(final MaintenanceState state) {
+            MaintenanceState result = state;
+            for (final Change change : changes) {
+                result = change.server == null ? result.withMaintenance(change.maintenance) : result.withMaintenance(change.server, change.maintenance);
+            }
+            return result;
+        }
+    }
+
+    private static final class Change {
+        private final long version;
+        private final String server;
+        private final boolean maintenance;
+
+        private Change(final long version, @Nullable final String server, final boolean maintenance) {
+            this.version = version;
+            this.server = server;
+            this.maintenance = maintenance;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.mysql;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Stores running timers with their absolute deadline in the database, each owned by one proxy through a lease.
+ * The owner renews its lease on every claim, other proxies take the timer over once the lease has expired.
+ * All times are taken from the database clock, so clocks of the proxies don't have to be in sync.
+ */
+public final class TimerLeases {
+    private static final String NOW = "ROUND(UNIX_TIMESTAMP(NOW(3)) * 1000)";
+    private final Logger logger;
+    private final MySQL mySQL;
+    private final String table;
+    private final String nodeId;
+    private final long leaseMillis;
+
+    public TimerLeases(final Logger logger, final MySQL mySQL, final String table, final String nodeId, final long leaseMillis) {
+        this.logger = logger;
+        this.mySQL = mySQL;
+        this.table = table;
+        this.nodeId = nodeId;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * @return true if the tables have been created or already exist
+     */
+    public boolean createTables() {
+        return mySQL.executeUpdate("CREATE TABLE IF NOT EXISTS " + table + " (id VARCHAR(80) PRIMARY KEY, enable BOOLEAN NOT NULL, deadline BIGINT NOT NULL,"
+                + " maintenance_duration INT NOT NULL, owner VARCHAR(36) NOT NULL, lease_until BIGINT NOT NULL)");
+    }
+
+    /**
+     * Creates or replaces the timer, owned by this proxy.
+     *
+     * @param id                  timer id
+     * @param enable              whether maintenance is enabled once the timer runs out
+     * @param millis              milliseconds until the timer runs out
+     * @param maintenanceDuration seconds of maintenance after a scheduled timer, or 0
+     * @return true if the timer has been written
+     */
+    public boolean create(final String id, final boolean enable, final long millis, final int maintenanceDuration) {
+        final boolean[] written = {false};
+        mySQL.executeUpdate("REPLACE INTO " + table + " (id, enable, deadline, maintenance_duration, owner, lease_until) VALUES (?, ?, " + NOW + " + ?, ?, ?, " + NOW + " + ?)",
+                result -> written[0] = true, id, enable, millis, maintenanceDuration, nodeId, leaseMillis);
+        return written[0];
+    }
+
+    /**
+     * Removes the timer, no matter which proxy owns it.
+     *
+     * @param id timer id
+     * @return true if the statement has been executed
+     */
+    public boolean delete(final String id) {
+        final boolean[] deleted = {false};
+        mySQL.executeUpdate("DELETE FROM " + table + " WHERE id = ?", result -> deleted[0] = true, id);
+        return deleted[0];
+    }
+
+    /**
+     * Removes the timer if this proxy still owns it. Only if this succeeds, the owner may apply the result of the timer,
+     * so that it is never applied twice.
+     *
+     * @param id timer id
+     * @return whether the timer was owned by this proxy and has been removed, or {@link Completion#FAILED} if the database could not be reached
+     */
+    public Completion complete(final String id) {
+        final Completion[] completion = {Completion.FAILED};
+        mySQL.executeUpdate("DELETE FROM " + table + " WHERE id = ? AND owner = ?",
+                result -> completion[0] = result == 1 ? Completion.COMPLETED : Completion.NOT_OWNED, id, nodeId);
+        return completion[0];
+    }
+
+    /**
+     * Lets the leases of this proxy's timers expire, so that other proxies take them over right away.
+     */
+    public void release() {
+        mySQL.executeUpdate("UPDATE " + table + " SET lease_until = 0 WHERE owner = ?", nodeId);
+    }
+
+    /**
+     * Renews the leases of this proxy's timers and takes over all timers with an expired lease.
+     *
+     * @return all timers, or null if they could not be loaded
+     */
+    @Nullable
+    public List<Timer> claim() {
+        final boolean[] claimed = {false};
+        mySQL.executeUpdate("UPDATE " + table + " SET owner = ?, lease_until = " + NOW + " + ? WHERE owner = ? OR lease_until < " + NOW,
+                result -> claimed[0] = true, nodeId, leaseMillis, nodeId);
+        if (!claimed[0]) return null;
+
+        final List<Timer> timers = new ArrayList<>();
+        final boolean[] loaded = {false};
+        mySQL.executeQuery("SELECT id, enable, deadline - " + NOW + " AS remaining, maintenance_duration, owner FROM " + table, rs -> {
+            try {
+                while (rs.next()) {
+                    timers.add(new Timer(rs.getString("id"), rs.getBoolean("enable"), rs.getLong("remaining"),
+                            rs.getInt("maintenance_duration"), nodeId.equals(rs.getString("owner"))));
+                }
+                loaded[0] = true;
+            } catch (final SQLException e) {
+                logger.warning("An error occured while trying to get the timers from the database!");
+                e.printStackTrace();
+            }
+        });
+        return loaded[0] ? timers : null;
+    }
+
+    public enum Completion {
+        /**
+         * The timer has been removed and its result may be applied.
+         */
+        COMPLETED,
+        /**
+         * The timer is owned by another proxy, which applies its result.
+         */
+        NOT_OWNED,
+        /**
+         * The database could not be reached.
+         */
+        FAILED
+    }
+
+    public static final class Timer {
+        private final String id;
+        private final boolean enable;
+        private final long remainingMillis;
+        private final int maintenanceDuration;
+        private final boolean owned;
+
+        private Timer(final String id, final boolean enable, final long remainingMillis, final int maintenanceDuration, final boolean owned) {
+            this.id = id;
+            this.enable = enable;
+            this.remainingMillis = remainingMillis;
+            this.maintenanceDuration = maintenanceDuration;
+            this.owned = owned;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public boolean shouldEnable() {
+            return enable;
+        }
+
+        public long getRemainingMillis() {
+            return remainingMillis;
+        }
+
+        /**
+         * @return seconds of maintenance after a scheduled timer, or 0 if it is not a scheduled timer
+         */
+        public int getMaintenanceDuration() {
+            return maintenanceDuration;
+        }
+
+        /**
+         * @return true if this proxy owns the timer and has to run it
+         */
+        public boolean isOwned() {
+            return owned;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.mysql;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Whitelist shared by all proxies using the database.
+ * Every row keeps the version it was last changed in and removed players are kept with a null name,
+ * so that proxies only have to load the rows changed since their last sync.
+ */
+public final class WhitelistTable {
+    private static final String VERSION_SETTING = "whitelistversion";
+    private final Logger logger;
+    private final MySQL mySQL;
+    private final String settingsTable;
+    private final String whitelistTable;
+    private final String versionQuery;
+    private final String pollQuery;
+
+    public WhitelistTable(final Logger logger, final MySQL mySQL, final String settingsTable, final String whitelistTable) {
+        this.logger = logger;
+        this.mySQL = mySQL;
+        this.settingsTable = settingsTable;
+        this.whitelistTable = whitelistTable;
+        versionQuery = "SELECT value FROM " + settingsTable + " WHERE setting = ?";
+        // Current version and all rows changed since the given one in a single round trip
+        pollQuery = "SELECT v.value AS current_version, w.uuid, w.name FROM " + settingsTable + " v"
+                + " LEFT JOIN " + whitelistTable + " w ON w.version > ? WHERE v.setting = ? ORDER BY w.version";
+    }
+
+    /**
+     * @return true if the tables have been created or already exist
+     */
+    public boolean createTables() {
+        return mySQL.executeUpdate("CREATE TABLE IF NOT EXISTS " + whitelistTable
+                + " (uuid CHAR(36) PRIMARY KEY, name VARCHAR(16), version BIGINT NOT NULL, INDEX (version))")
+                && mySQL.executeUpdate("INSERT IGNORE INTO " + settingsTable + " (setting, value) VALUES (?, ?)", VERSION_SETTING, "0");
+    }
+
+    /**
+     * Writes the changes with a new version in a single transaction, should be called asynchronously.
+     *
+     * @param changes uuids of changed players mapped to their name, or to null if they have been removed
+     * @return true if the changes have been written
+     */
+    public boolean write(final Map<UUID, String> changes) {
+        if (changes.isEmpty()) return true;
+        return mySQL.executeTransaction("whitelist change", connection -> {
+            final long version = bumpVersion(connection);
+            insert(connection, changes, version);
+        });
+    }
+
+    /**
+     * Writes the given players if the shared whitelist is still empty, should be called asynchronously.
+     * Used to take over the local whitelist of the first proxy connecting to the database.
+     *
+     * @param players uuids of whitelisted players mapped to their names
+     * @return true if the players have been written or the shared whitelist already contains players
+     */
+    public boolean importIfEmpty(final Map<UUID, String> players) {
+        if (players.isEmpty()) return true;
+        return mySQL.executeTransaction("whitelist import", connection -> {
+            final long version = bumpVersion(connection);
+            try (final PreparedStatement statement = mySQL.prepareStatement(connection, "SELECT 1 FROM " + whitelistTable + " LIMIT 1");
+                 final ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) return;
+            }
+            insert(connection, players, version);
+        });
+    }
+
+    private long bumpVersion(final Connection connection) throws SQLException {
+        // Locks the version row until the transaction is done, so that versions are committed in order
+        try (final PreparedStatement statement = mySQL.prepareStatement(connection,
+                "UPDATE " + settingsTable + " SET value = CAST(value AS UNSIGNED) + 1 WHERE setting = ?", VERSION_SETTING)) {
+            statement.executeUpdate();
+        }
+        try (final PreparedStatement statement = mySQL.prepareStatement(connection, versionQuery, VERSION_SETTING);
+             final ResultSet rs = statement.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Missing whitelist version row in " + settingsTable);
+            }
+            return Long.parseLong(rs.getString("value"));
+        }
+    }
+
+    private void insert(final Connection connection, final Map<UUID, String> players, final long version) throws SQLException {
+        try (final PreparedStatement statement = mySQL.prepareStatement(connection, "INSERT INTO " + whitelistTable
+                + " (uuid, name, version) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE name = VALUES(name), version = VALUES(version)")) {
+            for (final Map.Entry<UUID, String> entry : players.entrySet()) {
+                statement.setString(1, entry.getKey().toString());
+                statement.setString(2, entry.getValue());
+                statement.setLong(3, version);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * @param sinceVersion last version known by this proxy, or -1 to load the whole whitelist
+     * @return current version and the rows changed since the given version, or null if they could not be loaded
+     */
+    @Nullable
+    public Changes poll(final long sinceVersion) {
+        final Changes[] changes = {null};
+        mySQL.executeQuery(pollQuery, rs -> {
+            try {
+                long currentVersion = -1;
+                final Map<UUID, String> players = new HashMap<>();
+                while (rs.next()) {
+                    currentVersion = Long.parseLong(rs.getString("current_version"));
+                    final String uuid = rs.getString("uuid");
+                    if (uuid != null) {
+                        players.put(UUID.fromString(uuid), rs.getString("name"));
+                    }
+                }
+                if (currentVersion != -1) {
+                    changes[0] = new Changes(currentVersion, players);
+                }
+            } catch (final SQLException | IllegalArgumentException e) {
+                logger.warning("An error occured while trying to get the whitelist changes from the database!");
+                e.printStackTrace();
+            }
+        }, sinceVersion, VERSION_SETTING);
+        return changes[0];
+    }
+
+    public static final class Changes {
+        private final long version;
+        private final Map<UUID, String> players;
+
+        private Changes(final long version, final Map<UUID, String> players) {
+            this.version = version;
+            this.players = players;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * @return unmodifiable map of the changed uuids to their names, or to null if they have been removed
+         */
+        public Map<UUID, String> getPlayers() {
+            return Collections.unmodifiableMap(players);
+        }
+    }
+}
@@ -21,10 +21,13 @@ package eu.kennytv.maintenance.core.proxy.runnable;
 import eu.kennytv.maintenance.api.proxy.IMaintenanceProxy;
 import eu.kennytv.maintenance.api.proxy.Server;
 import eu.kennytv.maintenance.core.MaintenancePlugin;
+import eu.kennytv.maintenance.core.Placeholders;
 import eu.kennytv.maintenance.core.Settings;
 import eu.kennytv.maintenance.core.runnable.MaintenanceRunnableBase;
 
 public class SingleMaintenanceRunnable extends MaintenanceRunnableBase {
+    protected static final Placeholders<SingleMaintenanceRunnable> SERVER_PLACEHOLDERS = new Placeholders<SingleMaintenanceRunnable>(PLACEHOLDERS)
+            .register("SERVER", (builder, runnable) -> builder.append(runnable.server.getName()));
     protected final Server server;
 
     public SingleMaintenanceRunnable(final MaintenancePlugin plugin, final Settings settings, final int seconds, final boolean enable, final Server server) {
@@ -32,6 +35,10 @@ public class SingleMaintenanceRunnable extends MaintenanceRunnableBase {
         this.server = server;
     }
 
+    public Server getServer() {
+        return server;
+    }
+
     @Override
     protected void broadcast(final String message) {
         server.broadcast(message);
@@ -44,11 +51,11 @@ public class SingleMaintenanceRunnable extends MaintenanceRunnableBase {
 
     @Override
     protected String getStartMessage() {
-        return settings.getMessage("singleStarttimerBroadcast").replace("%TIME%", getTime()).replace("%SERVER%", server.getName());
+        return settings.getTemplate("singleStarttimerBroadcast").render(SERVER_PLACEHOLDERS, this);
     }
 
     @Override
     protected String getEndMessage() {
-        return settings.getMessage("singleEndtimerBroadcast").replace("%TIME%", getTime()).replace("%SERVER%", server.getName());
+        return settings.getTemplate("singleEndtimerBroadcast").render(SERVER_PLACEHOLDERS, this);
     }
 }
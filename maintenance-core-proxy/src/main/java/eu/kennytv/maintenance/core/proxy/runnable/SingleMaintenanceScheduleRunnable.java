@@ -20,12 +20,15 @@ package eu.kennytv.maintenance.core.proxy.runnable;
 
 import eu.kennytv.maintenance.api.proxy.Server;
 import eu.kennytv.maintenance.core.MaintenancePlugin;
+import eu.kennytv.maintenance.core.Placeholders;
 import eu.kennytv.maintenance.core.Settings;
 import eu.kennytv.maintenance.core.proxy.MaintenanceProxyPlugin;
 
 import java.util.concurrent.TimeUnit;
 
 public final class SingleMaintenanceScheduleRunnable extends SingleMaintenanceRunnable {
+    private static final Placeholders<SingleMaintenanceScheduleRunnable> SCHEDULE_PLACEHOLDERS = new Placeholders<SingleMaintenanceScheduleRunnable>(SERVER_PLACEHOLDERS)
+            .register("DURATION", (builder, runnable) -> builder.append(runnable.plugin.getFormattedTime(runnable.maintenanceDuration)));
     private final int maintenanceDuration;
 
     public SingleMaintenanceScheduleRunnable(final MaintenancePlugin plugin, final Settings settings, final int seconds, final int maintenanceDuration, final Server server) {
@@ -41,7 +44,6 @@ public final class SingleMaintenanceScheduleRunnable extends SingleMaintenanceRu
 
     @Override
     protected String getStartMessage() {
-        return settings.getMessage("singleScheduletimerBroadcast").replace("%SERVER%", server.getName())
-                .replace("%TIME%", getTime()).replace("%DURATION%", plugin.getFormattedTime(maintenanceDuration));
+        return settings.getTemplate("singleScheduletimerBroadcast").render(SCHEDULE_PLACEHOLDERS, this);
     }
 }
@@ -0,0 +1,492 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.sync;
+
+import eu.kennytv.maintenance.core.proxy.MaintenanceState;
+import org.jetbrains.annotations.Nullable;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Pushes maintenance changes to the other proxies over direct TCP connections.
+ * <p>
+ * Every proxy connects to all of its peers and only sends over its own connections, while receiving over the ones accepted from them.
+ * Each value is stored with a timestamp and the latest one wins, so changes may arrive in any order or multiple times.
+ * After (re)connecting to a peer, the full state is sent to it, reconciling all changes it missed while disconnected.
+ * <p>
+ * Both sides of a connection prove that they know the shared key with an HMAC over random nonces of both sides,
+ * so the key itself is never sent.
+ */
+public final class PeerSyncBackend implements SyncBackend {
+    private static final int MAGIC = 0x4D54534E;
+    private static final byte PROTOCOL_VERSION = 2;
+    private static final byte HEARTBEAT = 0;
+    private static final byte ENTRIES = 1;
+    private static final int MAX_ENTRIES = 4096;
+    private static final int MAX_KEY_LENGTH = 256;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int NONCE_LENGTH = 16;
+    private static final byte CLIENT_PROOF = 1;
+    private static final byte SERVER_PROOF = 2;
+    // Connections that have not yet authenticated, further ones are closed right away
+    private static final int MAX_PENDING_HANDSHAKES = 8;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    private static final String GLOBAL_KEY = "";
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long HEARTBEAT_MILLIS = 5000;
+    private static final int READ_TIMEOUT_MILLIS = 15000;
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30000;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+    private final Semaphore pendingHandshakes = new Semaphore(MAX_PENDING_HANDSHAKES);
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicLong clock = new AtomicLong();
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Logger logger;
+    private final SecretKeySpec key;
+    private final ChangeListener listener;
+    private final InetSocketAddress bindAddress;
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running = true;
+
+    /**
+     * @param logger       logger
+     * @param bindAddress  address to listen on for connections of other proxies
+     * @param key          secret shared by all proxies
+     * @param initialState     state to start with
+     * @param initialTimestamp time in milliseconds the initial state was last saved, or 0 if unknown so that any change of another proxy wins
+     * @param listener         listener called for received changes
+     */
+    public PeerSyncBackend(final Logger logger, final InetSocketAddress bindAddress, final String key,
+                           final MaintenanceState initialState, final long initialTimestamp, final ChangeListener listener) {
+        this.logger = logger;
+        this.bindAddress = bindAddress;
+        this.listener = listener;
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length == 0 || keyBytes.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("The key has to be between 1 and " + MAX_KEY_LENGTH + " bytes long");
+        }
+        this.key = new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+
+        // The persisted state wins over older changes of other proxies, servers not under maintenance have no entry to compare with
+        entries.put(GLOBAL_KEY, new Entry(initialState.isMaintenance(), initialTimestamp, nodeId));
+        for (final String server : initialState.getMaintenanceServers()) {
+            entries.put(server, new Entry(true, initialTimestamp, nodeId));
+        }
+        clock.set(initialTimestamp);
+    }
+
+    /**
+     * Starts listening for connections of other proxies.
+     *
+     * @throws IOException if the address could not be bound
+     */
+    public void start() throws IOException {
+        final ServerSocket serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(bindAddress);
+        this.serverSocket = serverSocket;
+        startThread("Maintenance Sync Listener", () -> acceptConnections(serverSocket));
+    }
+
+    /**
+     * Starts connecting to the given proxy, reconnecting whenever the connection is lost.
+     *
+     * @param address address of the other proxy
+     */
+    public void addPeer(final InetSocketAddress address) {
+        final Peer peer = new Peer(address);
+        peers.add(peer);
+        peer.thread = startThread("Maintenance Sync Peer " + peer.name, peer::run);
+    }
+
+    /**
+     * @return port this proxy listens on, or -1 if not yet started
+     */
+    public int getPort() {
+        final ServerSocket serverSocket = this.serverSocket;
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
+    }
+
+    @Override
+    public void publish(@Nullable final String server, final boolean maintenance) {
+        // Always newer than every change seen so far, even with clocks of other proxies being ahead
+        final long timestamp = clock.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+        final Update update = new Update(key(server), new Entry(maintenance, timestamp, nodeId));
+        entries.put(update.key, update.entry);
+        for (final Peer peer : peers) {
+            peer.queue.offer(update);
+        }
+    }
+
+    @Override
+    public boolean isMaintenance(@Nullable final String server) {
+        final Entry entry = entries.get(key(server));
+        return entry != null && entry.maintenance;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        final ServerSocket serverSocket = this.serverSocket;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (final IOException ignored) {
+            }
+        }
+        for (final Peer peer : peers) {
+            peer.close();
+        }
+        for (final Socket socket : inboundSockets) {
+            closeQuietly(socket);
+        }
+    }
+
+    private void merge(final String key, final Entry entry) {
+        clock.accumulateAndGet(entry.timestamp, Math::max);
+        final Entry[] previous = {null};
+        final Entry current = entries.compute(key, (k, existing) -> {
+            previous[0] = existing;
+            return existing == null || entry.isNewerThan(existing) ? entry : existing;
+        });
+
+        final boolean previousValue = previous[0] != null && previous[0].maintenance;
+        if (current == entry && previousValue != entry.maintenance) {
+            listener.onChange(key.equals(GLOBAL_KEY) ? null : key);
+        }
+    }
+
+    private void acceptConnections(final ServerSocket serverSocket) {
+        while (running) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (final IOException e) {
+                if (running) {
+                    logger.warning("Error while accepting sync connection: " + e.getMessage());
+                }
+                continue;
+            }
+
+            if (!pendingHandshakes.tryAcquire()) {
+                closeQuietly(socket);
+                continue;
+            }
+
+            inboundSockets.add(socket);
+            startThread("Maintenance Sync Receiver " + socket.getRemoteSocketAddress(), () -> receive(socket));
+        }
+    }
+
+    private void receive(final Socket socket) {
+        try {
+            final DataInputStream in;
+            try {
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (!acceptHandshake(in, new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())))) {
+                    logger.warning("Rejected sync connection from " + socket.getRemoteSocketAddress() + " with a wrong key or protocol version");
+                    return;
+                }
+            } finally {
+                pendingHandshakes.release();
+            }
+
+            // Peers send heartbeats, so a silent connection is dead
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+
+            while (running) {
+                final byte type = in.readByte();
+                if (type == HEARTBEAT) continue;
+                if (type != ENTRIES) {
+                    throw new IOException("Unknown message type " + type);
+                }
+
+                final int count = in.readInt();
+                if (count < 0 || count > MAX_ENTRIES) {
+                    throw new IOException("Invalid entry count " + count);
+                }
+                for (int i = 0; i < count; i++) {
+                    final String key = in.readUTF();
+                    final boolean maintenance = in.readBoolean();
+                    final long timestamp = in.readLong();
+                    final String node = in.readUTF();
+                    merge(key, new Entry(maintenance, timestamp, node));
+                }
+            }
+        } catch (final IOException ignored) {
+            // Closed or timed out, the peer will reconnect and send its full state again
+        } finally {
+            inboundSockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Answers the nonce of a connecting peer with this proxy's proof and checks the peer's proof.
+     *
+     * @return true if the peer knows the key
+     */
+    private boolean acceptHandshake(final DataInputStream in, final DataOutputStream out) throws IOException {
+        if (in.readInt() != MAGIC || in.readByte() != PROTOCOL_VERSION) return false;
+
+        final byte[] clientNonce = new byte[NONCE_LENGTH];
+        in.readFully(clientNonce);
+        final byte[] serverNonce = createNonce();
+        out.writeInt(MAGIC);
+        out.writeByte(PROTOCOL_VERSION);
+        out.write(serverNonce);
+        out.write(proof(SERVER_PROOF, clientNonce, serverNonce));
+        out.flush();
+
+        return readProof(in, proof(CLIENT_PROOF, clientNonce, serverNonce));
+    }
+
+    /**
+     * Sends a nonce to the peer, checks its proof and answers with this proxy's proof.
+     *
+     * @return true if the peer knows the key
+     */
+    private boolean connectHandshake(final DataInputStream in, final DataOutputStream out) throws IOException {
+        final byte[] clientNonce = createNonce();
+        out.writeInt(MAGIC);
+        out.writeByte(PROTOCOL_VERSION);
+        out.write(clientNonce);
+        out.flush();
+
+        if (in.readInt() != MAGIC || in.readByte() != PROTOCOL_VERSION) return false;
+
+        final byte[] serverNonce = new byte[NONCE_LENGTH];
+        in.readFully(serverNonce);
+        if (!readProof(in, proof(SERVER_PROOF, clientNonce, serverNonce))) return false;
+
+        out.write(proof(CLIENT_PROOF, clientNonce, serverNonce));
+        out.flush();
+        return true;
+    }
+
+    private boolean readProof(final DataInputStream in, final byte[] expected) throws IOException {
+        final byte[] received = new byte[expected.length];
+        in.readFully(received);
+        return MessageDigest.isEqual(expected, received);
+    }
+
+    private byte[] createNonce() {
+        final byte[] nonce = new byte[NONCE_LENGTH];
+        random.nextBytes(nonce);
+        return nonce;
+    }
+
+    /**
+     * @param side        side creating the proof, so that a proof cannot be sent back to its creator
+     * @param clientNonce nonce of the connecting proxy
+     * @param serverNonce nonce of the accepting proxy
+     * @return HMAC of the nonces with the shared key
+     */
+    private byte[] proof(final byte side, final byte[] clientNonce, final byte[] serverNonce) {
+        final Mac mac;
+        try {
+            mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to create " + MAC_ALGORITHM, e);
+        }
+        mac.update(side);
+        mac.update(clientNonce);
+        mac.update(serverNonce);
+        return mac.doFinal();
+    }
+
+    private void writeEntries(final DataOutputStream out, final List<Update> updates) throws IOException {
+        for (int from = 0; from < updates.size(); from += MAX_ENTRIES) {
+            final int to = Math.min(updates.size(), from + MAX_ENTRIES);
+            out.writeByte(ENTRIES);
+            out.writeInt(to - from);
+            for (int i = from; i < to; i++) {
+                final Update update = updates.get(i);
+                out.writeUTF(update.key);
+                out.writeBoolean(update.entry.maintenance);
+                out.writeLong(update.entry.timestamp);
+                out.writeUTF(update.entry.node);
+            }
+        }
+    }
+
+    private List<Update> snapshot() {
+        final List<Update> updates = new ArrayList<>(entries.size());
+        for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+            updates.add(new Update(entry.getKey(), entry.getValue()));
+        }
+        return updates;
+    }
+
+    private static String key(@Nullable final String server) {
+        return server != null ? server : GLOBAL_KEY;
+    }
+
+    private static Thread startThread(final String name, final Runnable runnable) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void closeQuietly(@Nullable final Socket socket) {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (final IOException ignored) {
+        }
+    }
+
+    private final class Peer {
+        private final BlockingQueue<Update> queue = new LinkedBlockingQueue<>();
+        private final InetSocketAddress address;
+        private final String name;
+        private volatile Socket socket;
+        private volatile Thread thread;
+
+        private Peer(final InetSocketAddress address) {
+            this.address = address;
+            this.name = address.getHostString() + ":" + address.getPort();
+        }
+
+        private void run() {
+            long reconnectDelay = MIN_RECONNECT_DELAY_MILLIS;
+            while (running) {
+                boolean connected = false;
+                try (final Socket socket = new Socket()) {
+                    this.socket = socket;
+                    // Resolve the address again on every attempt
+                    socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()), CONNECT_TIMEOUT_MILLIS);
+                    // While a local peer is down, the connection may be made from its own port back to itself
+                    if (socket.getLocalSocketAddress().equals(socket.getRemoteSocketAddress())) {
+                        throw new IOException("Connected to itself");
+                    }
+                    socket.setTcpNoDelay(true);
+                    socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                    final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                    if (!connectHandshake(in, out)) {
+                        logger.warning("Sync peer " + name + " uses a wrong key or protocol version");
+                        throw new IOException("Handshake failed");
+                    }
+                    // Everything queued until now is contained in the full state
+                    queue.clear();
+                    writeEntries(out, snapshot());
+                    out.flush();
+
+                    connected = true;
+                    reconnectDelay = MIN_RECONNECT_DELAY_MILLIS;
+                    logger.info("Connected to sync peer " + name);
+                    while (running) {
+                        final Update update = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                        if (update == null) {
+                            out.writeByte(HEARTBEAT);
+                        } else {
+                            final List<Update> updates = new ArrayList<>();
+                            updates.add(update);
+                            queue.drainTo(updates, MAX_ENTRIES - 1);
+                            writeEntries(out, updates);
+                        }
+                        out.flush();
+                    }
+                } catch (final IOException e) {
+                    if (connected && running) {
+                        logger.warning("Lost connection to sync peer " + name + ": " + e.getMessage());
+                    }
+                } catch (final InterruptedException e) {
+                    return;
+                }
+
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+
+        private void close() {
+            closeQuietly(socket);
+            final Thread thread = this.thread;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private static final class Update {
+        private final String key;
+        private final Entry entry;
+
+        private Update(final String key, final Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+
+    private static final class Entry {
+        private final boolean maintenance;
+        private final long timestamp;
+        private final String node;
+
+        private Entry(final boolean maintenance, final long timestamp, final String node) {
+            this.maintenance = maintenance;
+            this.timestamp = timestamp;
+            this.node = node;
+        }
+
+        private boolean isNewerThan(final Entry other) {
+            // Ties are broken by the node id, so that all proxies end up with the same value
+            return timestamp > other.timestamp || (timestamp == other.timestamp && node.compareTo(other.node) > 0);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.sync;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Shares maintenance changes between linked proxies.
+ */
+public interface SyncBackend {
+
+    /**
+     * Sends a change made on this proxy to all other proxies.
+     *
+     * @param server      changed server, or null for the global maintenance state
+     * @param maintenance new maintenance state
+     */
+    void publish(@Nullable String server, boolean maintenance);
+
+    /**
+     * @param server server, or null for the global maintenance state
+     * @return latest known maintenance state of the server
+     */
+    boolean isMaintenance(@Nullable String server);
+
+    /**
+     * Stops sending and receiving changes.
+     */
+    void close();
+
+    @FunctionalInterface
+    interface ChangeListener {
+
+        /**
+         * Called for changes received from other proxies, never on the proxy's network threads.
+         * The new state has to be read via {@link SyncBackend#isMaintenance(String)}, as it might have changed again in the meantime.
+         *
+         * @param server changed server, or null for the global maintenance state
+         */
+        void onChange(@Nullable String server);
+    }
+}
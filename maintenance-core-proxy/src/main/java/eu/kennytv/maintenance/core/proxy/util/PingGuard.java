@@ -0,0 +1,119 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.util;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the pings handled per address with a token bucket, stored as the bucket's theoretical arrival time.
+ * Buckets that would be full again are evicted every now and then, so idle addresses don't stay in memory.
+ */
+public final class PingGuard {
+    private static final long CLEANUP_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+    private final Map<InetAddress, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextCleanup;
+    private final LongAdder passed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final long emissionInterval;
+    private final long burstTolerance;
+    private final boolean dropLimited;
+
+    /**
+     * @param pingsPerSecond pings allowed per second and address on average
+     * @param burst          pings an address can send at once before being limited
+     * @param dropLimited    whether pings over the limit should be dropped instead of answered with the last response
+     */
+    public PingGuard(final int pingsPerSecond, final int burst, final boolean dropLimited) {
+        if (pingsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Pings per second and burst have to be positive");
+        }
+
+        this.emissionInterval = TimeUnit.SECONDS.toNanos(1) / pingsPerSecond;
+        this.burstTolerance = emissionInterval * (burst - 1);
+        this.dropLimited = dropLimited;
+        this.nextCleanup = new AtomicLong(System.nanoTime() + CLEANUP_INTERVAL);
+    }
+
+    /**
+     * Takes a token from the address' bucket if possible.
+     *
+     * @param address address of the pinging connection
+     * @return true if the ping should be handled normally, false if the address is over its limit
+     */
+    public boolean tryAcquire(final InetAddress address) {
+        final long now = System.nanoTime();
+        cleanup(now);
+
+        AtomicLong bucket = buckets.get(address);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(address, a -> new AtomicLong(now));
+        }
+
+        while (true) {
+            final long arrivalTime = bucket.get();
+            final long base = Math.max(arrivalTime, now);
+            if (base - now > burstTolerance) {
+                limited.increment();
+                return false;
+            }
+            if (bucket.compareAndSet(arrivalTime, base + emissionInterval)) {
+                passed.increment();
+                return true;
+            }
+        }
+    }
+
+    private void cleanup(final long now) {
+        final long next = nextCleanup.get();
+        if (now - next < 0 || !nextCleanup.compareAndSet(next, now + CLEANUP_INTERVAL)) return;
+
+        // Buckets that have been refilled completely are no different from new ones
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+
+    public boolean isDropLimited() {
+        return dropLimited;
+    }
+
+    /**
+     * @return number of pings handled normally since the guard was created
+     */
+    public long getPassedPings() {
+        return passed.sum();
+    }
+
+    /**
+     * @return number of pings over the limit since the guard was created
+     */
+    public long getLimitedPings() {
+        return limited.sum();
+    }
+
+    /**
+     * @return number of addresses currently being tracked
+     */
+    public int getTrackedAddresses() {
+        return buckets.size();
+    }
+}
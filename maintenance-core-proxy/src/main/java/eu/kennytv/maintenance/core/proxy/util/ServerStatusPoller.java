@@ -0,0 +1,97 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.proxy.util;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Periodically pings the proxied servers in the background and caches their playercounts,
+ * so that server placeholders in ping messages never have to wait for a backend.
+ */
+public final class ServerStatusPoller implements Runnable {
+    private final Map<String, Status> statuses = new ConcurrentHashMap<>();
+    private final Supplier<Collection<String>> serverSupplier;
+    private final Function<String, CompletableFuture<Integer>> pinger;
+    private final Runnable changeListener;
+    private final long ttlMillis;
+
+    /**
+     * @param serverSupplier supplier of the names of all registered servers
+     * @param pinger         function pinging a server, completed with its online players or exceptionally if it is offline
+     * @param changeListener called whenever the status of a server changes
+     * @param ttlMillis      time after which a cached status is no longer used
+     */
+    public ServerStatusPoller(final Supplier<Collection<String>> serverSupplier, final Function<String, CompletableFuture<Integer>> pinger,
+                              final Runnable changeListener, final long ttlMillis) {
+        this.serverSupplier = serverSupplier;
+        this.pinger = pinger;
+        this.changeListener = changeListener;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public void run() {
+        final Collection<String> servers = serverSupplier.get();
+        statuses.keySet().retainAll(servers);
+        for (final String server : servers) {
+            final CompletableFuture<Integer> future;
+            try {
+                future = pinger.apply(server);
+            } catch (final RuntimeException e) {
+                update(server, -1);
+                continue;
+            }
+            future.whenComplete((onlinePlayers, throwable) -> update(server, throwable == null ? onlinePlayers : -1));
+        }
+    }
+
+    private void update(final String server, final int onlinePlayers) {
+        final Status previous = statuses.put(server, new Status(onlinePlayers, System.currentTimeMillis()));
+        if (previous == null || previous.onlinePlayers != onlinePlayers) {
+            changeListener.run();
+        }
+    }
+
+    /**
+     * @param server server name
+     * @return last pinged online players of the server, or -1 if it is offline or has not been pinged recently
+     */
+    public int getOnlinePlayers(final String server) {
+        final Status status = statuses.get(server);
+        if (status == null || System.currentTimeMillis() - status.timestamp > ttlMillis) {
+            return -1;
+        }
+        return status.onlinePlayers;
+    }
+
+    private static final class Status {
+        private final int onlinePlayers;
+        private final long timestamp;
+
+        private Status(final int onlinePlayers, final long timestamp) {
+            this.onlinePlayers = onlinePlayers;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package eu.kennytv.maintenance.core.proxy;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+class MaintenanceStateFileTest {
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        final File directory = Files.createTempDirectory("maintenance").toFile();
+        final File file = new File(directory, "state-cache.txt");
+        try {
+            final MaintenanceStateFile stateFile = new MaintenanceStateFile(file);
+            assert stateFile.load() == null;
+
+            stateFile.save(42, new MaintenanceState(true, Arrays.asList("lobby", "game")));
+            MaintenanceStateFile.Snapshot snapshot = stateFile.load();
+            assert snapshot != null;
+            assert snapshot.getVersion() == 42;
+            assert snapshot.getState().isMaintenance();
+            assert snapshot.getState().getMaintenanceServers().size() == 2;
+            assert snapshot.getState().isMaintenance("lobby");
+
+            // Overwritten completely
+            stateFile.save(-1, new MaintenanceState(false, Collections.singletonList("game")));
+            snapshot = stateFile.load();
+            assert snapshot.getVersion() == -1;
+            assert !snapshot.getState().isMaintenance();
+            assert !snapshot.getState().isMaintenance("lobby");
+            assert snapshot.getState().isMaintenance("game");
+        } finally {
+            file.delete();
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package eu.kennytv.maintenance.core.proxy.mysql;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class CircuitBreakerTest {
+
+    @Test
+    void testOpenAndRecover() {
+        final AtomicLong time = new AtomicLong();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(3, 1000, time::get);
+        for (int i = 0; i < 2; i++) {
+            assert circuitBreaker.tryAcquire();
+            assert !circuitBreaker.recordFailure();
+        }
+        assert circuitBreaker.tryAcquire();
+        assert circuitBreaker.recordFailure();
+        assert circuitBreaker.isOpen();
+        assert !circuitBreaker.tryAcquire();
+        assert circuitBreaker.getRejectedRequests() == 1;
+
+        // Only a single trial request after the open duration
+        time.set(1000);
+        assert circuitBreaker.tryAcquire();
+        assert !circuitBreaker.tryAcquire();
+        assert circuitBreaker.recordSuccess();
+        assert !circuitBreaker.isOpen();
+        assert circuitBreaker.tryAcquire();
+    }
+
+    @Test
+    void testFailedTrial() {
+        final AtomicLong time = new AtomicLong();
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(1, 1000, time::get);
+        assert circuitBreaker.recordFailure();
+
+        time.set(1000);
+        assert circuitBreaker.tryAcquire();
+        circuitBreaker.recordFailure();
+        // Opened again for the full duration
+        time.set(1500);
+        assert !circuitBreaker.tryAcquire();
+        time.set(2000);
+        assert circuitBreaker.tryAcquire();
+    }
+
+    @Test
+    void testSuccessResetsFailures() {
+        final CircuitBreaker circuitBreaker = new CircuitBreaker(2, 1000, () -> 0);
+        circuitBreaker.recordFailure();
+        assert !circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        assert !circuitBreaker.isOpen();
+    }
+}
@@ -0,0 +1,171 @@
+package eu.kennytv.maintenance.core.proxy.sync;
+
+import eu.kennytv.maintenance.core.proxy.MaintenanceState;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+class PeerSyncBackendTest {
+
+    private static final Logger LOGGER = Logger.getLogger("PeerSyncBackendTest");
+    private static final String KEY = "test-key";
+
+    @Test
+    void testPropagation() throws IOException, InterruptedException {
+        final List<PeerSyncBackend> backends = new ArrayList<>();
+        final List<String> changes = Collections.synchronizedList(new ArrayList<>());
+        try {
+            for (int i = 0; i < 3; i++) {
+                backends.add(start(0, server -> changes.add(String.valueOf(server))));
+            }
+            connectAll(backends);
+
+            backends.get(0).publish(null, true);
+            backends.get(1).publish("lobby", true);
+            await(() -> backends.stream().allMatch(backend -> backend.isMaintenance(null) && backend.isMaintenance("lobby")));
+            assert !backends.get(2).isMaintenance("game");
+            // The two other proxies are notified of each change
+            await(() -> changes.size() == 4);
+        } finally {
+            backends.forEach(PeerSyncBackend::close);
+        }
+    }
+
+    @Test
+    void testReconciliationOnReconnect() throws IOException, InterruptedException {
+        final PeerSyncBackend first = start(0, server -> {
+        });
+        final PeerSyncBackend second = start(0, server -> {
+        });
+        PeerSyncBackend restarted = null;
+        try {
+            connectAll(Arrays.asList(first, second));
+            first.publish(null, true);
+            await(() -> second.isMaintenance(null));
+
+            // Changes made while the other proxy is offline are sent again once it is back
+            second.close();
+            first.publish("lobby", true);
+            restarted = restart(second.getPort());
+            restarted.addPeer(new InetSocketAddress("127.0.0.1", first.getPort()));
+
+            final PeerSyncBackend backend = restarted;
+            await(() -> backend.isMaintenance("lobby") && backend.isMaintenance(null));
+        } finally {
+            first.close();
+            second.close();
+            if (restarted != null) {
+                restarted.close();
+            }
+        }
+    }
+
+    @Test
+    void testConcurrentChangesConverge() throws IOException, InterruptedException {
+        final List<PeerSyncBackend> backends = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2; i++) {
+                backends.add(start(0, server -> {
+                }));
+            }
+            connectAll(backends);
+
+            for (int i = 0; i < 50; i++) {
+                backends.get(0).publish("lobby", i % 2 == 0);
+                backends.get(1).publish("lobby", i % 3 == 0);
+            }
+            await(() -> backends.get(0).isMaintenance("lobby") == backends.get(1).isMaintenance("lobby"));
+            Thread.sleep(200);
+            assert backends.get(0).isMaintenance("lobby") == backends.get(1).isMaintenance("lobby");
+        } finally {
+            backends.forEach(PeerSyncBackend::close);
+        }
+    }
+
+    @Test
+    void testNewerPersistedStateWins() throws IOException, InterruptedException {
+        // The state saved last wins on startup, instead of the node ids deciding
+        final PeerSyncBackend older = start(0, new MaintenanceState(false, Collections.emptySet()), 1000, server -> {
+        });
+        final PeerSyncBackend newer = start(0, new MaintenanceState(true, Collections.singleton("lobby")), 2000, server -> {
+        });
+        try {
+            connectAll(Arrays.asList(older, newer));
+            await(() -> older.isMaintenance(null) && older.isMaintenance("lobby"));
+            Thread.sleep(200);
+            assert newer.isMaintenance(null);
+        } finally {
+            older.close();
+            newer.close();
+        }
+    }
+
+    @Test
+    void testWrongKey() throws IOException, InterruptedException {
+        final PeerSyncBackend backend = start(0, server -> {
+        });
+        final PeerSyncBackend intruder = new PeerSyncBackend(LOGGER, new InetSocketAddress("127.0.0.1", 0), "wrong-key",
+                new MaintenanceState(false, Collections.emptySet()), 0, server -> {
+        });
+        try {
+            intruder.start();
+            intruder.addPeer(new InetSocketAddress("127.0.0.1", backend.getPort()));
+            intruder.publish(null, true);
+            Thread.sleep(500);
+            assert !backend.isMaintenance(null);
+        } finally {
+            backend.close();
+            intruder.close();
+        }
+    }
+
+    private static PeerSyncBackend start(final int port, final SyncBackend.ChangeListener listener) throws IOException {
+        return start(port, new MaintenanceState(false, Collections.emptySet()), 0, listener);
+    }
+
+    private static PeerSyncBackend start(final int port, final MaintenanceState state, final long timestamp,
+                                         final SyncBackend.ChangeListener listener) throws IOException {
+        final PeerSyncBackend backend = new PeerSyncBackend(LOGGER, new InetSocketAddress("127.0.0.1", port), KEY, state, timestamp, listener);
+        backend.start();
+        return backend;
+    }
+
+    private static PeerSyncBackend restart(final int port) throws IOException, InterruptedException {
+        // The port may still be used by a connection attempt of the other proxy for a moment
+        for (int i = 0; ; i++) {
+            try {
+                return start(port, server -> {
+                });
+            } catch (final BindException e) {
+                if (i == 50) throw e;
+                Thread.sleep(20);
+            }
+        }
+    }
+
+    private static void connectAll(final List<PeerSyncBackend> backends) {
+        for (final PeerSyncBackend backend : backends) {
+            for (final PeerSyncBackend peer : backends) {
+                if (peer != backend) {
+                    backend.addPeer(new InetSocketAddress("127.0.0.1", peer.getPort()));
+                }
+            }
+        }
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long end = System.currentTimeMillis() + 20_000;
+        while (!condition.getAsBoolean()) {
+            assert System.currentTimeMillis() < end : "Timed out";
+            Thread.sleep(20);
+        }
+    }
+}
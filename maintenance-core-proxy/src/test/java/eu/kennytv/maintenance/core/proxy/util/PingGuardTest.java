@@ -0,0 +1,42 @@
+package eu.kennytv.maintenance.core.proxy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+class PingGuardTest {
+
+    @Test
+    void testBurst() throws UnknownHostException {
+        final PingGuard pingGuard = new PingGuard(1, 5, false);
+        final InetAddress address = InetAddress.getByAddress(new byte[]{127, 0, 0, 1});
+        for (int i = 0; i < 5; i++) {
+            assert pingGuard.tryAcquire(address);
+        }
+        assert !pingGuard.tryAcquire(address);
+        assert pingGuard.getPassedPings() == 5;
+        assert pingGuard.getLimitedPings() == 1;
+    }
+
+    @Test
+    void testSeparateAddresses() throws UnknownHostException {
+        final PingGuard pingGuard = new PingGuard(1, 1, false);
+        final InetAddress first = InetAddress.getByAddress(new byte[]{127, 0, 0, 1});
+        final InetAddress second = InetAddress.getByAddress(new byte[]{127, 0, 0, 2});
+        assert pingGuard.tryAcquire(first);
+        assert !pingGuard.tryAcquire(first);
+        assert pingGuard.tryAcquire(second);
+        assert pingGuard.getTrackedAddresses() == 2;
+    }
+
+    @Test
+    void testRefill() throws UnknownHostException, InterruptedException {
+        final PingGuard pingGuard = new PingGuard(20, 1, false);
+        final InetAddress address = InetAddress.getByAddress(new byte[]{127, 0, 0, 1});
+        assert pingGuard.tryAcquire(address);
+        assert !pingGuard.tryAcquire(address);
+        Thread.sleep(100);
+        assert pingGuard.tryAcquire(address);
+    }
+}
@@ -0,0 +1,60 @@
+package eu.kennytv.maintenance.core.proxy.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ServerStatusPollerTest {
+
+    @Test
+    void testStatus() {
+        final AtomicInteger changes = new AtomicInteger();
+        final ServerStatusPoller poller = new ServerStatusPoller(() -> Arrays.asList("lobby", "game"), server -> {
+            if (server.equals("lobby")) {
+                return CompletableFuture.completedFuture(5);
+            }
+            final CompletableFuture<Integer> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException());
+            return future;
+        }, changes::incrementAndGet, 10_000);
+
+        assert poller.getOnlinePlayers("lobby") == -1;
+        poller.run();
+        assert poller.getOnlinePlayers("lobby") == 5;
+        assert poller.getOnlinePlayers("game") == -1;
+        assert poller.getOnlinePlayers("unknown") == -1;
+        assert changes.get() == 2;
+
+        // Unchanged statuses should not notify the listener again
+        poller.run();
+        assert changes.get() == 2;
+    }
+
+    @Test
+    void testRemovedServer() {
+        final List<String> servers = new ArrayList<>(Collections.singletonList("lobby"));
+        final ServerStatusPoller poller = new ServerStatusPoller(() -> servers, server -> CompletableFuture.completedFuture(1), () -> {
+        }, 10_000);
+        poller.run();
+        assert poller.getOnlinePlayers("lobby") == 1;
+
+        servers.clear();
+        poller.run();
+        assert poller.getOnlinePlayers("lobby") == -1;
+    }
+
+    @Test
+    void testExpired() throws InterruptedException {
+        final ServerStatusPoller poller = new ServerStatusPoller(() -> Collections.singletonList("lobby"), server -> CompletableFuture.completedFuture(1), () -> {
+        }, 20);
+        poller.run();
+        assert poller.getOnlinePlayers("lobby") == 1;
+        Thread.sleep(50);
+        assert poller.getOnlinePlayers("lobby") == -1;
+    }
+}
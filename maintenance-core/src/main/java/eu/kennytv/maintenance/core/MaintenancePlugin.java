@@ -31,12 +31,17 @@ import eu.kennytv.maintenance.core.dump.MaintenanceDump;
 import eu.kennytv.maintenance.core.dump.PluginDump;
 import eu.kennytv.maintenance.core.event.EventManager;
 import eu.kennytv.maintenance.core.hook.ServerListPlusHook;
+import eu.kennytv.maintenance.core.icon.IconLoader;
+import eu.kennytv.maintenance.core.icon.IconWatcher;
+import eu.kennytv.maintenance.core.icon.MaintenanceIcon;
 import eu.kennytv.maintenance.core.runnable.MaintenanceRunnable;
+import eu.kennytv.maintenance.core.runnable.MaintenanceRunnableBase;
 import eu.kennytv.maintenance.core.runnable.MaintenanceScheduleRunnable;
 import eu.kennytv.maintenance.core.util.SenderInfo;
 import eu.kennytv.maintenance.core.util.ServerType;
 import eu.kennytv.maintenance.core.util.Task;
 import eu.kennytv.maintenance.core.util.Version;
+import eu.kennytv.maintenance.core.whitelist.UuidResolver;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedInputStream;
@@ -53,19 +58,29 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public abstract class MaintenancePlugin implements IMaintenance {
     protected final EventManager eventManager;
     protected final Version version;
+    protected final Placeholders<Object> placeholders = new Placeholders<>();
     protected Settings settings;
     protected ServerListPlusHook serverListPlusHook;
-    protected MaintenanceRunnable runnable;
+    private final IconLoader iconLoader = new IconLoader(this);
+    private final AtomicInteger iconGeneration = new AtomicInteger();
+    private IconWatcher iconWatcher;
+    // Guarded by this
+    private UuidResolver uuidResolver;
+    private boolean disabled;
+    protected volatile MaintenanceRunnable runnable;
     protected MaintenanceCommand commandManager;
     private final String prefix;
     private final ServerType serverType;
@@ -77,16 +92,30 @@ public abstract class MaintenancePlugin implements IMaintenance {
         this.serverType = serverType;
         this.prefix = "§8[§eMaintenance" + serverType + "§8] ";
         this.eventManager = new EventManager();
+
+        placeholders.register("TIMER", (builder, context) -> builder.append(getTimerMessage()));
+        placeholders.register("ONLINE", (builder, context) -> builder.append(getDisplayedOnlinePlayers()));
+        placeholders.register("MAX", (builder, context) -> builder.append(getMaxPlayers()));
     }
 
     public void disable() {
+        if (iconWatcher != null) {
+            iconWatcher.close();
+        }
+        synchronized (this) {
+            // The closed resolver is kept, so that commands still running fail their lookups
+            disabled = true;
+            if (uuidResolver != null) {
+                uuidResolver.close();
+            }
+        }
+        settings.closeStorage();
     }
 
     @Override
     public void setMaintenance(final boolean maintenance) {
         settings.setMaintenance(maintenance);
-        settings.getConfig().set("maintenance-enabled", maintenance);
-        settings.saveConfig();
+        settings.saveMaintenance(maintenance);
         serverActions(maintenance);
 
         for (final String command : (maintenance ? settings.getCommandsOnMaintenanceEnable() : settings.getCommandsOnMaintenanceDisable())) {
@@ -103,6 +132,7 @@ public abstract class MaintenancePlugin implements IMaintenance {
         if (isTaskRunning()) {
             cancelTask();
         }
+        settings.invalidatePingResponse();
         if (serverListPlusHook != null && settings.isEnablePingMessages()) {
             serverListPlusHook.setEnabled(!maintenance);
         }
@@ -119,28 +149,28 @@ public abstract class MaintenancePlugin implements IMaintenance {
         eventManager.callEvent(new MaintenanceChangedEvent(maintenance));
     }
 
-    public String replacePingVariables(String s) {
-        if (s.contains("%TIMER%")) {
-            s = s.replace("%TIMER%", getTimerMessage());
-        }
-        if (s.contains("%ONLINE%")) {
-            s = s.replace("%ONLINE%", Integer.toString(getOnlinePlayers()));
-        }
-        if (s.contains("%MAX%")) {
-            s = s.replace("%MAX%", Integer.toString(getMaxPlayers()));
-        }
-        return s;
+    public String replacePingVariables(final String s) {
+        return settings.getPingTemplate(s).render(placeholders, null);
     }
 
     public String getTimerMessage() {
-        if (!isTaskRunning()) return settings.getMessage("motdTimerNotRunning", "-");
-        final int preHours = runnable.getSecondsLeft() / 60;
+        final MaintenanceRunnable runnable = this.runnable;
+        if (runnable == null) return settings.getMessage("motdTimerNotRunning", "-");
+        return runnable.getTimerState().getTimerMessage();
+    }
+
+    public String getTimerMessage(final int timeSeconds) {
+        final int preHours = timeSeconds / 60;
         final int minutes = preHours % 60;
-        final int seconds = runnable.getSecondsLeft() % 60;
+        final int seconds = timeSeconds % 60;
         return settings.getMessage("motdTimer", "%HOURS%:%MINUTES%:%SECONDS%")
-                .replace("%HOURS%", String.format("%02d", preHours / 60))
-                .replace("%MINUTES%", String.format("%02d", minutes))
-                .replace("%SECONDS%", String.format("%02d", seconds));
+                .replace("%HOURS%", twoDigits(preHours / 60))
+                .replace("%MINUTES%", twoDigits(minutes))
+                .replace("%SECONDS%", twoDigits(seconds));
+    }
+
+    private static String twoDigits(final int i) {
+        return i < 10 ? "0" + i : Integer.toString(i);
     }
 
     public String getFormattedTime(final int timeSeconds) {
@@ -165,14 +195,26 @@ public abstract class MaintenancePlugin implements IMaintenance {
 
     public void startMaintenanceRunnable(final long duration, final TimeUnit unit, final boolean enable) {
         runnable = new MaintenanceRunnable(this, settings, (int) unit.toSeconds(duration), enable);
+        settings.invalidatePingResponse();
         // Save the endtimer to be able to continue it after a server stop
         if (settings.isSaveEndtimerOnStop() && !runnable.shouldEnable()) {
             settings.setSavedEndtimer(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(runnable.getSecondsLeft()));
         }
     }
 
+    /**
+     * Called once a timer has run out.
+     *
+     * @param runnable timer that has run out
+     * @param finish   action applying the result of the timer
+     */
+    public void completeTimer(final MaintenanceRunnableBase runnable, final Runnable finish) {
+        finish.run();
+    }
+
     public void scheduleMaintenanceRunnable(final long duration, final int maintenanceDuration, final TimeUnit unit) {
         runnable = new MaintenanceScheduleRunnable(this, settings, (int) unit.toSeconds(duration), (int) unit.toSeconds(maintenanceDuration));
+        settings.invalidatePingResponse();
     }
 
     public boolean updateAvailable() {
@@ -307,18 +349,45 @@ public abstract class MaintenancePlugin implements IMaintenance {
         }
     }
 
+    /**
+     * Loads the maintenance icons asynchronously and starts watching them for changes.
+     */
     public void loadMaintenanceIcon() {
-        final File file = new File(getDataFolder(), "maintenance-icon.png");
-        if (!file.exists()) {
-            getLogger().warning("Could not find a 'maintenance-icon.png' file - did you create one in the plugin's folder?");
-            return;
-        }
+        final int generation = iconGeneration.incrementAndGet();
+        async(() -> {
+            synchronized (iconLoader) {
+                // A newer reload has been started in the meantime
+                if (generation != iconGeneration.get()) return;
+
+                final List<MaintenanceIcon> icons = iconLoader.loadIcons();
+                final Map<String, MaintenanceIcon> serverIcons = iconLoader.loadServerIcons();
+                final List<MaintenanceIcon> allIcons = new ArrayList<>(icons);
+                allIcons.addAll(serverIcons.values());
+                iconLoader.removeOldCacheFiles(allIcons);
+                try {
+                    loadIcons(icons);
+                    loadServerIcons(serverIcons);
+                } catch (final Exception e) {
+                    getLogger().log(Level.WARNING, "Could not load the maintenance icons!");
+                    e.printStackTrace();
+                }
+            }
+        });
 
-        try {
-            loadIcon(file);
-        } catch (final Exception e) {
-            getLogger().log(Level.WARNING, "Could not load the 'maintenance-icon.png' file!");
-            e.printStackTrace();
+        if (iconWatcher == null) {
+            iconWatcher = new IconWatcher(getDataFolder().toPath(), () -> {
+                if (settings.hasCustomIcon()) {
+                    loadMaintenanceIcon();
+                }
+            });
+            try {
+                iconWatcher.start();
+            } catch (final IOException e) {
+                getLogger().log(Level.WARNING, "Could not watch the maintenance icons for changes!");
+                e.printStackTrace();
+                // Tried again on the next reload
+                iconWatcher = null;
+            }
         }
     }
 
@@ -329,6 +398,7 @@ public abstract class MaintenancePlugin implements IMaintenance {
 
         runnable.getTask().cancel();
         runnable = null;
+        settings.invalidatePingResponse();
     }
 
     @Nullable
@@ -413,6 +483,16 @@ public abstract class MaintenancePlugin implements IMaintenance {
         return runnable;
     }
 
+    /**
+     * Global placeholders, available in ping, kick and notification messages.
+     * If the value of a registered placeholder changes, {@link Settings#invalidatePingResponse()} has to be called.
+     *
+     * @return global placeholders
+     */
+    public Placeholders<Object> getPlaceholders() {
+        return placeholders;
+    }
+
     public MaintenanceCommand getCommandManager() {
         return commandManager;
     }
@@ -441,6 +521,36 @@ public abstract class MaintenancePlugin implements IMaintenance {
     @Nullable
     public abstract SenderInfo getOfflinePlayer(UUID uuid);
 
+    /**
+     * Returns an online or otherwise locally known player without ever blocking on a web request.
+     *
+     * @param name name of the player
+     * @return the player, or null if not known to the server
+     */
+    @Nullable
+    public SenderInfo getCachedPlayer(final String name) {
+        return getOfflinePlayer(name);
+    }
+
+    /**
+     * Returns the resolver, which is closed once the plugin is disabled and then fails lookups of uncached names.
+     *
+     * @return resolver for the uuids of players not known to the server
+     */
+    public synchronized UuidResolver getUuidResolver() {
+        if (uuidResolver == null) {
+            uuidResolver = new UuidResolver(getLogger(), name -> {
+                final SenderInfo player = getCachedPlayer(name);
+                return player != null ? player.getUuid() : null;
+            }, new File(getDataFolder(), "uuid-cache.txt"), UuidResolver.MOJANG_PROFILES_URL);
+            if (disabled) {
+                // Never leave a running resolver behind after disabling
+                uuidResolver.close();
+            }
+        }
+        return uuidResolver;
+    }
+
     public abstract File getDataFolder();
 
     public abstract InputStream getResource(String name);
@@ -451,7 +561,23 @@ public abstract class MaintenancePlugin implements IMaintenance {
 
     public abstract List<PluginDump> getPlugins();
 
-    protected abstract void loadIcon(File file) throws Exception;
+    /**
+     * Creates and publishes the platform's favicons, called asynchronously.
+     *
+     * @param icons loaded icons, possibly empty
+     * @throws Exception if a favicon could not be created
+     */
+    protected abstract void loadIcons(List<MaintenanceIcon> icons) throws Exception;
+
+    /**
+     * Creates and publishes the favicons of proxied servers, called asynchronously.
+     * Only used on proxies, where they are sent when pinging a server's forced host.
+     *
+     * @param icons map of server names to their icons, possibly empty
+     * @throws Exception if a favicon could not be created
+     */
+    protected void loadServerIcons(final Map<String, MaintenanceIcon> icons) throws Exception {
+    }
 
     protected abstract void kickPlayers();
 
@@ -459,5 +585,15 @@ public abstract class MaintenancePlugin implements IMaintenance {
 
     protected abstract int getOnlinePlayers();
 
+    /**
+     * Returns the playercount shown by the %ONLINE% placeholder, which may differ from the local one on proxies.
+     * Must not do any blocking calls, as it is used on the ping threads.
+     *
+     * @return displayed playercount
+     */
+    public int getDisplayedOnlinePlayers() {
+        return getOnlinePlayers();
+    }
+
     protected abstract int getMaxPlayers();
 }
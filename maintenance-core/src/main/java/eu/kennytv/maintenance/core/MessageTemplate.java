@@ -0,0 +1,148 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message parsed once into literal and placeholder segments, which can then be rendered without any intermediate strings.
+ * Placeholders are written as {@code %NAME%}, unknown placeholders are kept as they are.
+ *
+ * @see Placeholders
+ */
+public final class MessageTemplate {
+    private final String raw;
+    // literals[i] is followed by placeholders[i], the last literal by nothing
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private MessageTemplate(final String raw, final String[] literals, final String[] placeholders) {
+        this.raw = raw;
+        this.literals = literals;
+        this.placeholders = placeholders;
+        int literalLength = 0;
+        for (final String literal : literals) {
+            literalLength += literal.length();
+        }
+        this.literalLength = literalLength;
+    }
+
+    public static MessageTemplate of(final String s) {
+        final List<String> literals = new ArrayList<>();
+        final List<String> placeholders = new ArrayList<>();
+        int literalStart = 0;
+        int i = 0;
+        while ((i = s.indexOf('%', i)) != -1) {
+            final int end = s.indexOf('%', i + 1);
+            if (end == -1) break;
+
+            if (isPlaceholderName(s, i + 1, end)) {
+                literals.add(s.substring(literalStart, i));
+                placeholders.add(s.substring(i + 1, end));
+                literalStart = i = end + 1;
+            } else {
+                // The closing % might still open a valid placeholder
+                i = end;
+            }
+        }
+        literals.add(s.substring(literalStart));
+        return new MessageTemplate(s, literals.toArray(new String[0]), placeholders.toArray(new String[0]));
+    }
+
+    /**
+     * @param s     string containing the name
+     * @param start start index of the name, after the opening %
+     * @param end   end index of the name, the index of the closing %
+     * @return whether the given range is a valid placeholder name
+     */
+    public static boolean isPlaceholderName(final String s, final int start, final int end) {
+        if (start == end) return false;
+        for (int i = start; i < end; i++) {
+            final char c = s.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != ':' && c != '-' && c != '.') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Renders the template into a new string.
+     *
+     * @param placeholders placeholders to resolve
+     * @param context      context passed to the placeholder resolvers
+     * @param <C>          context type
+     * @return rendered message
+     */
+    public <C> String render(final Placeholders<C> placeholders, final C context) {
+        if (this.placeholders.length == 0) return raw;
+
+        final StringBuilder builder = new StringBuilder(literalLength + (this.placeholders.length << 4));
+        render(builder, placeholders, context);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the rendered template to the given builder, so that it can be reused for multiple messages.
+     *
+     * @param builder      builder to append to
+     * @param placeholders placeholders to resolve
+     * @param context      context passed to the placeholder resolvers
+     * @param <C>          context type
+     */
+    public <C> void render(final StringBuilder builder, final Placeholders<C> placeholders, final C context) {
+        for (int i = 0; i < this.placeholders.length; i++) {
+            builder.append(literals[i]);
+
+            final String name = this.placeholders[i];
+            final Placeholders.Resolver<? super C> resolver = placeholders.get(name);
+            if (resolver != null) {
+                resolver.append(builder, context);
+            } else {
+                builder.append('%').append(name).append('%');
+            }
+        }
+        builder.append(literals[literals.length - 1]);
+    }
+
+    /**
+     * @param placeholder placeholder name without the surrounding %
+     * @return true if the template contains the given placeholder
+     */
+    public boolean contains(final String placeholder) {
+        for (final String name : placeholders) {
+            if (name.equals(placeholder)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the unparsed message
+     */
+    public String getRaw() {
+        return raw;
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Immutable snapshot of everything sent in a maintenance ping, already colored and with all variables replaced.
+ * Instances are created by {@link Settings#getPingResponse()} and shared between all ping threads.
+ */
+public final class PingResponse {
+    private final String[] motds;
+    private final String[] hoverLines;
+    private final String versionName;
+    private final String server;
+    private final boolean playerCountDependent;
+    private final int onlinePlayers;
+    private final int maxPlayers;
+    private final long frameInterval;
+    final int generation;
+    private final AtomicReferenceArray<Object> motdComponents;
+    private volatile Object platformData;
+
+    PingResponse(final String[] motds, final String[] hoverLines, @Nullable final String versionName, @Nullable final String server,
+                 final boolean playerCountDependent, final int onlinePlayers, final int maxPlayers, final long frameInterval, final int generation) {
+        this.motds = motds;
+        this.motdComponents = new AtomicReferenceArray<>(motds.length);
+        this.hoverLines = hoverLines;
+        this.versionName = versionName;
+        this.server = server;
+        this.playerCountDependent = playerCountDependent;
+        this.onlinePlayers = onlinePlayers;
+        this.maxPlayers = maxPlayers;
+        this.frameInterval = frameInterval;
+        this.generation = generation;
+    }
+
+    /**
+     * @return one of the motds, either the current animation frame or randomly chosen if multiple are set
+     */
+    public String getMotd() {
+        return motds[nextMotdIndex()];
+    }
+
+    /**
+     * Same as {@link #getMotd()}, but returns the motd converted to a platform component, created only once per motd and snapshot.
+     *
+     * @param converter function to convert the colored motd into a component if not yet present
+     * @param <T>       type of the component, has to always be the same for a platform
+     * @return cached motd component
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getMotd(final Function<String, T> converter) {
+        final int index = nextMotdIndex();
+        Object component = motdComponents.get(index);
+        if (component == null) {
+            component = converter.apply(motds[index]);
+            motdComponents.set(index, component);
+        }
+        return (T) component;
+    }
+
+    private int nextMotdIndex() {
+        if (motds.length == 1) {
+            return 0;
+        }
+        if (frameInterval > 0) {
+            return (int) ((System.currentTimeMillis() / frameInterval) % motds.length);
+        }
+        return ThreadLocalRandom.current().nextInt(motds.length);
+    }
+
+    /**
+     * @return lines of the playercount hover message, must not be modified
+     */
+    public String[] getHoverLines() {
+        return hoverLines;
+    }
+
+    /**
+     * @return custom playercount message, or null if it is disabled
+     */
+    @Nullable
+    public String getVersionName() {
+        return versionName;
+    }
+
+    /**
+     * @return proxied server this response is shown for when pinging one of its forced hosts, or null if it is the global response
+     */
+    @Nullable
+    public String getServer() {
+        return server;
+    }
+
+    /**
+     * Returns platform specific ping data (e.g. the sample player array), created only once per snapshot.
+     *
+     * @param factory function to create the data from this response if not yet present
+     * @param <T>     type of the platform data, has to always be the same for a platform
+     * @return cached platform data
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getPlatformData(final Function<PingResponse, T> factory) {
+        Object data = platformData;
+        if (data == null) {
+            // Creating it twice on concurrent pings doesn't matter
+            platformData = data = factory.apply(this);
+        }
+        return (T) data;
+    }
+
+    boolean isOutdated(final int onlinePlayers, final int maxPlayers) {
+        return this.onlinePlayers != onlinePlayers || this.maxPlayers != maxPlayers;
+    }
+
+    boolean isPlayerCountDependent() {
+        return playerCountDependent;
+    }
+}
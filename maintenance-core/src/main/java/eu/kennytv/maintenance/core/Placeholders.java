@@ -0,0 +1,121 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Named placeholder resolvers used to render a {@link MessageTemplate}.
+ * Lookups fall back to the parent, so specific placeholders (e.g. %SERVER%) can be layered on top of global ones.
+ * Placeholders registered with an argument are used as %NAME:argument%.
+ *
+ * @param <C> type of the context given when rendering a message
+ */
+public final class Placeholders<C> {
+    private final Map<String, Resolver<? super C>> resolvers = new ConcurrentHashMap<>();
+    private final Map<String, ArgumentResolver<? super C>> argumentResolvers = new ConcurrentHashMap<>();
+    private final Placeholders<? super C> parent;
+
+    public Placeholders() {
+        this(null);
+    }
+
+    public Placeholders(@Nullable final Placeholders<? super C> parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Registers a placeholder, replacing a previously registered one with the same name.
+     *
+     * @param name     placeholder name without the surrounding %, e.g. "ONLINE"
+     * @param resolver resolver appending the placeholder's value
+     * @return this instance
+     */
+    public Placeholders<C> register(final String name, final Resolver<? super C> resolver) {
+        resolvers.put(name, resolver);
+        return this;
+    }
+
+    /**
+     * Registers a placeholder taking an argument, used as %NAME:argument%.
+     *
+     * @param name     placeholder name without the surrounding % and argument, e.g. "SERVER_ONLINE"
+     * @param resolver resolver appending the placeholder's value for the given argument
+     * @return this instance
+     */
+    public Placeholders<C> registerArgument(final String name, final ArgumentResolver<? super C> resolver) {
+        argumentResolvers.put(name, resolver);
+        return this;
+    }
+
+    /**
+     * @param name placeholder name without the surrounding %
+     * @return true if the placeholder was registered in this instance
+     */
+    public boolean unregister(final String name) {
+        return resolvers.remove(name) != null | argumentResolvers.remove(name) != null;
+    }
+
+    @Nullable
+    public Resolver<? super C> get(final String name) {
+        final Resolver<? super C> resolver = resolvers.get(name);
+        if (resolver != null) {
+            return resolver;
+        }
+
+        final int separatorIndex = name.indexOf(':');
+        if (separatorIndex != -1) {
+            final ArgumentResolver<? super C> argumentResolver = argumentResolvers.get(name.substring(0, separatorIndex));
+            if (argumentResolver != null) {
+                final String argument = name.substring(separatorIndex + 1);
+                final Resolver<C> boundResolver = (builder, context) -> argumentResolver.append(builder, context, argument);
+                return boundResolver;
+            }
+        }
+        return parent != null ? parent.get(name) : null;
+    }
+
+    @FunctionalInterface
+    public interface Resolver<C> {
+
+        /**
+         * Appends the value of the placeholder, without creating intermediate strings where possible.
+         *
+         * @param builder builder to append to
+         * @param context render context
+         */
+        void append(StringBuilder builder, C context);
+    }
+
+    @FunctionalInterface
+    public interface ArgumentResolver<C> {
+
+        /**
+         * Appends the value of the placeholder for the given argument.
+         *
+         * @param builder  builder to append to
+         * @param context  render context
+         * @param argument argument after the colon
+         */
+        void append(StringBuilder builder, C context, String argument);
+    }
+}
@@ -22,26 +22,41 @@ import eu.kennytv.maintenance.api.ISettings;
 import eu.kennytv.maintenance.api.event.MaintenanceReloadedEvent;
 import eu.kennytv.maintenance.core.config.Config;
 import eu.kennytv.maintenance.core.config.ConfigSection;
+import eu.kennytv.maintenance.core.runnable.MaintenanceRunnable;
+import eu.kennytv.maintenance.core.storage.SQLiteStorageBackend;
+import eu.kennytv.maintenance.core.storage.StorageBackend;
+import eu.kennytv.maintenance.core.storage.YamlStorageBackend;
+import eu.kennytv.maintenance.core.text.RichText;
 import eu.kennytv.maintenance.core.util.ServerType;
+import eu.kennytv.maintenance.core.whitelist.WhitelistIndex;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 public class Settings implements ISettings {
-    private static final int CURRENT_CONFIG_VERSION = 5;
-    private static final Random RANDOM = new Random();
+    private static final int CURRENT_CONFIG_VERSION = 6;
     protected final MaintenancePlugin plugin;
-    private final Map<UUID, String> whitelistedPlayers = new HashMap<>();
+    // Changed by commands and background syncs while being read on login threads
+    // Replaced on every change, only written while holding the lock of this
+    private volatile WhitelistIndex whitelist = WhitelistIndex.EMPTY;
+    private final Map<String, MessageTemplate> templates = new ConcurrentHashMap<>();
+    private final Map<String, MessageTemplate> pingTemplates = new ConcurrentHashMap<>();
+    private final Placeholders<String> playerPlaceholders;
+    private final AtomicInteger pingResponseGeneration = new AtomicInteger();
     private final String[] unsupportedFields;
     protected boolean maintenance;
     private Set<Integer> broadcastIntervals;
@@ -61,14 +76,17 @@ public class Settings implements ISettings {
     private boolean kickOnlinePlayers;
     private boolean debug;
     private long savedEndtimer;
+    private long pingMessageFrameInterval;
+    private volatile PingResponse pingResponse;
 
     protected Config config;
     protected Config language;
-    protected Config whitelist;
+    private StorageBackend storage;
 
     public Settings(final MaintenancePlugin plugin, final String... unsupportedFields) {
         this.plugin = plugin;
         this.unsupportedFields = unsupportedFields;
+        this.playerPlaceholders = new Placeholders<String>(plugin.getPlaceholders()).register("PLAYER", StringBuilder::append);
         if (!plugin.getDataFolder().exists()) {
             updatePluginDirectory();
             plugin.getDataFolder().mkdirs();
@@ -86,12 +104,12 @@ public class Settings implements ISettings {
             config = new Config(new File(plugin.getDataFolder(), "config.yml"), unsupportedFields);
             config.load();
             config.resetAwesomeHeader();
-            whitelist = new Config(new File(plugin.getDataFolder(), "WhitelistedPlayers.yml"));
-            whitelist.load();
         } catch (final IOException e) {
             throw new RuntimeException("Unable to load Maintenance files!", e);
         }
 
+        loadStorage();
+
         loadSettings();
         createLanguageFile();
 
@@ -106,6 +124,9 @@ public class Settings implements ISettings {
 
         // Directly cache colored messages - this should not be saved!
         transformColoredMessages(language.getValues());
+        templates.clear();
+        pingTemplates.clear();
+        invalidatePingResponse();
 
         plugin.getEventManager().callEvent(new MaintenanceReloadedEvent());
     }
@@ -144,12 +165,82 @@ public class Settings implements ISettings {
         }
     }
 
-    private void saveWhitelistedPlayers() {
+    // Synchronized with the whitelist changes, so that none of them is saved in the closed storage
+    private synchronized void loadStorage() {
+        if (storage != null) {
+            storage.close();
+        }
+
+        final YamlStorageBackend yamlStorage = new YamlStorageBackend(plugin.getLogger(), config, new File(plugin.getDataFolder(), "WhitelistedPlayers.yml"));
+        try {
+            yamlStorage.open();
+        } catch (final IOException e) {
+            throw new RuntimeException("Unable to load Maintenance files!", e);
+        }
+
+        storage = yamlStorage;
+        final String storageType = config.getString("storage", "yaml");
+        if (!storageType.equalsIgnoreCase("sqlite")) return;
+
+        if (!SQLiteStorageBackend.isAvailable()) {
+            plugin.getLogger().warning("SQLite is not available on this platform, falling back to yaml storage!");
+            return;
+        }
+
+        final SQLiteStorageBackend sqliteStorage = new SQLiteStorageBackend(new File(plugin.getDataFolder(), "storage.db"));
         try {
-            whitelist.save();
+            sqliteStorage.open();
+            // Also run again if a previous import has failed
+            if (!sqliteStorage.isImported()) {
+                final int players = sqliteStorage.importFrom(yamlStorage);
+                if (players != 0) {
+                    plugin.getLogger().info("Imported " + players + " whitelisted players into the SQLite storage.");
+                }
+            }
         } catch (final IOException e) {
+            sqliteStorage.close();
+            plugin.getLogger().warning("Unable to open the SQLite storage, falling back to yaml storage!");
             e.printStackTrace();
+            return;
         }
+        yamlStorage.close();
+        storage = sqliteStorage;
+    }
+
+    /**
+     * Saves the maintenance state in the storage.
+     *
+     * @param maintenance new maintenance state
+     */
+    public void saveMaintenance(final boolean maintenance) {
+        try {
+            storage.saveMaintenance(maintenance);
+        } catch (final IOException e) {
+            plugin.getLogger().warning("Unable to save the maintenance state!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Saves the changed whitelist entries in the storage.
+     *
+     * @param changes uuids of changed players mapped to their names, or to null if they have been removed
+     */
+    protected void saveWhitelistChanges(final Map<UUID, String> changes) {
+        try {
+            storage.saveWhitelist(changes);
+        } catch (final IOException e) {
+            plugin.getLogger().warning("Unable to save the whitelist!");
+            e.printStackTrace();
+        }
+    }
+
+    protected StorageBackend getStorage() {
+        return storage;
+    }
+
+    synchronized void closeStorage() {
+        storage.close();
     }
 
     private void createLanguageFile() {
@@ -178,7 +269,8 @@ public class Settings implements ISettings {
         if (config.getBoolean("enable-timerspecific-messages")) {
             timerSpecificPingMessages = config.getStringList("timerspecific-pingmessages");
         }
-        maintenance = config.getBoolean("maintenance-enabled");
+        pingMessageFrameInterval = Math.max(0, config.getLong("pingmessage-frame-interval"));
+        maintenance = loadMaintenance();
         commandsOnMaintenanceEnable = config.getStringList("commands-on-maintenance-enable");
         commandsOnMaintenanceDisable = config.getStringList("commands-on-maintenance-disable");
         customPlayerCountMessage = config.getBoolean("enable-playercountmessage");
@@ -202,18 +294,33 @@ public class Settings implements ISettings {
             plugin.loadMaintenanceIcon();
         }
 
-        whitelistedPlayers.clear();
-        for (final Map.Entry<String, Object> entry : whitelist.getValues().entrySet()) {
-            try {
-                whitelistedPlayers.put(UUID.fromString(entry.getKey()), (String) entry.getValue());
-            } catch (final Exception e) {
-                plugin.getLogger().warning("invalid WhitelistedPlayers entry: " + entry.getKey());
-            }
+        WhitelistIndex whitelist = WhitelistIndex.EMPTY;
+        try {
+            whitelist = WhitelistIndex.of(storage.loadWhitelist());
+        } catch (final IOException e) {
+            plugin.getLogger().warning("Unable to load the whitelist!");
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            this.whitelist = whitelist;
         }
 
         loadExtraSettings();
     }
 
+    private boolean loadMaintenance() {
+        try {
+            final Boolean maintenance = storage.loadMaintenance();
+            if (maintenance != null) {
+                return maintenance;
+            }
+        } catch (final IOException e) {
+            plugin.getLogger().warning("Unable to load the maintenance state!");
+            e.printStackTrace();
+        }
+        return config.getBoolean("maintenance-enabled");
+    }
+
     private void updatePluginDirectory() {
         // All plugin identifiers were changed to 'Maintenance' ('maintenance' for Sponge and Velocity) in 3.0.5
         // Don't worry, this is only checked if no plugin folder is found
@@ -299,18 +406,15 @@ public class Settings implements ISettings {
         }
     }
 
-    private static final String ALL_CODES = "0123456789AaBbCcDdEeFfKkLlMmNnOoRr";
-
+    /**
+     * Translates legacy color codes, hex colors and gradients into § codes, see {@link RichText}.
+     * Only called when loading messages, platforms should cache components created from the result.
+     *
+     * @param s message with & color codes
+     * @return message with § color codes
+     */
     public String getColoredString(final String s) {
-        // Method taken from Bungee
-        final char[] b = s.toCharArray();
-        for (int i = 0; i < b.length - 1; i++) {
-            if (b[i] == '&' && ALL_CODES.indexOf(b[i + 1]) > -1) {
-                b[i] = '§';
-                b[i + 1] = Character.toLowerCase(b[i + 1]);
-            }
-        }
-        return new String(b);
+        return RichText.parse(s).toLegacy();
     }
 
     public String getConfigString(final String path) {
@@ -335,64 +439,252 @@ public class Settings implements ISettings {
         return s;
     }
 
+    /**
+     * Returns the parsed message, cached until the next reload.
+     *
+     * @param path path of the message in the language file
+     * @return parsed message
+     */
+    public MessageTemplate getTemplate(final String path) {
+        MessageTemplate template = templates.get(path);
+        if (template == null) {
+            template = MessageTemplate.of(getMessage(path));
+            templates.put(path, template);
+        }
+        return template;
+    }
+
+    /**
+     * Returns the parsed ping message, cached until the next reload.
+     *
+     * @param message motd or playercount message from the config
+     * @return parsed message
+     */
+    public MessageTemplate getPingTemplate(final String message) {
+        MessageTemplate template = pingTemplates.get(message);
+        if (template == null) {
+            template = MessageTemplate.of(message);
+            pingTemplates.put(message, template);
+        }
+        return template;
+    }
+
+    /**
+     * Returns the parsed message, or the one of the fallback path if it is not set, cached until the next reload.
+     *
+     * @param path         path of the message in the language file
+     * @param fallbackPath path of the message used if the first one is missing
+     * @return parsed message
+     */
+    public MessageTemplate getTemplate(final String path, final String fallbackPath) {
+        MessageTemplate template = templates.get(path);
+        if (template == null) {
+            final String message = language.getString(path);
+            template = message != null ? MessageTemplate.of(message) : getTemplate(fallbackPath);
+            templates.put(path, template);
+        }
+        return template;
+    }
+
     public String getRandomPingMessage() {
-        if (plugin.isTaskRunning() && !plugin.getRunnable().shouldEnable()
-                && hasTimerSpecificPingMessages() && !timerSpecificPingMessages.isEmpty()) {
-            return getPingMessage(timerSpecificPingMessages);
+        return getPingResponse().getMotd();
+    }
+
+    /**
+     * Returns the current ping response, only rebuilding it after it has been invalidated
+     * or if it includes the playercount and that has changed since.
+     *
+     * @return current ping response
+     * @see #invalidatePingResponse()
+     */
+    public PingResponse getPingResponse() {
+        final PingResponse response = pingResponse;
+        if (isUpToDate(response)) {
+            return response;
         }
-        return pingMessages.isEmpty() ? "" : getPingMessage(pingMessages);
+
+        // Get the generation first, so that an invalidation during creation is never lost
+        final int generation = pingResponseGeneration.get();
+        final MaintenanceRunnable runnable = plugin.getRunnable();
+        final List<String> rawMotds = runnable != null && !runnable.shouldEnable()
+                && hasTimerSpecificPingMessages() && !timerSpecificPingMessages.isEmpty() ? timerSpecificPingMessages : pingMessages;
+        final PingResponse newResponse = createPingResponse(generation, rawMotds, plugin::replacePingVariables, null);
+        pingResponse = newResponse;
+        return newResponse;
+    }
+
+    /**
+     * @param response ping response, may be null
+     * @return true if the response is neither null nor invalidated, and the playercount used in it is still up to date
+     */
+    protected boolean isUpToDate(@Nullable final PingResponse response) {
+        return response != null && response.generation == pingResponseGeneration.get()
+                && !(response.isPlayerCountDependent() && response.isOutdated(plugin.getDisplayedOnlinePlayers(), plugin.getMaxPlayers()));
     }
 
-    private String getPingMessage(final List<String> list) {
-        final String s = list.size() == 1 ? list.get(0) : list.get(RANDOM.nextInt(list.size()));
-        return getColoredString(replaceNewlineVar(plugin.replacePingVariables(s)));
+    /**
+     * @return current generation of ping responses, to be read before any value used in a new response
+     */
+    protected int getPingResponseGeneration() {
+        return pingResponseGeneration.get();
+    }
+
+    /**
+     * Marks the current ping response as outdated, to be rebuilt on the next ping.
+     * This has to be called whenever one of the messages or variables used in it changes.
+     */
+    public void invalidatePingResponse() {
+        pingResponseGeneration.incrementAndGet();
+    }
+
+    /**
+     * Creates a new ping response from the given motds and the playercount messages.
+     *
+     * @param generation       generation read before any of the other values
+     * @param rawMotds         uncolored motds
+     * @param variableReplacer function replacing the variables in all messages
+     * @param server           proxied server the response is created for, or null if it is the global response
+     * @return new ping response
+     */
+    protected PingResponse createPingResponse(final int generation, final List<String> rawMotds,
+                                              final Function<String, String> variableReplacer, @Nullable final String server) {
+        final int onlinePlayers = plugin.getDisplayedOnlinePlayers();
+        final int maxPlayers = plugin.getMaxPlayers();
+        final String[] motds;
+        boolean playerCountDependent = containsPlayerCount(playerCountHoverMessage);
+        if (rawMotds.isEmpty()) {
+            motds = new String[]{""};
+        } else {
+            motds = new String[rawMotds.size()];
+            for (int i = 0; i < motds.length; i++) {
+                final String motd = rawMotds.get(i);
+                playerCountDependent |= containsPlayerCount(motd);
+                motds[i] = getColoredString(replaceNewlineVar(variableReplacer.apply(motd)));
+            }
+        }
+
+        String versionName = null;
+        if (customPlayerCountMessage && playerCountMessage != null) {
+            playerCountDependent |= containsPlayerCount(playerCountMessage);
+            versionName = variableReplacer.apply(playerCountMessage);
+        }
+
+        final String[] hoverLines = variableReplacer.apply(playerCountHoverMessage).split("\n");
+        return new PingResponse(motds, hoverLines, versionName, server, playerCountDependent, onlinePlayers, maxPlayers, pingMessageFrameInterval, generation);
+    }
+
+    private boolean containsPlayerCount(final String s) {
+        return s.contains("%ONLINE%") || s.contains("%MAX%");
     }
 
     @Override
-    public boolean removeWhitelistedPlayer(final UUID uuid) {
-        if (!whitelistedPlayers.containsKey(uuid)) return false;
-        whitelistedPlayers.remove(uuid);
-        whitelist.remove(uuid.toString());
-        saveWhitelistedPlayers();
+    public synchronized boolean removeWhitelistedPlayer(final UUID uuid) {
+        if (!whitelist.contains(uuid)) return false;
+        changeWhitelist(uuid, null);
         return true;
     }
 
     @Deprecated
     @Override
-    public boolean removeWhitelistedPlayer(final String name) {
-        UUID uuid = null;
-        for (final Map.Entry<UUID, String> e : whitelistedPlayers.entrySet()) {
-            if (e.getValue().equalsIgnoreCase(name)) {
-                uuid = e.getKey();
-                break;
-            }
-        }
-
+    public synchronized boolean removeWhitelistedPlayer(final String name) {
+        final UUID uuid = whitelist.getUuid(name);
         if (uuid == null) return false;
-
-        whitelistedPlayers.remove(uuid);
-        whitelist.remove(uuid.toString());
-        saveWhitelistedPlayers();
+        changeWhitelist(uuid, null);
         return true;
     }
 
     @Override
-    public boolean addWhitelistedPlayer(final UUID uuid, final String name) {
-        final boolean contains = !whitelistedPlayers.containsKey(uuid);
-        whitelistedPlayers.put(uuid, name);
-        whitelist.set(uuid.toString(), name);
-        saveWhitelistedPlayers();
+    public synchronized boolean addWhitelistedPlayer(final UUID uuid, final String name) {
+        final boolean contains = !whitelist.contains(uuid);
+        changeWhitelist(uuid, name);
         return contains;
     }
 
+    /**
+     * Adds or renames all given players at once, saving the whitelist only once.
+     *
+     * @param players uuids of players mapped to their names
+     * @return amount of players that have not been whitelisted before
+     */
+    public synchronized int addWhitelistedPlayers(final Map<UUID, String> players) {
+        final WhitelistIndex whitelist = this.whitelist;
+        final Map<UUID, String> changes = new HashMap<>();
+        int added = 0;
+        for (final Map.Entry<UUID, String> entry : players.entrySet()) {
+            final String name = whitelist.get(entry.getKey());
+            if (name == null) {
+                added++;
+            } else if (name.equals(entry.getValue())) {
+                continue;
+            }
+            changes.put(entry.getKey(), entry.getValue());
+        }
+
+        if (!changes.isEmpty()) {
+            this.whitelist = whitelist.withChanges(changes);
+            saveWhitelistChanges(changes);
+            whitelistChanged(changes);
+        }
+        return added;
+    }
+
+    private void changeWhitelist(final UUID uuid, @Nullable final String name) {
+        final Map<UUID, String> change = Collections.singletonMap(uuid, name);
+        whitelist = whitelist.withChanges(change);
+        saveWhitelistChanges(change);
+        whitelistChanged(change);
+    }
+
+    /**
+     * Called after the whitelist has been changed on this server, e.g. to share the changes with other servers.
+     *
+     * @param changes uuids of changed players mapped to their names, or to null if they have been removed
+     */
+    protected void whitelistChanged(final Map<UUID, String> changes) {
+    }
+
+    /**
+     * Applies changes made on another server and saves them, without calling {@link #whitelistChanged(Map)}.
+     *
+     * @param changes uuids of changed players mapped to their names, or to null if they have been removed
+     */
+    protected synchronized void applyWhitelistChanges(final Map<UUID, String> changes) {
+        final WhitelistIndex whitelist = this.whitelist;
+        final Map<UUID, String> applied = new HashMap<>();
+        for (final Map.Entry<UUID, String> entry : changes.entrySet()) {
+            if (!Objects.equals(entry.getValue(), whitelist.get(entry.getKey()))) {
+                applied.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (applied.isEmpty()) return;
+
+        this.whitelist = whitelist.withChanges(applied);
+        saveWhitelistChanges(applied);
+    }
+
+    /**
+     * Replaces the whole whitelist with the one of another source, without calling {@link #whitelistChanged(Map)}.
+     *
+     * @param players uuids of all whitelisted players mapped to their names
+     */
+    protected synchronized void replaceWhitelistedPlayers(final Map<UUID, String> players) {
+        final Map<UUID, String> changes = new HashMap<>(players);
+        for (final UUID uuid : whitelist.keySet()) {
+            if (!players.containsKey(uuid)) {
+                changes.put(uuid, null);
+            }
+        }
+        applyWhitelistChanges(changes);
+    }
+
     @Override
-    public Map<UUID, String> getWhitelistedPlayers() {
-        return whitelistedPlayers;
+    public WhitelistIndex getWhitelistedPlayers() {
+        return whitelist;
     }
 
     @Override
     public boolean isWhitelisted(final UUID uuid) {
-        return whitelistedPlayers.containsKey(uuid);
+        return whitelist.contains(uuid);
     }
 
     @Override
@@ -486,7 +778,11 @@ public class Settings implements ISettings {
     }
 
     public String getKickMessage() {
-        return plugin.replacePingVariables(getMessage("kickmessage"));
+        return getTemplate("kickmessage").render(plugin.getPlaceholders(), null);
+    }
+
+    public String getJoinNotification(final String playerName) {
+        return getTemplate("joinNotification").render(playerPlaceholders, playerName);
     }
 
     public String getLanguage() {
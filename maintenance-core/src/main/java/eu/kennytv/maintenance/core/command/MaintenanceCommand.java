@@ -35,6 +35,8 @@ import eu.kennytv.maintenance.core.command.subcommand.ToggleCommand;
 import eu.kennytv.maintenance.core.command.subcommand.UpdateCommand;
 import eu.kennytv.maintenance.core.command.subcommand.WhitelistAddCommand;
 import eu.kennytv.maintenance.core.command.subcommand.WhitelistCommand;
+import eu.kennytv.maintenance.core.command.subcommand.WhitelistExportCommand;
+import eu.kennytv.maintenance.core.command.subcommand.WhitelistImportCommand;
 import eu.kennytv.maintenance.core.command.subcommand.WhitelistRemoveCommand;
 import eu.kennytv.maintenance.core.util.SenderInfo;
 import eu.kennytv.maintenance.core.util.ServerType;
@@ -64,9 +66,14 @@ public abstract class MaintenanceCommand {
 
         addToggleAndTimerCommands();
 
-        add(new WhitelistCommand(plugin), "whitelist");
+        // Import and export are run as subcommands of the whitelist command
+        final WhitelistImportCommand importCommand = new WhitelistImportCommand(plugin);
+        final WhitelistExportCommand exportCommand = new WhitelistExportCommand(plugin);
+        add(new WhitelistCommand(plugin, importCommand, exportCommand), "whitelist");
         add(new WhitelistAddCommand(plugin), "add");
         add(new WhitelistRemoveCommand(plugin), "remove");
+        add(importCommand);
+        add(exportCommand);
 
         add(new SetMotdCommand(plugin), "setmotd");
         add(new RemoveMotdCommand(plugin), "removemotd");
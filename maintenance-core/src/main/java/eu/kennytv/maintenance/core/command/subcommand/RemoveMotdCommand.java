@@ -68,6 +68,7 @@ public final class RemoveMotdCommand extends CommandInfo {
         pingMessages.remove(index - 1);
         settings.getConfig().set(timerPingMessages ? "timerspecific-pingmessages" : "pingmessages", pingMessages);
         settings.saveConfig();
+        settings.invalidatePingResponse();
         sender.sendMessage(getMessage("removedMotd").replace("%INDEX%", args[1]));
     }
 
@@ -91,6 +91,7 @@ public final class SetMotdCommand extends CommandInfo {
 
         settings.getConfig().set(timerPingMessages ? "timerspecific-pingmessages" : "pingmessages", pingMessages);
         settings.saveConfig();
+        settings.invalidatePingResponse();
         sender.sendMessage(settings.getMessage("setMotd").replace("%LINE%", args[2]).replace("%INDEX%", args[1])
                 .replace("%MOTD%", "§f" + settings.getColoredString(message)));
     }
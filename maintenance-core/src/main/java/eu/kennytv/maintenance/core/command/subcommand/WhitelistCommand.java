@@ -22,17 +22,41 @@ import eu.kennytv.maintenance.core.MaintenancePlugin;
 import eu.kennytv.maintenance.core.command.CommandInfo;
 import eu.kennytv.maintenance.core.util.SenderInfo;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 public final class WhitelistCommand extends CommandInfo {
+    private final CommandInfo importCommand;
+    private final CommandInfo exportCommand;
 
-    public WhitelistCommand(final MaintenancePlugin plugin) {
-        super(plugin, "whitelist.list");
+    public WhitelistCommand(final MaintenancePlugin plugin, final CommandInfo importCommand, final CommandInfo exportCommand) {
+        super(plugin, null);
+        this.importCommand = importCommand;
+        this.exportCommand = exportCommand;
+    }
+
+    @Override
+    public boolean hasPermission(final SenderInfo sender) {
+        return sender.hasMaintenancePermission("whitelist.list") || importCommand.hasPermission(sender) || exportCommand.hasPermission(sender);
     }
 
     @Override
     public void execute(final SenderInfo sender, final String[] args) {
+        if (args.length > 1 && (args[1].equalsIgnoreCase("import") || args[1].equalsIgnoreCase("export"))) {
+            final CommandInfo command = args[1].equalsIgnoreCase("import") ? importCommand : exportCommand;
+            if (!command.hasPermission(sender)) {
+                sender.sendMessage(getMessage("noPermission"));
+                return;
+            }
+
+            command.execute(sender, args);
+            return;
+        }
+
+        if (checkPermission(sender, "whitelist.list")) return;
         if (checkArgs(sender, args, 1)) return;
 
         final Map<UUID, String> players = getSettings().getWhitelistedPlayers();
@@ -49,4 +73,18 @@ public final class WhitelistCommand extends CommandInfo {
 
         sender.sendMessage("");
     }
+
+    @Override
+    public List<String> getTabCompletion(final SenderInfo sender, final String[] args) {
+        if (args.length != 2) return Collections.emptyList();
+
+        final List<String> list = new ArrayList<>();
+        if (importCommand.hasPermission(sender) && "import".startsWith(args[1].toLowerCase())) {
+            list.add("import");
+        }
+        if (exportCommand.hasPermission(sender) && "export".startsWith(args[1].toLowerCase())) {
+            list.add("export");
+        }
+        return list;
+    }
 }
@@ -0,0 +1,73 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.command.subcommand;
+
+import eu.kennytv.maintenance.core.MaintenancePlugin;
+import eu.kennytv.maintenance.core.command.CommandInfo;
+import eu.kennytv.maintenance.core.util.SenderInfo;
+import eu.kennytv.maintenance.core.whitelist.WhitelistFile;
+import eu.kennytv.maintenance.core.whitelist.WhitelistIndex;
+
+import java.io.File;
+import java.io.IOException;
+
+public final class WhitelistExportCommand extends CommandInfo {
+
+    public WhitelistExportCommand(final MaintenancePlugin plugin) {
+        super(plugin, "whitelist.export");
+    }
+
+    @Override
+    public void execute(final SenderInfo sender, final String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            sender.sendMessage(getHelpMessage());
+            return;
+        }
+
+        final File file;
+        try {
+            file = WhitelistFile.resolve(plugin.getDataFolder(), args.length == 3 ? args[2] : "whitelist-export.json");
+        } catch (final IOException e) {
+            sender.sendMessage(getMessage("whitelistFileNotFound"));
+            return;
+        }
+        if (file == null || file.isDirectory()) {
+            sender.sendMessage(getMessage("whitelistFileNotFound"));
+            return;
+        }
+        if (!WhitelistFile.isWhitelistFile(file)) {
+            sender.sendMessage(getMessage("whitelistExportInvalidFile"));
+            return;
+        }
+
+        // Unmodifiable snapshot, can be written without blocking whitelist changes
+        final WhitelistIndex players = getSettings().getWhitelistedPlayers();
+        plugin.async(() -> {
+            try {
+                WhitelistFile.write(file, players);
+                sender.sendMessage(getMessage("whitelistExported").replace("%AMOUNT%", Integer.toString(players.size()))
+                        .replace("%FILE%", file.getName()));
+            } catch (final IOException e) {
+                plugin.getLogger().warning("Unable to export the whitelist into " + file.getName() + "!");
+                e.printStackTrace();
+                sender.sendMessage(getMessage("whitelistExportFailed"));
+            }
+        });
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.command.subcommand;
+
+import eu.kennytv.maintenance.core.MaintenancePlugin;
+import eu.kennytv.maintenance.core.command.CommandInfo;
+import eu.kennytv.maintenance.core.util.SenderInfo;
+import eu.kennytv.maintenance.core.whitelist.WhitelistFile;
+import eu.kennytv.maintenance.core.whitelist.WhitelistImporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public final class WhitelistImportCommand extends CommandInfo {
+    // Names waiting for their uuid at the same time, looked up in batches by the resolver
+    private static final int MAX_LOOKUPS = 100;
+    private static final int MAX_LISTED_PLAYERS = 10;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public WhitelistImportCommand(final MaintenancePlugin plugin) {
+        super(plugin, "whitelist.import");
+    }
+
+    @Override
+    public void execute(final SenderInfo sender, final String[] args) {
+        if (checkArgs(sender, args, 3)) return;
+
+        final File file;
+        try {
+            file = WhitelistFile.resolve(plugin.getDataFolder(), args[2]);
+        } catch (final IOException e) {
+            sender.sendMessage(getMessage("whitelistFileNotFound"));
+            return;
+        }
+        if (file == null || !file.isFile()) {
+            sender.sendMessage(getMessage("whitelistFileNotFound"));
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            sender.sendMessage(getMessage("whitelistImportRunning"));
+            return;
+        }
+
+        sender.sendMessage(getMessage("whitelistImportStarted").replace("%FILE%", file.getName()));
+        plugin.async(() -> {
+            try {
+                importPlayers(sender, file);
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    private void importPlayers(final SenderInfo sender, final File file) {
+        final WhitelistImporter importer = new WhitelistImporter(plugin.getUuidResolver()::resolve, MAX_LOOKUPS,
+                amount -> sender.sendMessage(getMessage("whitelistImportProgress").replace("%AMOUNT%", Integer.toString(amount))));
+        final WhitelistImporter.Result result;
+        try {
+            result = importer.read(file);
+        } catch (final IOException | RuntimeException e) {
+            plugin.getLogger().warning("Unable to import the whitelist file " + file.getName() + "!");
+            e.printStackTrace();
+            sender.sendMessage(getMessage("whitelistImportFailed"));
+            return;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // Saved all at once
+        final int added = getSettings().addWhitelistedPlayers(result.getPlayers());
+        sender.sendMessage(getMessage("whitelistImported").replace("%AMOUNT%", Integer.toString(result.getPlayers().size()))
+                .replace("%ADDED%", Integer.toString(added)));
+
+        final List<String> unresolved = result.getUnresolved();
+        if (!unresolved.isEmpty()) {
+            String players = String.join(", ", unresolved.subList(0, Math.min(MAX_LISTED_PLAYERS, unresolved.size())));
+            if (unresolved.size() > MAX_LISTED_PLAYERS) {
+                players += ", ...";
+            }
+            sender.sendMessage(getMessage("whitelistImportUnresolved").replace("%AMOUNT%", Integer.toString(unresolved.size()))
+                    .replace("%PLAYERS%", players));
+        }
+    }
+}
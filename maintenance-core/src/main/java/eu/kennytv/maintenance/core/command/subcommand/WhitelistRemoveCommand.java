@@ -60,9 +60,10 @@ public final class WhitelistRemoveCommand extends CommandInfo {
     }
 
     private void removePlayerFromWhitelist(final SenderInfo sender, final String name) {
-        final SenderInfo selected = plugin.getOfflinePlayer(name);
+        final SenderInfo selected = plugin.getCachedPlayer(name);
         if (selected == null) {
-            if (getSettings().removeWhitelistedPlayer(name)) {
+            final UUID uuid = getSettings().getWhitelistedPlayers().getUuid(name);
+            if (uuid != null && getSettings().removeWhitelistedPlayer(uuid)) {
                 sender.sendMessage(getMessage("whitelistRemoved").replace("%PLAYER%", name));
             } else {
                 sender.sendMessage(getMessage("whitelistNotFound"));
@@ -109,6 +109,20 @@ public final class Config extends ConfigSection {
         Files.write(file.toPath(), bytes);
     }
 
+    /**
+     * Creates a copy of the current top level values, e.g. to save them on another thread while this config keeps being changed.
+     *
+     * @param file file of the copy
+     * @return copy of this config
+     */
+    public Config copy(final File file) {
+        final Config config = new Config(file);
+        config.values = new LinkedHashMap<>(values);
+        config.comments = new HashMap<>(comments);
+        config.header = header;
+        return config;
+    }
+
     public boolean addMissingFields(final Map<String, Object> fields, final Map<String, String[]> comments) {
         // Note: Only scans for the first two levels
         boolean changed = false;
@@ -150,6 +164,10 @@ public final class Config extends ConfigSection {
         this.header = null;
     }
 
+    public File getFile() {
+        return file;
+    }
+
     public Map<String, String[]> getComments() {
         return comments;
     }
@@ -0,0 +1,58 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.icon;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the loaded platform favicons and rotates through them on every ping.
+ *
+ * @param <T> platform favicon type
+ */
+public final class FaviconRotation<T> {
+    private final AtomicInteger counter = new AtomicInteger();
+    private volatile List<T> favicons = Collections.emptyList();
+
+    /**
+     * @param favicons new favicons, must not be modified afterwards
+     */
+    public void set(final List<T> favicons) {
+        this.favicons = favicons;
+    }
+
+    /**
+     * @return next favicon, or null if none are loaded
+     */
+    @Nullable
+    public T next() {
+        final List<T> favicons = this.favicons;
+        switch (favicons.size()) {
+            case 0:
+                return null;
+            case 1:
+                return favicons.get(0);
+            default:
+                return favicons.get((counter.getAndIncrement() & Integer.MAX_VALUE) % favicons.size());
+        }
+    }
+}
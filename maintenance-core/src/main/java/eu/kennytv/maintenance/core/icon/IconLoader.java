@@ -0,0 +1,202 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.icon;
+
+import eu.kennytv.maintenance.core.MaintenancePlugin;
+import org.jetbrains.annotations.Nullable;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Loads the maintenance icons from the plugin folder, scaled to 64x64 and encoded.
+ * Encoded icons are cached on disk by the hash of their file, so unchanged icons are never decoded again.
+ */
+public final class IconLoader {
+    private static final String ICON_NAME = "maintenance-icon";
+    static final String SERVER_ICON_FOLDER = "server-icons";
+    private static final int SIZE = 64;
+    private final MaintenancePlugin plugin;
+
+    public IconLoader(final MaintenancePlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * @param name file name
+     * @return true if the file is 'maintenance-icon.png' or another icon like 'maintenance-icon-2.png'
+     */
+    public static boolean isIconFile(final String name) {
+        return name.startsWith(ICON_NAME) && name.endsWith(".png")
+                && (name.length() == ICON_NAME.length() + 4 || name.charAt(ICON_NAME.length()) == '-');
+    }
+
+    /**
+     * Loads all icons, should only be called asynchronously.
+     *
+     * @return loaded icons, sorted by file name
+     */
+    public List<MaintenanceIcon> loadIcons() {
+        final File[] files = plugin.getDataFolder().listFiles((dir, name) -> isIconFile(name));
+        if (files == null || files.length == 0) {
+            plugin.getLogger().warning("Could not find a 'maintenance-icon.png' file - did you create one in the plugin's folder?");
+            return new ArrayList<>();
+        }
+
+        Arrays.sort(files);
+        final List<MaintenanceIcon> icons = new ArrayList<>(files.length);
+        for (final File file : files) {
+            final MaintenanceIcon icon = tryLoadIcon(file);
+            if (icon != null) {
+                icons.add(icon);
+            }
+        }
+        return icons;
+    }
+
+    /**
+     * Loads the icons of proxied servers from the 'server-icons' folder, should only be called asynchronously.
+     *
+     * @return map of server names to their icons, empty if the folder does not exist
+     */
+    public Map<String, MaintenanceIcon> loadServerIcons() {
+        final File[] files = new File(plugin.getDataFolder(), SERVER_ICON_FOLDER).listFiles((dir, name) -> name.endsWith(".png"));
+        if (files == null || files.length == 0) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, MaintenanceIcon> icons = new HashMap<>();
+        for (final File file : files) {
+            final MaintenanceIcon icon = tryLoadIcon(file);
+            if (icon != null) {
+                icons.put(file.getName().substring(0, file.getName().length() - 4), icon);
+            }
+        }
+        return icons;
+    }
+
+    /**
+     * Removes cached versions of icons that are no longer used.
+     *
+     * @param icons all currently loaded icons
+     */
+    public void removeOldCacheFiles(final Collection<MaintenanceIcon> icons) {
+        final Set<String> cacheFiles = new HashSet<>();
+        for (final MaintenanceIcon icon : icons) {
+            cacheFiles.add(icon.getHash() + ".txt");
+        }
+
+        final File[] oldFiles = new File(plugin.getDataFolder(), "icon-cache").listFiles((dir, name) -> !cacheFiles.contains(name));
+        if (oldFiles != null) {
+            for (final File file : oldFiles) {
+                file.delete();
+            }
+        }
+    }
+
+    @Nullable
+    private MaintenanceIcon tryLoadIcon(final File file) {
+        try {
+            return loadIcon(new File(plugin.getDataFolder(), "icon-cache"), file);
+        } catch (final Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Could not load the '" + file.getName() + "' file!");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private MaintenanceIcon loadIcon(final File cacheFolder, final File file) throws IOException {
+        final byte[] bytes = Files.readAllBytes(file.toPath());
+        final String hash = hash(bytes);
+        final File cacheFile = new File(cacheFolder, hash + ".txt");
+        if (cacheFile.exists()) {
+            final String encoded = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+            if (encoded.startsWith(MaintenanceIcon.PREFIX)) {
+                return new MaintenanceIcon(hash, encoded);
+            }
+        }
+
+        final BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new IOException("Unsupported image format");
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(scale(image), "png", out);
+        final String encoded = MaintenanceIcon.PREFIX + Base64.getEncoder().encodeToString(out.toByteArray());
+
+        // Write to a temporary file first, so that a half written cache file is never read
+        cacheFolder.mkdirs();
+        final File tempFile = new File(cacheFolder, hash + ".tmp");
+        Files.write(tempFile.toPath(), encoded.getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return new MaintenanceIcon(hash, encoded);
+    }
+
+    private static BufferedImage scale(final BufferedImage image) {
+        if (image.getWidth() == SIZE && image.getHeight() == SIZE && image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            return image;
+        }
+
+        final BufferedImage scaled = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(image, 0, 0, SIZE, SIZE, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    private static String hash(final byte[] bytes) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final StringBuilder builder = new StringBuilder(40);
+        for (final byte b : digest.digest(bytes)) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
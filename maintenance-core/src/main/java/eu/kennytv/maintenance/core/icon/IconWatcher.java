@@ -0,0 +1,123 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.icon;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Watches the plugin folder and its 'server-icons' folder for changed icon files in its own daemon thread.
+ */
+public final class IconWatcher implements Runnable {
+    private final Path folder;
+    private final Path serverIconFolder;
+    private final Runnable onChange;
+    private volatile WatchService watchService;
+    // Only used by the watcher thread after starting
+    private WatchKey serverIconKey;
+
+    public IconWatcher(final Path folder, final Runnable onChange) {
+        this.folder = folder;
+        this.serverIconFolder = folder.resolve(IconLoader.SERVER_ICON_FOLDER);
+        this.onChange = onChange;
+    }
+
+    public void start() throws IOException {
+        final WatchService watchService = folder.getFileSystem().newWatchService();
+        this.watchService = watchService;
+        try {
+            register(folder);
+            registerServerIconFolder();
+        } catch (final IOException e) {
+            close();
+            throw e;
+        }
+
+        final Thread thread = new Thread(this, "Maintenance Icon Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                final WatchKey key = watchService.take();
+                boolean changed = false;
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || isIconEvent(key, event.context().toString())) {
+                        changed = true;
+                    }
+                }
+                // The server icon folder may be deleted and created again
+                if (!key.reset() && key != serverIconKey) return;
+                if (!changed) continue;
+
+                // Give the file some time to be written completely and skip the events caused by that
+                Thread.sleep(500);
+                WatchKey nextKey;
+                while ((nextKey = watchService.poll()) != null) {
+                    nextKey.pollEvents();
+                    nextKey.reset();
+                }
+
+                registerServerIconFolder();
+                onChange.run();
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    public void close() {
+        final WatchService watchService = this.watchService;
+        if (watchService == null) return;
+
+        try {
+            watchService.close();
+        } catch (final IOException ignored) {
+        }
+    }
+
+    private boolean isIconEvent(final WatchKey key, final String name) {
+        if (key == serverIconKey) {
+            return name.endsWith(".png");
+        }
+        return name.equals(IconLoader.SERVER_ICON_FOLDER) || IconLoader.isIconFile(name);
+    }
+
+    private void registerServerIconFolder() {
+        if (serverIconKey != null && serverIconKey.isValid() || !Files.isDirectory(serverIconFolder)) return;
+
+        try {
+            serverIconKey = register(serverIconFolder);
+        } catch (final IOException ignored) {
+            // Its icons are then only loaded again by a reload
+        }
+    }
+
+    private WatchKey register(final Path path) throws IOException {
+        return path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+}
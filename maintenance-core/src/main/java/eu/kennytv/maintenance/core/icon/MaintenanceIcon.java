@@ -0,0 +1,64 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.icon;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * A 64x64 server icon, already encoded the way it is sent in a ping.
+ */
+public final class MaintenanceIcon {
+    public static final String PREFIX = "data:image/png;base64,";
+    private final String hash;
+    private final String encoded;
+
+    MaintenanceIcon(final String hash, final String encoded) {
+        this.hash = hash;
+        this.encoded = encoded;
+    }
+
+    /**
+     * @return hash of the original icon file
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return base64 encoded png, including the data url prefix
+     */
+    public String getEncoded() {
+        return encoded;
+    }
+
+    /**
+     * Decodes the icon again, for platforms not accepting an already encoded icon.
+     *
+     * @return decoded 64x64 image
+     * @throws IOException if the image could not be read
+     */
+    public BufferedImage toImage() throws IOException {
+        final byte[] bytes = Base64.getDecoder().decode(encoded.substring(PREFIX.length()));
+        return ImageIO.read(new ByteArrayInputStream(bytes));
+    }
+}
@@ -27,6 +27,15 @@ public class MaintenanceRunnable extends MaintenanceRunnableBase {
         super(plugin, settings, seconds, enable);
     }
 
+    @Override
+    public void run() {
+        if (isCompleting()) return;
+
+        super.run();
+        // Update the timer variable in ping messages
+        settings.invalidatePingResponse();
+    }
+
     @Override
     protected void finish() {
         plugin.setMaintenance(enable);
@@ -34,11 +43,11 @@ public class MaintenanceRunnable extends MaintenanceRunnableBase {
 
     @Override
     protected String getStartMessage() {
-        return settings.getMessage("starttimerBroadcast").replace("%TIME%", getTime());
+        return settings.getTemplate("starttimerBroadcast").render(PLACEHOLDERS, this);
     }
 
     @Override
     protected String getEndMessage() {
-        return settings.getMessage("endtimerBroadcast").replace("%TIME%", getTime());
+        return settings.getTemplate("endtimerBroadcast").render(PLACEHOLDERS, this);
     }
 }
@@ -19,37 +19,55 @@
 package eu.kennytv.maintenance.core.runnable;
 
 import eu.kennytv.maintenance.core.MaintenancePlugin;
+import eu.kennytv.maintenance.core.Placeholders;
 import eu.kennytv.maintenance.core.Settings;
 import eu.kennytv.maintenance.core.util.Task;
 
 public abstract class MaintenanceRunnableBase implements Runnable {
+    protected static final Placeholders<MaintenanceRunnableBase> PLACEHOLDERS = new Placeholders<MaintenanceRunnableBase>()
+            .register("TIME", (builder, runnable) -> builder.append(runnable.getTime()));
     protected final MaintenancePlugin plugin;
     protected final Settings settings;
     private final Task task;
     protected boolean enable;
     protected int seconds;
+    private boolean completing;
+    private volatile TimerState state;
 
     protected MaintenanceRunnableBase(final MaintenancePlugin plugin, final Settings settings, final int seconds, final boolean enable) {
         this.plugin = plugin;
         this.settings = settings;
         this.seconds = seconds;
         this.enable = enable;
+        publishState();
         this.task = plugin.startMaintenanceRunnable(this);
     }
 
     @Override
     public void run() {
+        if (completing) return;
         if (seconds == 0) {
-            finish();
-        } else if (settings.getBroadcastIntervals().contains(seconds)) {
+            // Stays at 0 until the result has been applied, which may happen on another thread
+            completing = true;
+            plugin.completeTimer(this, this::finish);
+            return;
+        }
+
+        if (settings.getBroadcastIntervals().contains(seconds)) {
             broadcast(enable ? getStartMessage() : getEndMessage());
         }
 
         seconds--;
+        publishState();
+    }
+
+    private void publishState() {
+        // Only ever written by the scheduler thread, read from any thread
+        state = new TimerState(seconds, plugin.getTimerMessage(seconds), plugin.getFormattedTime(seconds));
     }
 
     public String getTime() {
-        return plugin.getFormattedTime(seconds);
+        return state.getFormattedTime();
     }
 
     public boolean shouldEnable() {
@@ -57,7 +75,21 @@ public abstract class MaintenanceRunnableBase implements Runnable {
     }
 
     public int getSecondsLeft() {
-        return seconds;
+        return state.getSecondsLeft();
+    }
+
+    /**
+     * @return the timer state of the current tick
+     */
+    public TimerState getTimerState() {
+        return state;
+    }
+
+    /**
+     * @return true if the timer has run out and its result is being applied
+     */
+    protected boolean isCompleting() {
+        return completing;
     }
 
     public Task getTask() {
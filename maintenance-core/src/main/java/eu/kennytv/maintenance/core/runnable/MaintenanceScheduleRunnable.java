@@ -19,11 +19,14 @@
 package eu.kennytv.maintenance.core.runnable;
 
 import eu.kennytv.maintenance.core.MaintenancePlugin;
+import eu.kennytv.maintenance.core.Placeholders;
 import eu.kennytv.maintenance.core.Settings;
 
 import java.util.concurrent.TimeUnit;
 
 public final class MaintenanceScheduleRunnable extends MaintenanceRunnable {
+    private static final Placeholders<MaintenanceScheduleRunnable> SCHEDULE_PLACEHOLDERS = new Placeholders<MaintenanceScheduleRunnable>(PLACEHOLDERS)
+            .register("DURATION", (builder, runnable) -> builder.append(runnable.plugin.getFormattedTime(runnable.maintenanceDuration)));
     private final int maintenanceDuration;
 
     public MaintenanceScheduleRunnable(final MaintenancePlugin plugin, final Settings settings, final int secondsToEnable, final int maintenanceDuration) {
@@ -41,7 +44,6 @@ public final class MaintenanceScheduleRunnable extends MaintenanceRunnable {
 
     @Override
     protected String getStartMessage() {
-        return settings.getMessage("scheduletimerBroadcast")
-                .replace("%TIME%", getTime()).replace("%DURATION%", plugin.getFormattedTime(maintenanceDuration));
+        return settings.getTemplate("scheduletimerBroadcast").render(SCHEDULE_PLACEHOLDERS, this);
     }
 }
@@ -0,0 +1,53 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.runnable;
+
+/**
+ * Immutable state of a running timer, published once per tick by {@link MaintenanceRunnableBase}.
+ * All strings are formatted when the state is created, so reading them from ping threads is free.
+ */
+public final class TimerState {
+    private final int secondsLeft;
+    private final String timerMessage;
+    private final String formattedTime;
+
+    TimerState(final int secondsLeft, final String timerMessage, final String formattedTime) {
+        this.secondsLeft = secondsLeft;
+        this.timerMessage = timerMessage;
+        this.formattedTime = formattedTime;
+    }
+
+    public int getSecondsLeft() {
+        return secondsLeft;
+    }
+
+    /**
+     * @return time left in the format of the motdTimer message, as used for the %TIMER% variable
+     */
+    public String getTimerMessage() {
+        return timerMessage;
+    }
+
+    /**
+     * @return time left as a readable text, e.g. "1 hour 5 minutes"
+     */
+    public String getFormattedTime() {
+        return formattedTime;
+    }
+}
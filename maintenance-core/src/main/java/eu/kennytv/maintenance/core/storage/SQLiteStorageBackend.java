@@ -0,0 +1,297 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.storage;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stores the maintenance state and the whitelist in an embedded SQLite database file.
+ * Changes are written in a single transaction each, only touching the changed rows.
+ * <p>
+ * Uses the SQLite driver shipped with the server software (e.g. Spigot), as no driver is bundled with Maintenance.
+ */
+public final class SQLiteStorageBackend implements StorageBackend {
+    private static final String DRIVER = "org.sqlite.JDBC";
+    private final File file;
+    private Connection connection;
+
+    public SQLiteStorageBackend(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return true if the SQLite driver is available on this platform
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName(DRIVER);
+            return true;
+        } catch (final ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        try {
+            // Has to be loaded through the plugin's class loader to be found by the DriverManager
+            Class.forName(DRIVER);
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (final Statement statement = connection.createStatement()) {
+                // Only append to the write-ahead log on changes, instead of rewriting database pages
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS settings (setting TEXT PRIMARY KEY, value TEXT NOT NULL)");
+                statement.execute("CREATE TABLE IF NOT EXISTS servers (server TEXT PRIMARY KEY)");
+                statement.execute("CREATE TABLE IF NOT EXISTS whitelist (uuid TEXT PRIMARY KEY, name TEXT NOT NULL)");
+                statement.execute("CREATE INDEX IF NOT EXISTS whitelist_name ON whitelist (name COLLATE NOCASE)");
+            }
+        } catch (final ClassNotFoundException e) {
+            throw new IOException("The SQLite driver is not available on this platform", e);
+        } catch (final SQLException e) {
+            close();
+            throw new IOException("Unable to open " + file.getName(), e);
+        }
+    }
+
+    @Override
+    @Nullable
+    public synchronized Boolean loadMaintenance() throws IOException {
+        checkOpen();
+        try (final PreparedStatement statement = connection.prepareStatement("SELECT value FROM settings WHERE setting = ?")) {
+            statement.setString(1, "maintenance");
+            try (final ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? Boolean.parseBoolean(rs.getString("value")) : null;
+            }
+        } catch (final SQLException e) {
+            throw new IOException("Unable to load the maintenance state", e);
+        }
+    }
+
+    @Override
+    public synchronized void saveMaintenance(final boolean maintenance) throws IOException {
+        checkOpen();
+        try {
+            saveSetting("maintenance", String.valueOf(maintenance));
+        } catch (final SQLException e) {
+            throw new IOException("Unable to save the maintenance state", e);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (connection == null) {
+            throw new IOException("The SQLite storage is closed");
+        }
+    }
+
+    private void saveSetting(final String setting, final String value) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement("INSERT OR REPLACE INTO settings (setting, value) VALUES (?, ?)")) {
+            statement.setString(1, setting);
+            statement.setString(2, value);
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public synchronized Set<String> loadMaintenanceServers() throws IOException {
+        checkOpen();
+        final Set<String> servers = new HashSet<>();
+        try (final PreparedStatement statement = connection.prepareStatement("SELECT server FROM servers");
+             final ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                servers.add(rs.getString("server"));
+            }
+        } catch (final SQLException e) {
+            throw new IOException("Unable to load the maintenance servers", e);
+        }
+        return servers;
+    }
+
+    @Override
+    public synchronized void saveMaintenanceServers(final Collection<String> servers, final boolean maintenance) throws IOException {
+        checkOpen();
+        if (servers.isEmpty()) return;
+
+        final String query = maintenance ? "INSERT OR IGNORE INTO servers (server) VALUES (?)" : "DELETE FROM servers WHERE server = ?";
+        inTransaction("maintenance servers", () -> {
+            try (final PreparedStatement statement = connection.prepareStatement(query)) {
+                for (final String server : servers) {
+                    statement.setString(1, server);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public synchronized Map<UUID, String> loadWhitelist() throws IOException {
+        checkOpen();
+        final Map<UUID, String> players = new HashMap<>();
+        try (final PreparedStatement statement = connection.prepareStatement("SELECT uuid, name FROM whitelist");
+             final ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                players.put(UUID.fromString(rs.getString("uuid")), rs.getString("name"));
+            }
+        } catch (final SQLException | IllegalArgumentException e) {
+            throw new IOException("Unable to load the whitelist", e);
+        }
+        return players;
+    }
+
+    @Override
+    public synchronized void saveWhitelist(final Map<UUID, String> changes) throws IOException {
+        checkOpen();
+        if (changes.isEmpty()) return;
+
+        inTransaction("whitelist", () -> {
+            try (final PreparedStatement insert = connection.prepareStatement("INSERT OR REPLACE INTO whitelist (uuid, name) VALUES (?, ?)");
+                 final PreparedStatement delete = connection.prepareStatement("DELETE FROM whitelist WHERE uuid = ?")) {
+                for (final Map.Entry<UUID, String> entry : changes.entrySet()) {
+                    if (entry.getValue() != null) {
+                        insert.setString(1, entry.getKey().toString());
+                        insert.setString(2, entry.getValue());
+                        insert.addBatch();
+                    } else {
+                        delete.setString(1, entry.getKey().toString());
+                        delete.addBatch();
+                    }
+                }
+                insert.executeBatch();
+                delete.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public long getLastModified() {
+        // Changes are only written to the write-ahead log until the next checkpoint
+        return Math.max(file.lastModified(), new File(file.getPath() + "-wal").lastModified());
+    }
+
+    /**
+     * @return true if the data of another storage has been fully imported
+     * @throws IOException if the marker could not be loaded
+     */
+    public synchronized boolean isImported() throws IOException {
+        checkOpen();
+        try (final PreparedStatement statement = connection.prepareStatement("SELECT value FROM settings WHERE setting = ?")) {
+            statement.setString(1, "imported");
+            try (final ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        } catch (final SQLException e) {
+            throw new IOException("Unable to load the import marker", e);
+        }
+    }
+
+    /**
+     * Replaces all data with the one of the given storage in a single transaction, together with a marker for {@link #isImported()}.
+     * If it fails, nothing is written and the import can be run again.
+     *
+     * @param from storage to import the data from
+     * @return amount of imported whitelisted players
+     * @throws IOException if the data could not be loaded or saved
+     */
+    public int importFrom(final StorageBackend from) throws IOException {
+        final Boolean maintenance = from.loadMaintenance();
+        final Set<String> servers = from.loadMaintenanceServers();
+        final Map<UUID, String> players = from.loadWhitelist();
+        synchronized (this) {
+            checkOpen();
+            inTransaction("imported data", () -> {
+                try (final Statement statement = connection.createStatement()) {
+                    // Start from an empty storage, whatever has been written without the marker is replaced
+                    statement.executeUpdate("DELETE FROM settings");
+                    statement.executeUpdate("DELETE FROM servers");
+                    statement.executeUpdate("DELETE FROM whitelist");
+                }
+                if (maintenance != null) {
+                    saveSetting("maintenance", String.valueOf(maintenance));
+                }
+
+                try (final PreparedStatement statement = connection.prepareStatement("INSERT INTO servers (server) VALUES (?)")) {
+                    for (final String server : servers) {
+                        statement.setString(1, server);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                try (final PreparedStatement statement = connection.prepareStatement("INSERT INTO whitelist (uuid, name) VALUES (?, ?)")) {
+                    for (final Map.Entry<UUID, String> entry : players.entrySet()) {
+                        statement.setString(1, entry.getKey().toString());
+                        statement.setString(2, entry.getValue());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                saveSetting("imported", String.valueOf(System.currentTimeMillis()));
+            });
+        }
+        return players.size();
+    }
+
+    private void inTransaction(final String name, final Transaction transaction) throws IOException {
+        try {
+            connection.setAutoCommit(false);
+            try {
+                transaction.execute();
+                connection.commit();
+            } catch (final SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (final SQLException e) {
+            throw new IOException("Unable to save the " + name, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (final SQLException ignored) {
+        }
+        connection = null;
+    }
+
+    @FunctionalInterface
+    private interface Transaction {
+
+        void execute() throws SQLException;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.storage;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Persists the maintenance state and the whitelist of this server.
+ * Changes are passed on their own, so that implementations can write them incrementally.
+ * Implementations have to be thread-safe.
+ * <p>
+ * Once closed, loading and saving fail with an {@link IOException}, changes are never written.
+ */
+public interface StorageBackend {
+
+    /**
+     * Opens the storage, creating it if not yet present.
+     *
+     * @throws IOException if the storage could not be opened
+     */
+    void open() throws IOException;
+
+    /**
+     * @return saved maintenance state, or null if none has been saved yet
+     * @throws IOException if the state could not be loaded
+     */
+    @Nullable
+    Boolean loadMaintenance() throws IOException;
+
+    /**
+     * @param maintenance new maintenance state
+     * @throws IOException if the state could not be saved
+     */
+    void saveMaintenance(boolean maintenance) throws IOException;
+
+    /**
+     * @return names of the proxied servers under maintenance
+     * @throws IOException if the servers could not be loaded
+     */
+    Set<String> loadMaintenanceServers() throws IOException;
+
+    /**
+     * @param servers     changed proxied servers
+     * @param maintenance new maintenance state of the servers
+     * @throws IOException if the servers could not be saved
+     */
+    void saveMaintenanceServers(Collection<String> servers, boolean maintenance) throws IOException;
+
+    /**
+     * @return uuids of whitelisted players mapped to their names
+     * @throws IOException if the whitelist could not be loaded
+     */
+    Map<UUID, String> loadWhitelist() throws IOException;
+
+    /**
+     * @param changes uuids of changed players mapped to their names, or to null if they have been removed
+     * @throws IOException if the changes could not be saved
+     */
+    void saveWhitelist(Map<UUID, String> changes) throws IOException;
+
+    /**
+     * @return time in milliseconds the maintenance state was last saved, or 0 if unknown
+     */
+    long getLastModified();
+
+    void close();
+}
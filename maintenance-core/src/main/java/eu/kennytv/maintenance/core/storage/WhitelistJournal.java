@@ -0,0 +1,183 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/**
+ * Append-only log of whitelist changes, one line per change.
+ * <p>
+ * Appended changes are buffered until {@link #sync()} writes and fsyncs them. To compact it, the journal is moved
+ * aside with {@link #rotate()}, and deleted with {@link #compacted()} once a snapshot containing its changes has been written.
+ * Until then, both files are replayed on top of the last snapshot.
+ */
+final class WhitelistJournal {
+    private static final char ADDED = '+';
+    private static final char REMOVED = '-';
+    private final Logger logger;
+    private final File file;
+    private final File rotatedFile;
+    private FileOutputStream out;
+    private Writer writer;
+    private int entries;
+
+    /**
+     * @param logger logger to warn about invalid journal entries
+     * @param file   file the changes are appended to
+     */
+    WhitelistJournal(final Logger logger, final File file) {
+        this.logger = logger;
+        this.file = file;
+        this.rotatedFile = new File(file.getPath() + ".old");
+    }
+
+    /**
+     * Opens the journal for appending, creating it if not yet present.
+     *
+     * @throws IOException if the journal could not be opened
+     */
+    synchronized void open() throws IOException {
+        out = new FileOutputStream(file, true);
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads all changes not yet contained in the snapshot, in the order they have been made.
+     *
+     * @param consumer consumer of the uuid and name of each change, the name being null if the player has been removed
+     * @return amount of replayed changes
+     * @throws IOException if the journal could not be read
+     */
+    synchronized int replay(final BiConsumer<UUID, String> consumer) throws IOException {
+        return replay(rotatedFile, consumer) + replay(file, consumer);
+    }
+
+    private int replay(final File file, final BiConsumer<UUID, String> consumer) throws IOException {
+        if (!file.exists()) return 0;
+
+        int replayed = 0;
+        try (final BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+
+                try {
+                    final char type = line.charAt(0);
+                    if (type == ADDED) {
+                        final int nameIndex = line.indexOf(' ');
+                        consumer.accept(UUID.fromString(line.substring(1, nameIndex)), line.substring(nameIndex + 1));
+                    } else if (type == REMOVED) {
+                        consumer.accept(UUID.fromString(line.substring(1)), null);
+                    } else {
+                        throw new IllegalArgumentException();
+                    }
+                    replayed++;
+                } catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+                    // Most likely the last line of a crashed write
+                    logger.warning("Invalid whitelist journal entry in " + file.getName() + ": " + line);
+                }
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Buffers the changes, they are only written to the file on the next {@link #sync()}.
+     *
+     * @param changes uuids of changed players mapped to their names, or to null if they have been removed
+     * @throws IOException if the changes could not be written
+     */
+    synchronized void append(final Map<UUID, String> changes) throws IOException {
+        for (final Map.Entry<UUID, String> entry : changes.entrySet()) {
+            if (entry.getValue() != null) {
+                writer.write(ADDED + entry.getKey().toString() + ' ' + entry.getValue() + '\n');
+            } else {
+                writer.write(REMOVED + entry.getKey().toString() + '\n');
+            }
+        }
+        entries += changes.size();
+    }
+
+    /**
+     * Writes all buffered changes and forces them to the disk.
+     *
+     * @throws IOException if the changes could not be written
+     */
+    synchronized void sync() throws IOException {
+        writer.flush();
+        out.getChannel().force(false);
+    }
+
+    /**
+     * Moves the current journal aside and starts a new one. Changes of a previous rotation not yet
+     * marked as {@link #compacted()} are kept.
+     *
+     * @throws IOException if the journal could not be moved
+     */
+    synchronized void rotate() throws IOException {
+        sync();
+        writer.close();
+        if (rotatedFile.exists()) {
+            Files.write(rotatedFile.toPath(), Files.readAllBytes(file.toPath()), StandardOpenOption.APPEND);
+            Files.delete(file.toPath());
+        } else {
+            Files.move(file.toPath(), rotatedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+        entries = 0;
+        open();
+    }
+
+    /**
+     * Deletes the rotated journal, after a snapshot containing all of its changes has been written.
+     *
+     * @throws IOException if the rotated journal could not be deleted
+     */
+    synchronized void compacted() throws IOException {
+        Files.deleteIfExists(rotatedFile.toPath());
+    }
+
+    /**
+     * @return amount of changes appended since the last rotation
+     */
+    synchronized int getEntries() {
+        return entries;
+    }
+
+    synchronized void close() throws IOException {
+        if (writer != null) {
+            sync();
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.storage;
+
+import eu.kennytv.maintenance.core.config.Config;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Stores the maintenance state in the config and the whitelist in WhitelistedPlayers.yml.
+ * <p>
+ * Whitelist changes are appended to a journal next to the whitelist file and synced in batches.
+ * The whole file is only rewritten in the background once enough changes have been made, or periodically.
+ */
+public final class YamlStorageBackend implements StorageBackend {
+    private static final long SYNC_DELAY_MILLIS = 200;
+    private static final long COMPACT_INTERVAL_MINUTES = 5;
+    private static final int COMPACT_ENTRIES = 5_000;
+    private final Logger logger;
+    private final Config config;
+    private final File whitelistFile;
+    private final Config whitelist;
+    private final WhitelistJournal journal;
+    private ScheduledExecutorService executor;
+    // Only accepts changes between open and close
+    private boolean open;
+    private boolean syncScheduled;
+    private boolean compactionScheduled;
+
+    /**
+     * @param logger        logger to warn about invalid whitelist entries
+     * @param config        loaded config the maintenance state is stored in
+     * @param whitelistFile file the whitelist is stored in
+     */
+    public YamlStorageBackend(final Logger logger, final Config config, final File whitelistFile) {
+        this.logger = logger;
+        this.config = config;
+        this.whitelistFile = whitelistFile;
+        this.whitelist = new Config(whitelistFile);
+        this.journal = new WhitelistJournal(logger, new File(whitelistFile.getPath() + ".journal"));
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        whitelist.load();
+        final int replayed = journal.replay((uuid, name) -> whitelist.set(uuid.toString(), name));
+        journal.open();
+        if (replayed != 0) {
+            // Start with a fresh snapshot, also containing changes that might have been made by hand
+            journal.rotate();
+            writeSnapshot(whitelist.copy(whitelistFile));
+            journal.compacted();
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Maintenance Whitelist Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::compact, COMPACT_INTERVAL_MINUTES, COMPACT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        open = true;
+    }
+
+    @Override
+    @Nullable
+    public synchronized Boolean loadMaintenance() throws IOException {
+        checkOpen();
+        return config.contains("maintenance-enabled") ? config.getBoolean("maintenance-enabled") : null;
+    }
+
+    @Override
+    public synchronized void saveMaintenance(final boolean maintenance) throws IOException {
+        checkOpen();
+        config.set("maintenance-enabled", maintenance);
+        config.save();
+    }
+
+    @Override
+    public synchronized Set<String> loadMaintenanceServers() throws IOException {
+        checkOpen();
+        final List<String> servers = config.getStringList("proxied-maintenance-servers");
+        return servers != null ? new HashSet<>(servers) : new HashSet<>();
+    }
+
+    @Override
+    public synchronized void saveMaintenanceServers(final Collection<String> servers, final boolean maintenance) throws IOException {
+        checkOpen();
+        final Set<String> maintenanceServers = loadMaintenanceServers();
+        final boolean changed = maintenance ? maintenanceServers.addAll(servers) : maintenanceServers.removeAll(servers);
+        if (!changed) return;
+
+        config.set("proxied-maintenance-servers", new ArrayList<>(maintenanceServers));
+        config.save();
+    }
+
+    @Override
+    public long getLastModified() {
+        // The maintenance state is stored in the config
+        return config.getFile().lastModified();
+    }
+
+    @Override
+    public synchronized Map<UUID, String> loadWhitelist() throws IOException {
+        checkOpen();
+        final Map<UUID, String> players = new HashMap<>();
+        for (final Map.Entry<String, Object> entry : whitelist.getValues().entrySet()) {
+            try {
+                players.put(UUID.fromString(entry.getKey()), (String) entry.getValue());
+            } catch (final Exception e) {
+                logger.warning("invalid WhitelistedPlayers entry: " + entry.getKey());
+            }
+        }
+        return players;
+    }
+
+    @Override
+    public synchronized void saveWhitelist(final Map<UUID, String> changes) throws IOException {
+        checkOpen();
+        if (changes.isEmpty()) return;
+
+        for (final Map.Entry<UUID, String> entry : changes.entrySet()) {
+            whitelist.set(entry.getKey().toString(), entry.getValue());
+        }
+        journal.append(changes);
+
+        if (!syncScheduled) {
+            syncScheduled = true;
+            executor.schedule(this::sync, SYNC_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        if (!compactionScheduled && journal.getEntries() >= COMPACT_ENTRIES) {
+            compactionScheduled = true;
+            executor.execute(this::compact);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (!open) {
+            throw new IOException("The yaml storage is closed");
+        }
+    }
+
+    private void sync() {
+        synchronized (this) {
+            syncScheduled = false;
+        }
+        try {
+            journal.sync();
+        } catch (final IOException e) {
+            logger.warning("Unable to write the whitelist journal!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes the whole whitelist into the whitelist file, only run on the journal thread.
+     */
+    private void compact() {
+        final Config snapshot;
+        synchronized (this) {
+            compactionScheduled = false;
+            if (journal.getEntries() == 0) return;
+
+            snapshot = whitelist.copy(whitelistFile);
+            try {
+                journal.rotate();
+            } catch (final IOException e) {
+                logger.warning("Unable to rotate the whitelist journal!");
+                e.printStackTrace();
+                return;
+            }
+        }
+
+        // Changes made in the meantime are kept in the new journal
+        try {
+            writeSnapshot(snapshot);
+            journal.compacted();
+        } catch (final IOException e) {
+            logger.warning("Unable to save the whitelist, its changes are kept in the journal!");
+            e.printStackTrace();
+        }
+    }
+
+    private void writeSnapshot(final Config snapshot) throws IOException {
+        final File file = new File(whitelistFile.getPath() + ".tmp");
+        snapshot.saveTo(file);
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(file.toPath(), whitelistFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            // Changes made from now on would never be written by the executor
+            open = false;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                // Let a scheduled sync or running compaction finish
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        try {
+            journal.close();
+        } catch (final IOException e) {
+            logger.warning("Unable to write the whitelist journal!");
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.text;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Caches platform components of frequently sent legacy messages (motds, kick messages), so they are only parsed once.
+ * The cached components must not be modified.
+ *
+ * @param <T> platform component type
+ */
+public final class ComponentCache<T> {
+    private static final int MAX_SIZE = 256;
+    private final Map<String, T> components = new ConcurrentHashMap<>();
+    private final Function<RichText, T> converter;
+
+    /**
+     * @param converter function converting parsed messages into platform components
+     */
+    public ComponentCache(final Function<RichText, T> converter) {
+        this.converter = converter;
+    }
+
+    /**
+     * @param legacy legacy message with § color codes
+     * @return cached or newly converted component
+     */
+    public T get(final String legacy) {
+        T component = components.get(legacy);
+        if (component == null) {
+            component = converter.apply(RichText.parse(legacy));
+            // Messages containing changing variables should not fill it up forever
+            if (components.size() >= MAX_SIZE) {
+                components.clear();
+            }
+            components.put(legacy, component);
+        }
+        return component;
+    }
+
+    public void invalidate() {
+        components.clear();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.text;
+
+final class LegacyColors {
+    private static final String CODES = "0123456789abcdef";
+    private static final int[] COLORS = {
+            0x000000, 0x0000AA, 0x00AA00, 0x00AAAA, 0xAA0000, 0xAA00AA, 0xFFAA00, 0xAAAAAA,
+            0x555555, 0x5555FF, 0x55FF55, 0x55FFFF, 0xFF5555, 0xFF55FF, 0xFFFF55, 0xFFFFFF
+    };
+
+    private LegacyColors() {
+    }
+
+    /**
+     * @param code lowercase legacy color code char
+     * @return rgb value of the color, or -1 if it is not a color code
+     */
+    static int getColor(final char code) {
+        final int index = CODES.indexOf(code);
+        return index != -1 ? COLORS[index] : -1;
+    }
+
+    /**
+     * @param rgb rgb value
+     * @return code char of the legacy color nearest to the given color
+     */
+    static char nearest(final int rgb) {
+        final int r = rgb >> 16 & 0xFF;
+        final int g = rgb >> 8 & 0xFF;
+        final int b = rgb & 0xFF;
+        int nearest = 0;
+        int nearestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < COLORS.length; i++) {
+            final int color = COLORS[i];
+            final int dr = r - (color >> 16 & 0xFF);
+            final int dg = g - (color >> 8 & 0xFF);
+            final int db = b - (color & 0xFF);
+            final int distance = dr * dr + dg * dg + db * db;
+            if (distance < nearestDistance) {
+                nearest = i;
+                nearestDistance = distance;
+            }
+        }
+        return CODES.charAt(nearest);
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.text;
+
+import eu.kennytv.maintenance.core.MessageTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Platform independent representation of a formatted message, split into uniformly styled {@link TextSegment}s.
+ * <p>
+ * Supported are legacy color and format codes with either {@code &} or {@code §}, hex colors as {@code &#RRGGBB},
+ * and gradients over two or more hex colors as {@code <gradient:#RRGGBB:#RRGGBB>text</gradient>}.
+ * Messages are meant to be parsed once and then converted to and cached as the platform's native components.
+ * </p>
+ */
+public final class RichText {
+    private static final String GRADIENT_START = "<gradient:";
+    private static final String GRADIENT_END = "</gradient>";
+    private static final String DECORATION_CODES = "lonmk";
+    private static final int[] DECORATIONS = {
+            TextSegment.BOLD, TextSegment.ITALIC, TextSegment.UNDERLINED, TextSegment.STRIKETHROUGH, TextSegment.OBFUSCATED
+    };
+    private final List<TextSegment> segments;
+    private final String legacy;
+
+    private RichText(final List<TextSegment> segments) {
+        this.segments = Collections.unmodifiableList(segments);
+        this.legacy = serializeLegacy(segments);
+    }
+
+    /**
+     * Parses the given message.
+     *
+     * @param s message to parse
+     * @return parsed message
+     */
+    public static RichText parse(final String s) {
+        final Parser parser = new Parser();
+        final int length = s.length();
+        int i = 0;
+        while (i < length) {
+            final char c = s.charAt(i);
+            if ((c == '&' || c == '§') && i + 1 < length) {
+                final int read = parser.readCode(s, i, true);
+                if (read != 0) {
+                    i += read;
+                    continue;
+                }
+            } else if (c == '<' && s.startsWith(GRADIENT_START, i)) {
+                final int read = parser.readGradient(s, i);
+                if (read != 0) {
+                    i += read;
+                    continue;
+                }
+            }
+
+            parser.text.append(c);
+            i++;
+        }
+        return new RichText(parser.finish());
+    }
+
+    /**
+     * @return unmodifiable list of the message's segments
+     */
+    public List<TextSegment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Returns the message with § codes, hex colors being in the {@code §x§R§R§G§G§B§B} format understood by 1.16+ servers.
+     *
+     * @return message with legacy formatting codes
+     */
+    public String toLegacy() {
+        return legacy;
+    }
+
+    @Override
+    public String toString() {
+        return legacy;
+    }
+
+    private static String serializeLegacy(final List<TextSegment> segments) {
+        final StringBuilder builder = new StringBuilder();
+        int previousColor = TextSegment.NO_COLOR;
+        int previousDecorations = 0;
+        for (final TextSegment segment : segments) {
+            final int decorations = segment.getDecorations();
+            if (segment.getColor() != previousColor || (previousDecorations & ~decorations) != 0) {
+                // Legacy color codes reset all decorations
+                if (!segment.hasColor()) {
+                    builder.append("§r");
+                } else if (segment.isLegacyColor()) {
+                    builder.append('§').append(segment.getLegacyColor());
+                } else {
+                    final String hex = Integer.toHexString(segment.getColor() | 0x1000000);
+                    builder.append("§x");
+                    for (int i = 1; i < hex.length(); i++) {
+                        builder.append('§').append(hex.charAt(i));
+                    }
+                }
+                appendDecorations(builder, decorations);
+            } else {
+                appendDecorations(builder, decorations & ~previousDecorations);
+            }
+
+            builder.append(segment.getText());
+            previousColor = segment.getColor();
+            previousDecorations = decorations;
+        }
+        return builder.toString();
+    }
+
+    private static void appendDecorations(final StringBuilder builder, final int decorations) {
+        for (int i = 0; i < DECORATIONS.length; i++) {
+            if ((decorations & DECORATIONS[i]) != 0) {
+                builder.append('§').append(DECORATION_CODES.charAt(i));
+            }
+        }
+    }
+
+    private static boolean isHex(final String s, final int start, final int length) {
+        if (start + length > s.length()) return false;
+        for (int i = start; i < start + length; i++) {
+            if (Character.digit(s.charAt(i), 16) == -1) return false;
+        }
+        return true;
+    }
+
+    private static int interpolate(final int[] colors, final float progress) {
+        final float position = progress * (colors.length - 1);
+        final int index = Math.min((int) position, colors.length - 2);
+        final float local = position - index;
+        final int from = colors[index];
+        final int to = colors[index + 1];
+        int rgb = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            final int a = from >> shift & 0xFF;
+            final int b = to >> shift & 0xFF;
+            rgb |= Math.round(a + (b - a) * local) << shift;
+        }
+        return rgb;
+    }
+
+    private static final class Parser {
+        private final List<TextSegment> segments = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+        private int color = TextSegment.NO_COLOR;
+        private char legacyColor;
+        private int decorations;
+
+        /**
+         * @return number of read chars, or 0 if there is no valid code at the index
+         */
+        private int readCode(final String s, final int index, final boolean allowColors) {
+            final char code = Character.toLowerCase(s.charAt(index + 1));
+            if (code == '#') {
+                if (!isHex(s, index + 2, 6)) return 0;
+                if (allowColors) {
+                    setColor(Integer.parseInt(s.substring(index + 2, index + 8), 16), (char) 0);
+                }
+                return 8;
+            }
+            if (code == 'x' && index + 14 <= s.length()) {
+                // Already serialized §x§R§R§G§G§B§B hex color
+                final StringBuilder hex = new StringBuilder(6);
+                for (int i = index + 2; i < index + 14; i += 2) {
+                    final char digit = s.charAt(i + 1);
+                    if (s.charAt(i) != s.charAt(index) || Character.digit(digit, 16) == -1) return 0;
+                    hex.append(digit);
+                }
+                if (allowColors) {
+                    setColor(Integer.parseInt(hex.toString(), 16), (char) 0);
+                }
+                return 14;
+            }
+
+            final int legacyRgb = LegacyColors.getColor(code);
+            if (legacyRgb != -1) {
+                if (allowColors) {
+                    setColor(legacyRgb, code);
+                }
+                return 2;
+            }
+
+            final int decorationIndex = DECORATION_CODES.indexOf(code);
+            if (decorationIndex != -1) {
+                flush();
+                decorations |= DECORATIONS[decorationIndex];
+                return 2;
+            }
+            if (code == 'r') {
+                flush();
+                if (allowColors) {
+                    color = TextSegment.NO_COLOR;
+                    legacyColor = 0;
+                }
+                decorations = 0;
+                return 2;
+            }
+            return 0;
+        }
+
+        /**
+         * @return number of read chars, or 0 if there is no valid gradient at the index
+         */
+        private int readGradient(final String s, final int index) {
+            final int tagEnd = s.indexOf('>', index);
+            if (tagEnd == -1) return 0;
+
+            final String[] hexColors = s.substring(index + GRADIENT_START.length(), tagEnd).split(":");
+            if (hexColors.length < 2) return 0;
+            final int[] colors = new int[hexColors.length];
+            for (int i = 0; i < hexColors.length; i++) {
+                final String hex = hexColors[i];
+                if (hex.length() != 7 || hex.charAt(0) != '#' || !isHex(hex, 1, 6)) return 0;
+                colors[i] = Integer.parseInt(hex.substring(1), 16);
+            }
+
+            final int closingTag = s.indexOf(GRADIENT_END, tagEnd);
+            final int contentEnd = closingTag != -1 ? closingTag : s.length();
+            final String content = s.substring(tagEnd + 1, contentEnd);
+
+            // Count the visible chars first to know the color steps
+            int visibleChars = 0;
+            for (int i = 0; i < content.length(); ) {
+                final int read = isCodeStart(content, i) ? codeLength(content, i) : 0;
+                i += read != 0 ? read : visibleLength(content, i);
+                if (read == 0) {
+                    visibleChars++;
+                }
+            }
+
+            final int previousColor = color;
+            final char previousLegacyColor = legacyColor;
+            final int previousDecorations = decorations;
+            int visibleIndex = 0;
+            for (int i = 0; i < content.length(); ) {
+                if (isCodeStart(content, i)) {
+                    // Only decorations are applied inside gradients
+                    final int read = readCode(content, i, false);
+                    if (read != 0) {
+                        i += read;
+                        continue;
+                    }
+                }
+
+                final float progress = visibleChars > 1 ? (float) visibleIndex / (visibleChars - 1) : 0;
+                final int rgb = interpolate(colors, progress);
+                if (rgb != color) {
+                    flush();
+                    color = rgb;
+                    legacyColor = LegacyColors.nearest(rgb);
+                }
+
+                final int visibleLength = visibleLength(content, i);
+                text.append(content, i, i + visibleLength);
+                i += visibleLength;
+                visibleIndex++;
+            }
+
+            flush();
+            color = previousColor;
+            legacyColor = previousLegacyColor;
+            decorations = previousDecorations;
+            return closingTag != -1 ? closingTag + GRADIENT_END.length() - index : s.length() - index;
+        }
+
+        /**
+         * @return length of the char or placeholder at the index, placeholders are kept in one piece to still be replaced later
+         */
+        private int visibleLength(final String s, final int index) {
+            if (s.charAt(index) == '%') {
+                final int end = s.indexOf('%', index + 1);
+                if (end != -1 && MessageTemplate.isPlaceholderName(s, index + 1, end)) {
+                    return end + 1 - index;
+                }
+            }
+            return Character.charCount(s.codePointAt(index));
+        }
+
+        private boolean isCodeStart(final String s, final int index) {
+            final char c = s.charAt(index);
+            return (c == '&' || c == '§') && index + 1 < s.length();
+        }
+
+        private int codeLength(final String s, final int index) {
+            // Parse into a throwaway parser to not touch the current style
+            return new Parser().readCode(s, index, true);
+        }
+
+        private void setColor(final int rgb, final char legacyCode) {
+            flush();
+            color = rgb;
+            legacyColor = legacyCode != 0 ? legacyCode : LegacyColors.nearest(rgb);
+            decorations = 0;
+        }
+
+        private void flush() {
+            if (text.length() == 0) return;
+            segments.add(new TextSegment(text.toString(), color, legacyColor, decorations));
+            text.setLength(0);
+        }
+
+        private List<TextSegment> finish() {
+            if (text.length() == 0 && !segments.isEmpty()) {
+                final TextSegment last = segments.get(segments.size() - 1);
+                if (last.getColor() == color && last.getDecorations() == decorations) {
+                    return segments;
+                }
+            }
+            if (text.length() != 0 || color != TextSegment.NO_COLOR || decorations != 0) {
+                // Keep trailing codes, as messages may still be concatenated with others
+                segments.add(new TextSegment(text.toString(), color, legacyColor, decorations));
+            }
+            return segments;
+        }
+    }
+}
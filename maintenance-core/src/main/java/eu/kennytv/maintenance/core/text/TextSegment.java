@@ -0,0 +1,97 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.text;
+
+/**
+ * Immutable, uniformly styled part of a {@link RichText}.
+ */
+public final class TextSegment {
+    public static final int BOLD = 1;
+    public static final int ITALIC = 1 << 1;
+    public static final int UNDERLINED = 1 << 2;
+    public static final int STRIKETHROUGH = 1 << 3;
+    public static final int OBFUSCATED = 1 << 4;
+    static final int NO_COLOR = -1;
+    private final String text;
+    private final int color;
+    private final char legacyColor;
+    private final int decorations;
+
+    TextSegment(final String text, final int color, final char legacyColor, final int decorations) {
+        this.text = text;
+        this.color = color;
+        this.legacyColor = legacyColor;
+        this.decorations = decorations;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return whether the segment has a color set, otherwise the default color of the message is used
+     */
+    public boolean hasColor() {
+        return color != NO_COLOR;
+    }
+
+    /**
+     * @return rgb value of the color, only valid if {@link #hasColor()} is true
+     */
+    public int getColor() {
+        return color;
+    }
+
+    /**
+     * Returns the legacy color code char of the segment's color, which is the nearest legacy color if it was given in hex.
+     *
+     * @return legacy color code char, or 0 if no color is set
+     */
+    public char getLegacyColor() {
+        return legacyColor;
+    }
+
+    /**
+     * @return whether the color was given as a legacy color code, not in hex
+     */
+    public boolean isLegacyColor() {
+        return hasColor() && LegacyColors.getColor(legacyColor) == color;
+    }
+
+    /**
+     * @param decoration one of the decoration constants
+     * @return whether the segment has the given decoration
+     */
+    public boolean hasDecoration(final int decoration) {
+        return (decorations & decoration) != 0;
+    }
+
+    int getDecorations() {
+        return decorations;
+    }
+
+    @Override
+    public String toString() {
+        return "TextSegment{" +
+                "text='" + text + '\'' +
+                ", color=" + Integer.toHexString(color) +
+                ", decorations=" + decorations +
+                '}';
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.whitelist;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Least recently used cache of looked up uuids by lowercase player name, saved in a file to be kept across restarts.
+ * Also remembers names without a player for a shorter time.
+ */
+final class UuidCache {
+    /**
+     * Returned for names known to not belong to any player.
+     */
+    static final UUID MISSING = new UUID(0, 0);
+    private static final String MISSING_VALUE = "-";
+    private final Path path;
+    private final long ttlMillis;
+    private final long missingTtlMillis;
+    private final Map<String, CachedUuid> entries;
+    private boolean dirty;
+
+    /**
+     * @param file             file the cache is saved in
+     * @param maxEntries       maximum amount of cached names
+     * @param ttlMillis        milliseconds until the uuid of a name is looked up again
+     * @param missingTtlMillis milliseconds until a name without a player is looked up again
+     */
+    UuidCache(final File file, final int maxEntries, final long ttlMillis, final long missingTtlMillis) {
+        this.path = file.toPath();
+        this.ttlMillis = ttlMillis;
+        this.missingTtlMillis = missingTtlMillis;
+        this.entries = new LinkedHashMap<String, CachedUuid>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, CachedUuid> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Loads the saved entries that have not yet expired.
+     *
+     * @throws IOException if the file could not be read
+     */
+    synchronized void load() throws IOException {
+        if (!Files.exists(path)) return;
+
+        final long now = System.currentTimeMillis();
+        for (final String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            final String[] split = line.split(" ");
+            if (split.length != 3) continue;
+
+            try {
+                final long expiresAt = Long.parseLong(split[2]);
+                if (expiresAt > now) {
+                    entries.put(split[0], new CachedUuid(split[1].equals(MISSING_VALUE) ? MISSING : UUID.fromString(split[1]), expiresAt));
+                }
+            } catch (final IllegalArgumentException ignored) {
+                // Skip invalid lines
+            }
+        }
+    }
+
+    /**
+     * @param name lowercase player name
+     * @return cached uuid, {@link #MISSING} if there is no such player, or null if not cached
+     */
+    @Nullable
+    synchronized UUID get(final String name) {
+        final CachedUuid entry = entries.get(name);
+        if (entry == null) return null;
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(name);
+            dirty = true;
+            return null;
+        }
+        return entry.uuid;
+    }
+
+    /**
+     * @param name lowercase player name
+     * @param uuid uuid of the player, or null if there is no such player
+     */
+    synchronized void put(final String name, @Nullable final UUID uuid) {
+        final long expiresAt = System.currentTimeMillis() + (uuid != null ? ttlMillis : missingTtlMillis);
+        entries.put(name, new CachedUuid(uuid != null ? uuid : MISSING, expiresAt));
+        dirty = true;
+    }
+
+    /**
+     * Replaces the saved entries if there have been any changes, so that the file is never left half written.
+     *
+     * @throws IOException if the file could not be written
+     */
+    synchronized void save() throws IOException {
+        if (!dirty) return;
+
+        final List<String> lines = new ArrayList<>(entries.size());
+        for (final Map.Entry<String, CachedUuid> entry : entries.entrySet()) {
+            final UUID uuid = entry.getValue().uuid;
+            lines.add(entry.getKey() + ' ' + (uuid == MISSING ? MISSING_VALUE : uuid.toString()) + ' ' + entry.getValue().expiresAt);
+        }
+
+        final Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tempPath, lines, StandardCharsets.UTF_8);
+        try {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        dirty = false;
+    }
+
+    private static final class CachedUuid {
+        private final UUID uuid;
+        private final long expiresAt;
+
+        private CachedUuid(final UUID uuid, final long expiresAt) {
+            this.uuid = uuid;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
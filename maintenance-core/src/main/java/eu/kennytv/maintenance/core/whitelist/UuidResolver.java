@@ -0,0 +1,331 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.whitelist;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Looks up the uuids of player names without blocking the calling thread.
+ * <p>
+ * Names are looked up in order from online or otherwise locally known players, a cache saved in the plugin folder,
+ * and finally Mojang's profile API. Lookups of names requested at about the same time are sent in a single request,
+ * concurrent lookups of the same name share one result, and requests are delayed when being rate limited.
+ */
+public final class UuidResolver {
+    public static final String MOJANG_PROFILES_URL = "https://api.mojang.com/profiles/minecraft";
+    private static final Pattern VALID_NAME = Pattern.compile("[a-zA-Z0-9_]{1,16}");
+    // Maximum amount of names accepted in one request by the API
+    private static final int MAX_BATCH_SIZE = 10;
+    private static final long BATCH_DELAY_MILLIS = 50;
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    private static final long CACHE_SAVE_DELAY_SECONDS = 30;
+    private static final int TIMEOUT_MILLIS = 5000;
+    private final Logger logger;
+    private final Function<String, UUID> localLookup;
+    private final UuidCache cache;
+    private final URL profilesUrl;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Maintenance UUID Resolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Lowercase names mapped to the result of their running lookup
+    private final Map<String, CompletableFuture<UUID>> lookups = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Deque<String> queue = new ArrayDeque<>();
+    private boolean requestScheduled;
+    private boolean cacheSaveScheduled;
+    private boolean closed;
+    private int rateLimits;
+
+    /**
+     * @param logger      logger to warn about failed requests
+     * @param localLookup function returning the uuid of an online or otherwise locally known player without blocking, or null
+     * @param cacheFile   file the looked up uuids are saved in
+     * @param profilesUrl url of the bulk profile endpoint, usually {@link #MOJANG_PROFILES_URL}
+     */
+    public UuidResolver(final Logger logger, final Function<String, UUID> localLookup, final File cacheFile, final String profilesUrl) {
+        this.logger = logger;
+        this.localLookup = localLookup;
+        try {
+            this.profilesUrl = new URL(profilesUrl);
+        } catch (final MalformedURLException e) {
+            throw new IllegalArgumentException("Invalid profiles url: " + profilesUrl, e);
+        }
+        this.cache = new UuidCache(cacheFile, 10_000, TimeUnit.DAYS.toMillis(7), TimeUnit.HOURS.toMillis(1));
+        try {
+            cache.load();
+        } catch (final IOException e) {
+            logger.warning("Unable to load the uuid cache!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Looks up the uuid of a player name.
+     *
+     * @param name name of the player, ignoring its case
+     * @return future completed with the uuid of the player, with null if there is no such player,
+     * or exceptionally if Mojang's API could not be reached
+     */
+    public CompletableFuture<UUID> resolve(final String name) {
+        if (!VALID_NAME.matcher(name).matches()) {
+            // Would make the whole request fail
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final UUID localUuid = localLookup.apply(name);
+        if (localUuid != null) {
+            return CompletableFuture.completedFuture(localUuid);
+        }
+
+        final String key = name.toLowerCase(Locale.ROOT);
+        final UUID cachedUuid = cache.get(key);
+        if (cachedUuid != null) {
+            return CompletableFuture.completedFuture(cachedUuid != UuidCache.MISSING ? cachedUuid : null);
+        }
+
+        return lookups.computeIfAbsent(key, k -> {
+            synchronized (this) {
+                if (closed) {
+                    final CompletableFuture<UUID> future = new CompletableFuture<>();
+                    future.completeExceptionally(new IllegalStateException("Resolver has been closed"));
+                    return future;
+                }
+
+                queue.add(k);
+                if (!requestScheduled) {
+                    // Wait a bit for more names to send in the same request
+                    scheduleRequest(BATCH_DELAY_MILLIS);
+                }
+            }
+            return new CompletableFuture<>();
+        });
+    }
+
+    private synchronized void scheduleRequest(final long delayMillis) {
+        if (closed) return;
+
+        requestScheduled = true;
+        executor.schedule(this::request, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the next queued names to the API, only run on the resolver thread.
+     */
+    private void request() {
+        final List<String> names = new ArrayList<>(MAX_BATCH_SIZE);
+        synchronized (this) {
+            while (names.size() < MAX_BATCH_SIZE && !queue.isEmpty()) {
+                names.add(queue.poll());
+            }
+            if (names.isEmpty()) {
+                requestScheduled = false;
+                return;
+            }
+        }
+
+        long nextDelay = 0;
+        try {
+            final Map<String, UUID> uuids = requestProfiles(names);
+            synchronized (this) {
+                rateLimits = 0;
+            }
+            for (final String name : names) {
+                final UUID uuid = uuids.get(name);
+                cache.put(name, uuid);
+                complete(name, uuid, null);
+            }
+            scheduleCacheSave();
+        } catch (final RateLimitedException e) {
+            synchronized (this) {
+                // Try again later, before any names queued in the meantime
+                for (int i = names.size() - 1; i >= 0; i--) {
+                    queue.addFirst(names.get(i));
+                }
+                nextDelay = Math.max(e.retryAfterMillis, Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(rateLimits++, 16)));
+            }
+            logger.warning("Rate limited by Mojang's API, waiting " + nextDelay + "ms before looking up " + names.size() + " more names");
+        } catch (final IOException | RuntimeException e) {
+            logger.warning("Unable to look up uuids from Mojang's API: " + e.getMessage());
+            for (final String name : names) {
+                complete(name, null, e);
+            }
+        }
+
+        synchronized (this) {
+            requestScheduled = false;
+            if (!queue.isEmpty()) {
+                scheduleRequest(nextDelay);
+            }
+        }
+    }
+
+    private Map<String, UUID> requestProfiles(final List<String> names) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) profilesUrl.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setDoOutput(true);
+            try (final JsonWriter writer = new JsonWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+                writer.beginArray();
+                for (final String name : names) {
+                    writer.value(name);
+                }
+                writer.endArray();
+            }
+
+            final int responseCode = connection.getResponseCode();
+            if (responseCode == 429) {
+                final long retryAfterSeconds = connection.getHeaderFieldLong("Retry-After", 0);
+                throw new RateLimitedException(TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+            }
+            if (responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
+                return new HashMap<>();
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Unexpected response code " + responseCode);
+            }
+
+            final Map<String, UUID> uuids = new HashMap<>();
+            try (final JsonReader reader = new JsonReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String id = null;
+                    String name = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        final String field = reader.nextName();
+                        if (field.equals("id")) {
+                            id = reader.nextString();
+                        } else if (field.equals("name")) {
+                            name = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                    if (id == null || id.length() != 32 || name == null) {
+                        throw new IOException("Invalid profile in response");
+                    }
+
+                    final UUID uuid = new UUID(Long.parseUnsignedLong(id.substring(0, 16), 16), Long.parseUnsignedLong(id.substring(16), 16));
+                    uuids.put(name.toLowerCase(Locale.ROOT), uuid);
+                }
+                reader.endArray();
+            }
+            return uuids;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void complete(final String name, @Nullable final UUID uuid, @Nullable final Throwable throwable) {
+        final CompletableFuture<UUID> future = lookups.remove(name);
+        if (future == null) return;
+
+        if (throwable != null) {
+            future.completeExceptionally(throwable);
+        } else {
+            future.complete(uuid);
+        }
+    }
+
+    private synchronized void scheduleCacheSave() {
+        if (cacheSaveScheduled || closed) return;
+
+        cacheSaveScheduled = true;
+        executor.schedule(() -> {
+            synchronized (this) {
+                cacheSaveScheduled = false;
+            }
+            saveCache();
+        }, CACHE_SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void saveCache() {
+        try {
+            cache.save();
+        } catch (final IOException e) {
+            logger.warning("Unable to save the uuid cache!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops all lookups and saves the cache, blocking until it is done.
+     * Lookups of uncached names are completed exceptionally from now on.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (final String name : new ArrayList<>(lookups.keySet())) {
+            complete(name, null, new IllegalStateException("Resolver has been closed"));
+        }
+        saveCache();
+    }
+
+    private static final class RateLimitedException extends IOException {
+        private static final long serialVersionUID = 1L;
+        private final long retryAfterMillis;
+
+        private RateLimitedException(final long retryAfterMillis) {
+            super("Rate limited");
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+}
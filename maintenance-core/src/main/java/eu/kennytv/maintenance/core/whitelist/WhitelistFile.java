@@ -0,0 +1,212 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.whitelist;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Reads and writes whitelists in the format of the vanilla whitelist.json, or as CSV with the uuid and/or name of a player per line.
+ * Files are read and written entry by entry, without loading them into memory as a whole.
+ */
+public final class WhitelistFile {
+    private static final Pattern CSV_SEPARATOR = Pattern.compile("[,;\t]");
+    private static final Pattern UUID_WITHOUT_DASHES = Pattern.compile("(\\p{XDigit}{8})(\\p{XDigit}{4})(\\p{XDigit}{4})(\\p{XDigit}{4})(\\p{XDigit}{12})");
+
+    private WhitelistFile() {
+    }
+
+    /**
+     * Returns the file in the given folder, making sure the path does not lead out of it.
+     *
+     * @param folder folder the file has to be in
+     * @param path   path of the file relative to the folder
+     * @return file in the folder, or null if the path leads out of it
+     * @throws IOException if the path could not be resolved
+     */
+    @Nullable
+    public static File resolve(final File folder, final String path) throws IOException {
+        final File canonicalFolder = folder.getCanonicalFile();
+        final File file = new File(canonicalFolder, path).getCanonicalFile();
+        return file.toPath().startsWith(canonicalFolder.toPath()) && !file.equals(canonicalFolder) ? file : null;
+    }
+
+    /**
+     * Reads all entries of a whitelist.json (if the file ends with .json) or CSV file.
+     *
+     * @param file     whitelist file
+     * @param consumer consumer of each entry, at least one of the uuid and name being present
+     * @throws IOException          if the file could not be read or is not a valid whitelist file
+     * @throws InterruptedException if interrupted while passing an entry
+     */
+    public static void read(final File file, final EntryConsumer consumer) throws IOException, InterruptedException {
+        try (final BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            if (isJson(file)) {
+                readJson(reader, consumer);
+            } else {
+                readCsv(reader, consumer);
+            }
+        }
+    }
+
+    private static void readJson(final Reader in, final EntryConsumer consumer) throws IOException, InterruptedException {
+        final JsonReader reader = new JsonReader(in);
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                UUID uuid = null;
+                String name = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    final String key = reader.nextName();
+                    if (reader.peek() == JsonToken.STRING && key.equals("uuid")) {
+                        uuid = parseUuid(reader.nextString());
+                    } else if (reader.peek() == JsonToken.STRING && key.equals("name")) {
+                        name = reader.nextString().trim();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                if (uuid != null || (name != null && !name.isEmpty())) {
+                    consumer.accept(uuid, name != null && !name.isEmpty() ? name : null);
+                }
+            }
+            reader.endArray();
+        } catch (final IllegalStateException e) {
+            // Thrown by the reader on unexpected tokens
+            throw new IOException("Invalid whitelist file: " + e.getMessage(), e);
+        }
+    }
+
+    private static void readCsv(final BufferedReader reader, final EntryConsumer consumer) throws IOException, InterruptedException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            UUID uuid = null;
+            String name = null;
+            boolean header = false;
+            for (String field : CSV_SEPARATOR.split(line)) {
+                field = field.trim();
+                if (field.length() > 1 && field.startsWith("\"") && field.endsWith("\"")) {
+                    field = field.substring(1, field.length() - 1).trim();
+                }
+                if (field.isEmpty()) continue;
+
+                final UUID parsedUuid = parseUuid(field);
+                if (parsedUuid != null) {
+                    uuid = parsedUuid;
+                } else if (field.equalsIgnoreCase("uuid") || field.equalsIgnoreCase("name") || field.equalsIgnoreCase("username")) {
+                    header = true;
+                } else if (name == null) {
+                    name = field;
+                }
+            }
+
+            if (!header && (uuid != null || name != null)) {
+                consumer.accept(uuid, name);
+            }
+        }
+    }
+
+    /**
+     * Writes the players into a whitelist.json (if the file ends with .json) or CSV file (if it ends with .csv).
+     *
+     * @param file    whitelist file, replaced if already present
+     * @param players uuids of players mapped to their names
+     * @throws IOException if the file could not be written or has neither of the extensions
+     * @see #isWhitelistFile(File)
+     */
+    public static void write(final File file, final Map<UUID, String> players) throws IOException {
+        if (!isWhitelistFile(file)) {
+            throw new IOException("Not a .json or .csv file: " + file.getName());
+        }
+
+        try (final Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            if (isJson(file)) {
+                final JsonWriter jsonWriter = new JsonWriter(writer);
+                jsonWriter.setIndent("  ");
+                jsonWriter.beginArray();
+                for (final Map.Entry<UUID, String> entry : players.entrySet()) {
+                    jsonWriter.beginObject().name("uuid").value(entry.getKey().toString()).name("name").value(entry.getValue()).endObject();
+                }
+                jsonWriter.endArray();
+                jsonWriter.flush();
+            } else {
+                writer.write("uuid,name\n");
+                for (final Map.Entry<UUID, String> entry : players.entrySet()) {
+                    writer.write(entry.getKey().toString() + ',' + entry.getValue() + '\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Only files with these extensions may be written, so that none of the plugin's own files can be replaced.
+     *
+     * @param file file to check
+     * @return true if the file ends with .json or .csv
+     */
+    public static boolean isWhitelistFile(final File file) {
+        final String name = file.getName().toLowerCase();
+        return name.endsWith(".json") || name.endsWith(".csv");
+    }
+
+    private static boolean isJson(final File file) {
+        return file.getName().toLowerCase().endsWith(".json");
+    }
+
+    @Nullable
+    private static UUID parseUuid(final String s) {
+        final String uuid = s.length() == 32 ? UUID_WITHOUT_DASHES.matcher(s).replaceFirst("$1-$2-$3-$4-$5") : s;
+        if (uuid.length() != 36) return null;
+        try {
+            return UUID.fromString(uuid);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        /**
+         * @param uuid uuid of the player, or null if only the name is given
+         * @param name name of the player, or null if only the uuid is given
+         * @throws InterruptedException if interrupted while waiting to accept the entry
+         */
+        void accept(@Nullable UUID uuid, @Nullable String name) throws InterruptedException;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.whitelist;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Reads a whitelist file while resolving the uuids of players only given by name, with a limited amount of lookups at the same time.
+ */
+public final class WhitelistImporter {
+    private static final int PROGRESS_INTERVAL = 1000;
+    private final Function<String, CompletableFuture<UUID>> resolver;
+    private final int parallelism;
+    private final IntConsumer progressListener;
+
+    /**
+     * @param resolver         function to look up the uuid of a player name, completing with null if there is no such player
+     * @param parallelism      maximum amount of lookups at the same time
+     * @param progressListener called with the amount of processed entries every {@value #PROGRESS_INTERVAL} entries, from any thread
+     */
+    public WhitelistImporter(final Function<String, CompletableFuture<UUID>> resolver, final int parallelism, final IntConsumer progressListener) {
+        this.resolver = resolver;
+        this.parallelism = parallelism;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Reads all players of the file, blocking until all lookups are done.
+     *
+     * @param file whitelist file
+     * @return players of the file
+     * @throws IOException          if the file could not be read
+     * @throws InterruptedException if interrupted while waiting for lookups
+     */
+    public Result read(final File file) throws IOException, InterruptedException {
+        final Map<UUID, String> players = new ConcurrentHashMap<>();
+        final List<String> unresolved = Collections.synchronizedList(new ArrayList<>());
+        final Set<String> lookedUp = new HashSet<>();
+        final AtomicInteger processed = new AtomicInteger();
+        final Semaphore lookups = new Semaphore(parallelism);
+        try {
+            WhitelistFile.read(file, (uuid, name) -> {
+                if (uuid != null) {
+                    // Without a name, it is used in place of one like when adding unknown players by uuid
+                    players.put(uuid, name != null ? name : uuid.toString());
+                    processed(processed);
+                    return;
+                }
+                if (!lookedUp.add(name.toLowerCase(Locale.ROOT))) {
+                    processed(processed);
+                    return;
+                }
+
+                // Wait for a free lookup instead of reading the whole file ahead
+                lookups.acquire();
+                final CompletableFuture<UUID> lookup;
+                try {
+                    lookup = resolver.apply(name);
+                } catch (final RuntimeException e) {
+                    lookups.release();
+                    throw e;
+                }
+                lookup.whenComplete((resolvedUuid, throwable) -> {
+                    if (resolvedUuid != null) {
+                        players.putIfAbsent(resolvedUuid, name);
+                    } else {
+                        unresolved.add(name);
+                    }
+                    lookups.release();
+                    processed(processed);
+                });
+            });
+        } finally {
+            // Wait for all running lookups
+            lookups.acquire(parallelism);
+        }
+        return new Result(players, unresolved);
+    }
+
+    private void processed(final AtomicInteger processed) {
+        final int amount = processed.incrementAndGet();
+        if (amount % PROGRESS_INTERVAL == 0) {
+            progressListener.accept(amount);
+        }
+    }
+
+    public static final class Result {
+        private final Map<UUID, String> players;
+        private final List<String> unresolved;
+
+        private Result(final Map<UUID, String> players, final List<String> unresolved) {
+            this.players = players;
+            this.unresolved = unresolved;
+        }
+
+        /**
+         * @return uuids of all read players mapped to their names
+         */
+        public Map<UUID, String> getPlayers() {
+            return players;
+        }
+
+        /**
+         * @return names of players whose uuid could not be found
+         */
+        public List<String> getUnresolved() {
+            return unresolved;
+        }
+    }
+}
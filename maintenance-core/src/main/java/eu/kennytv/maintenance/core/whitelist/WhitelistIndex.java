@@ -0,0 +1,359 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.core.whitelist;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Immutable whitelist, mapping uuids to the saved names of the players.
+ * <p>
+ * Uuids are kept as pairs of longs and names in a single char array, both looked up in open-addressed hash tables,
+ * so that even very large whitelists take little memory and lookups neither lock nor allocate.
+ * Changes create a new index, which is then published by replacing the reference to the old one.
+ * <p>
+ * Names are looked up ignoring their case. All map modifications throw an {@link UnsupportedOperationException}.
+ */
+public final class WhitelistIndex extends AbstractMap<UUID, String> {
+    public static final WhitelistIndex EMPTY = new Builder(0).build();
+    private static final int EMPTY_SLOT = -1;
+    // Most and least significant bits of the uuid of each entry
+    private final long[] uuids;
+    // Names of all entries after another, the name of an entry starting at nameOffsets[entry] and ending at nameOffsets[entry + 1]
+    private final char[] names;
+    private final int[] nameOffsets;
+    // Entries by the hash of their uuid/lowercase name
+    private final int[] uuidTable;
+    private final int[] nameTable;
+    private final int size;
+    private Set<Entry<UUID, String>> entrySet;
+
+    private WhitelistIndex(final long[] uuids, final char[] names, final int[] nameOffsets, final int size, final boolean indexNames) {
+        this.uuids = uuids;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+        this.size = size;
+
+        final int tableSize = tableSize(size);
+        final int mask = tableSize - 1;
+        uuidTable = new int[tableSize];
+        Arrays.fill(uuidTable, EMPTY_SLOT);
+        for (int entry = 0; entry < size; entry++) {
+            int slot = uuidHash(uuids[entry * 2], uuids[entry * 2 + 1]) & mask;
+            while (uuidTable[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & mask;
+            }
+            uuidTable[slot] = entry;
+        }
+
+        if (!indexNames) {
+            nameTable = null;
+            return;
+        }
+
+        nameTable = new int[tableSize];
+        Arrays.fill(nameTable, EMPTY_SLOT);
+        for (int entry = 0; entry < size; entry++) {
+            int slot = nameHash(names, nameOffsets[entry], nameOffsets[entry + 1]) & mask;
+            while (nameTable[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & mask;
+            }
+            nameTable[slot] = entry;
+        }
+    }
+
+    /**
+     * @param players uuids of players mapped to their names
+     * @return index containing all players of the map
+     */
+    public static WhitelistIndex of(final Map<UUID, String> players) {
+        if (players instanceof WhitelistIndex) {
+            return (WhitelistIndex) players;
+        }
+
+        final Builder builder = new Builder(players.size());
+        for (final Map.Entry<UUID, String> entry : players.entrySet()) {
+            builder.add(entry.getKey().getMostSignificantBits(), entry.getKey().getLeastSignificantBits(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a new index with the given changes applied, leaving this one untouched.
+     *
+     * @param changes uuids of changed players mapped to their names, or to null if they have been removed
+     * @return new index with the changes applied
+     */
+    public WhitelistIndex withChanges(final Map<UUID, String> changes) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+
+        // Changed uuids are skipped when copying the current entries
+        final long[] changedUuids = new long[changes.size() * 2];
+        int changed = 0;
+        for (final UUID uuid : changes.keySet()) {
+            changedUuids[changed * 2] = uuid.getMostSignificantBits();
+            changedUuids[changed * 2 + 1] = uuid.getLeastSignificantBits();
+            changed++;
+        }
+        final WhitelistIndex changedIndex = new WhitelistIndex(changedUuids, new char[0], new int[changed + 1], changed, false);
+
+        final Builder builder = new Builder(size + changes.size());
+        for (int entry = 0; entry < size; entry++) {
+            final long mostSigBits = uuids[entry * 2];
+            final long leastSigBits = uuids[entry * 2 + 1];
+            if (changedIndex.indexOf(mostSigBits, leastSigBits) == -1) {
+                builder.add(mostSigBits, leastSigBits, names, nameOffsets[entry], nameOffsets[entry + 1]);
+            }
+        }
+        for (final Map.Entry<UUID, String> entry : changes.entrySet()) {
+            if (entry.getValue() != null) {
+                builder.add(entry.getKey().getMostSignificantBits(), entry.getKey().getLeastSignificantBits(), entry.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @param uuid uuid of the player
+     * @return true if the player is whitelisted
+     */
+    public boolean contains(final UUID uuid) {
+        return indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()) != -1;
+    }
+
+    /**
+     * @param name name of the player, ignoring its case
+     * @return uuid of a whitelisted player with the given name, or null if there is none
+     */
+    @Nullable
+    public UUID getUuid(final String name) {
+        final int mask = nameTable.length - 1;
+        int slot = nameHash(name) & mask;
+        int entry;
+        while ((entry = nameTable[slot]) != EMPTY_SLOT) {
+            if (nameEquals(entry, name)) {
+                return new UUID(uuids[entry * 2], uuids[entry * 2 + 1]);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return key instanceof UUID && contains((UUID) key);
+    }
+
+    @Override
+    @Nullable
+    public String get(final Object key) {
+        if (!(key instanceof UUID)) return null;
+
+        final UUID uuid = (UUID) key;
+        final int entry = indexOf(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return entry != -1 ? name(entry) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public Set<Entry<UUID, String>> entrySet() {
+        // Creating it twice on concurrent calls doesn't matter
+        Set<Entry<UUID, String>> entrySet = this.entrySet;
+        if (entrySet == null) {
+            this.entrySet = entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private int indexOf(final long mostSigBits, final long leastSigBits) {
+        final int mask = uuidTable.length - 1;
+        int slot = uuidHash(mostSigBits, leastSigBits) & mask;
+        int entry;
+        while ((entry = uuidTable[slot]) != EMPTY_SLOT) {
+            if (uuids[entry * 2] == mostSigBits && uuids[entry * 2 + 1] == leastSigBits) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private String name(final int entry) {
+        return new String(names, nameOffsets[entry], nameOffsets[entry + 1] - nameOffsets[entry]);
+    }
+
+    private boolean nameEquals(final int entry, final String name) {
+        final int start = nameOffsets[entry];
+        final int length = nameOffsets[entry + 1] - start;
+        if (length != name.length()) return false;
+
+        for (int i = 0; i < length; i++) {
+            if (fold(names[start + i]) != fold(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int tableSize(final int size) {
+        // Keep the tables at most half full
+        int tableSize = 16;
+        while (tableSize < size * 2) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    private static int uuidHash(final long mostSigBits, final long leastSigBits) {
+        final long hash = (mostSigBits ^ Long.rotateLeft(leastSigBits, 32)) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32);
+    }
+
+    private static int nameHash(final char[] chars, final int start, final int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + fold(chars[i]);
+        }
+        return spread(hash);
+    }
+
+    private static int nameHash(final String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + fold(name.charAt(i));
+        }
+        return spread(hash);
+    }
+
+    private static int spread(final int hash) {
+        final int spread = hash * 0x9E3779B9;
+        return spread ^ (spread >>> 16);
+    }
+
+    // Same comparison as String#equalsIgnoreCase
+    private static char fold(final char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<UUID, String>> {
+
+        @Override
+        public Iterator<Entry<UUID, String>> iterator() {
+            return new Iterator<Entry<UUID, String>>() {
+                private int entry;
+
+                @Override
+                public boolean hasNext() {
+                    return entry < size;
+                }
+
+                @Override
+                public Entry<UUID, String> next() {
+                    if (entry >= size) {
+                        throw new NoSuchElementException();
+                    }
+
+                    final int entry = this.entry++;
+                    return new SimpleImmutableEntry<>(new UUID(uuids[entry * 2], uuids[entry * 2 + 1]), name(entry));
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(final Object o) {
+            if (!(o instanceof Entry)) return false;
+
+            final Entry<?, ?> entry = (Entry<?, ?>) o;
+            final String name = get(entry.getKey());
+            return name != null && name.equals(entry.getValue());
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private static final class Builder {
+        private long[] uuids;
+        private char[] names;
+        private int[] nameOffsets;
+        private int size;
+
+        private Builder(final int expectedSize) {
+            uuids = new long[expectedSize * 2];
+            names = new char[expectedSize * 16];
+            nameOffsets = new int[expectedSize + 1];
+        }
+
+        private void add(final long mostSigBits, final long leastSigBits, final String name) {
+            ensureNameCapacity(name.length());
+            final int start = nameOffsets[size];
+            name.getChars(0, name.length(), names, start);
+            addUuid(mostSigBits, leastSigBits, start + name.length());
+        }
+
+        private void add(final long mostSigBits, final long leastSigBits, final char[] chars, final int start, final int end) {
+            ensureNameCapacity(end - start);
+            final int offset = nameOffsets[size];
+            System.arraycopy(chars, start, names, offset, end - start);
+            addUuid(mostSigBits, leastSigBits, offset + end - start);
+        }
+
+        private void addUuid(final long mostSigBits, final long leastSigBits, final int nameEnd) {
+            if (size * 2 == uuids.length) {
+                uuids = Arrays.copyOf(uuids, Math.max(uuids.length * 2, 16));
+                nameOffsets = Arrays.copyOf(nameOffsets, uuids.length / 2 + 1);
+            }
+            uuids[size * 2] = mostSigBits;
+            uuids[size * 2 + 1] = leastSigBits;
+            nameOffsets[++size] = nameEnd;
+        }
+
+        private void ensureNameCapacity(final int length) {
+            final int required = nameOffsets[size] + length;
+            if (required > names.length) {
+                names = Arrays.copyOf(names, Math.max(required, names.length * 2));
+            }
+        }
+
+        private WhitelistIndex build() {
+            return new WhitelistIndex(Arrays.copyOf(uuids, size * 2), Arrays.copyOf(names, nameOffsets[size]), Arrays.copyOf(nameOffsets, size + 1), size, true);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package eu.kennytv.maintenance.core;
+
+import org.junit.jupiter.api.Test;
+
+class MessageTemplateTest {
+
+    private final Placeholders<String> placeholders = new Placeholders<String>(new Placeholders<>()
+            .register("MAX", (builder, context) -> builder.append(100)))
+            .register("PLAYER", StringBuilder::append);
+
+    @Test
+    void testPlaceholders() {
+        final MessageTemplate template = MessageTemplate.of("§c%PLAYER% joined (%MAX% max)");
+        assert template.contains("PLAYER");
+        assert template.render(placeholders, "KennyTV").equals("§cKennyTV joined (100 max)");
+    }
+
+    @Test
+    void testUnknownPlaceholders() {
+        assert MessageTemplate.of("%UNKNOWN%: %PLAYER%").render(placeholders, "a").equals("%UNKNOWN%: a");
+    }
+
+    @Test
+    void testPercentSigns() {
+        assert MessageTemplate.of("100% of %PLAYER%%").render(placeholders, "a").equals("100% of a%");
+        assert MessageTemplate.of("50 % and %PLAYER% %").render(placeholders, "a").equals("50 % and a %");
+        assert MessageTemplate.of("%%PLAYER%%").render(placeholders, "a").equals("%a%");
+    }
+
+    @Test
+    void testArgumentPlaceholders() {
+        final Placeholders<String> argumentPlaceholders = new Placeholders<String>(placeholders)
+                .registerArgument("UPPER", (builder, context, argument) -> builder.append(argument.toUpperCase()));
+        assert MessageTemplate.of("%UPPER:abc% %PLAYER% %UPPER%").render(argumentPlaceholders, "a").equals("ABC a %UPPER%");
+    }
+
+    @Test
+    void testReusedBuilder() {
+        final MessageTemplate template = MessageTemplate.of("Hi %PLAYER%");
+        final StringBuilder builder = new StringBuilder();
+        template.render(builder, placeholders, "a");
+        builder.append(',');
+        template.render(builder, placeholders, "b");
+        assert builder.toString().equals("Hi a,Hi b");
+    }
+}
@@ -0,0 +1,45 @@
+package eu.kennytv.maintenance.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class PingResponseTest {
+
+    @Test
+    void testComponentsCreatedOnce() {
+        final PingResponse response = new PingResponse(new String[]{"§cfirst", "§csecond"}, new String[]{"a", "b"}, "§cMaintenance",
+                null, false, 0, 100, 0, 0);
+        final AtomicInteger motdConversions = new AtomicInteger();
+        final AtomicInteger platformDataCreations = new AtomicInteger();
+        for (int i = 0; i < 10_000; i++) {
+            final String motd = response.getMotd(s -> {
+                motdConversions.incrementAndGet();
+                return "converted " + s;
+            });
+            assert motd.equals("converted §cfirst") || motd.equals("converted §csecond");
+            response.getPlatformData(r -> {
+                platformDataCreations.incrementAndGet();
+                return r.getHoverLines().length;
+            });
+        }
+
+        // At most one conversion per motd, no matter the amount of pings
+        assert motdConversions.get() <= 2;
+        assert platformDataCreations.get() == 1;
+    }
+
+    @Test
+    void testAnimatedFrames() {
+        final PingResponse response = new PingResponse(new String[]{"1", "2", "3"}, new String[0], null,
+                null, false, 0, 100, 1, 0);
+        final AtomicInteger conversions = new AtomicInteger();
+        for (int i = 0; i < 1000; i++) {
+            response.getMotd(s -> {
+                conversions.incrementAndGet();
+                return s;
+            });
+        }
+        assert conversions.get() <= 3;
+    }
+}
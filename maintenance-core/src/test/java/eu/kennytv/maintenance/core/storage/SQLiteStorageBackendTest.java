@@ -0,0 +1,64 @@
+package eu.kennytv.maintenance.core.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+class SQLiteStorageBackendTest {
+
+    @Test
+    void testSaveAndLoad() throws IOException {
+        final File directory = Files.createTempDirectory("maintenance").toFile();
+        final File file = new File(directory, "storage.db");
+        try {
+            SQLiteStorageBackend storage = new SQLiteStorageBackend(file);
+            storage.open();
+            assert storage.loadMaintenance() == null;
+            assert storage.loadWhitelist().isEmpty();
+
+            final UUID first = UUID.randomUUID();
+            final UUID second = UUID.randomUUID();
+            final Map<UUID, String> players = new HashMap<>();
+            players.put(first, "first");
+            players.put(second, "second");
+            storage.saveWhitelist(players);
+            storage.saveMaintenance(true);
+            storage.saveMaintenanceServers(Arrays.asList("lobby", "game"), true);
+
+            // Only the changed entries are touched
+            storage.saveWhitelist(Collections.singletonMap(first, null));
+            storage.saveWhitelist(Collections.singletonMap(second, "renamed"));
+            storage.saveMaintenanceServers(Collections.singletonList("lobby"), false);
+            storage.close();
+
+            storage = new SQLiteStorageBackend(file);
+            storage.open();
+            assert storage.loadMaintenance();
+            assert storage.loadWhitelist().equals(Collections.singletonMap(second, "renamed"));
+            assert storage.loadMaintenanceServers().equals(Collections.singleton("game"));
+            storage.close();
+
+            try {
+                storage.loadWhitelist();
+                assert false;
+            } catch (final IOException ignored) {
+                // Closed storages are rejected
+            }
+        } finally {
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (final File f : files) {
+                    f.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package eu.kennytv.maintenance.core.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+class WhitelistJournalTest {
+
+    private static final Logger LOGGER = Logger.getLogger("WhitelistJournalTest");
+
+    @Test
+    void testReplay() throws IOException {
+        final File file = Files.createTempFile("maintenance", ".journal").toFile();
+        try {
+            final UUID first = UUID.randomUUID();
+            final UUID second = UUID.randomUUID();
+            WhitelistJournal journal = new WhitelistJournal(LOGGER, file);
+            journal.open();
+            journal.append(Collections.singletonMap(first, "first"));
+            journal.append(Collections.singletonMap(second, "second"));
+            journal.append(Collections.singletonMap(first, null));
+            journal.append(Collections.singletonMap(second, "renamed name"));
+            assert journal.getEntries() == 4;
+            journal.close();
+
+            journal = new WhitelistJournal(LOGGER, file);
+            final Map<UUID, String> players = new HashMap<>();
+            assert replay(journal, players) == 4;
+            assert players.size() == 1;
+            assert players.get(second).equals("renamed name");
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Test
+    void testRotation() throws IOException {
+        final File file = Files.createTempFile("maintenance", ".journal").toFile();
+        final File rotatedFile = new File(file.getPath() + ".old");
+        try {
+            final UUID first = UUID.randomUUID();
+            final UUID second = UUID.randomUUID();
+            final WhitelistJournal journal = new WhitelistJournal(LOGGER, file);
+            journal.open();
+            journal.append(Collections.singletonMap(first, "first"));
+            journal.rotate();
+            assert journal.getEntries() == 0;
+            journal.append(Collections.singletonMap(second, "second"));
+            journal.sync();
+
+            // Not yet compacted, so both journals are replayed
+            final Map<UUID, String> players = new HashMap<>();
+            assert replay(journal, players) == 2;
+            assert players.containsKey(first) && players.containsKey(second);
+
+            // A failed compaction keeps the changes for the next one
+            journal.rotate();
+            players.clear();
+            assert replay(journal, players) == 2;
+
+            journal.compacted();
+            players.clear();
+            assert replay(journal, players) == 0;
+            journal.close();
+        } finally {
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(rotatedFile.toPath());
+        }
+    }
+
+    @Test
+    void testTornWrite() throws IOException {
+        final File file = Files.createTempFile("maintenance", ".journal").toFile();
+        try {
+            final UUID uuid = UUID.randomUUID();
+            final WhitelistJournal journal = new WhitelistJournal(LOGGER, file);
+            journal.open();
+            journal.append(Collections.singletonMap(uuid, "first"));
+            journal.close();
+            Files.write(file.toPath(), ("+" + uuid.toString().substring(0, 10)).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+            final Map<UUID, String> players = new HashMap<>();
+            assert replay(journal, players) == 1;
+            assert players.get(uuid).equals("first");
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    private static int replay(final WhitelistJournal journal, final Map<UUID, String> players) throws IOException {
+        return journal.replay((uuid, name) -> {
+            if (name != null) {
+                players.put(uuid, name);
+            } else {
+                players.remove(uuid);
+            }
+        });
+    }
+}
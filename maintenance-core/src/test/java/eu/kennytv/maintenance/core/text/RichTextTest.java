@@ -0,0 +1,50 @@
+package eu.kennytv.maintenance.core.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class RichTextTest {
+
+    @Test
+    void testLegacyCodes() {
+        assert RichText.parse("&8[&eMaintenance&8] &7").toLegacy().equals("§8[§eMaintenance§8] §7");
+        assert RichText.parse("&lBold &CRed").toLegacy().equals("§lBold §cRed");
+        assert RichText.parse("Rock & Roll &z").toLegacy().equals("Rock & Roll &z");
+        assert RichText.parse("§cred&r plain").toLegacy().equals("§cred§r plain");
+    }
+
+    @Test
+    void testHexColors() {
+        final RichText text = RichText.parse("&#FF8000&lorange &#ff5555red");
+        final List<TextSegment> segments = text.getSegments();
+        assert segments.size() == 2;
+        assert segments.get(0).getColor() == 0xFF8000 && !segments.get(0).isLegacyColor();
+        assert segments.get(0).hasDecoration(TextSegment.BOLD);
+        assert segments.get(1).isLegacyColor() && segments.get(1).getLegacyColor() == 'c';
+        assert text.toLegacy().equals("§x§f§f§8§0§0§0§lorange §cred");
+        // Serialized hex colors are read back
+        assert RichText.parse(text.toLegacy()).toLegacy().equals(text.toLegacy());
+    }
+
+    @Test
+    void testGradient() {
+        final List<TextSegment> segments = RichText.parse("&a<gradient:#000000:#FFFFFF>a&lbc</gradient>d").getSegments();
+        assert segments.size() == 4;
+        assert segments.get(0).getColor() == 0x000000 && segments.get(1).getColor() == 0x808080 && segments.get(2).getColor() == 0xFFFFFF;
+        assert !segments.get(0).hasDecoration(TextSegment.BOLD) && segments.get(2).hasDecoration(TextSegment.BOLD);
+        assert segments.get(3).getText().equals("d") && segments.get(3).getLegacyColor() == 'a' && !segments.get(3).hasDecoration(TextSegment.BOLD);
+    }
+
+    @Test
+    void testGradientKeepsPlaceholders() {
+        final List<TextSegment> segments = RichText.parse("<gradient:#000000:#FFFFFF>a%TIMER%b</gradient>").getSegments();
+        assert segments.size() == 3;
+        assert segments.get(1).getText().equals("%TIMER%");
+    }
+
+    @Test
+    void testInvalidGradient() {
+        assert RichText.parse("<gradient:#00:#FFFFFF>a").toLegacy().equals("<gradient:#00:#FFFFFF>a");
+    }
+}
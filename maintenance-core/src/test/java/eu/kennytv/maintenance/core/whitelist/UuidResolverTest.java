@@ -0,0 +1,207 @@
+package eu.kennytv.maintenance.core.whitelist;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+class UuidResolverTest {
+
+    private static final Logger LOGGER = Logger.getLogger("UuidResolverTest");
+    private final List<List<String>> requests = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger rateLimits = new AtomicInteger();
+    private HttpServer server;
+    private File cacheFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        cacheFile = Files.createTempFile("maintenance", ".txt").toFile();
+        Files.delete(cacheFile.toPath());
+
+        // Stands in for Mojang's bulk profile endpoint, only knowing names starting with "player"
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/profiles/minecraft", exchange -> {
+            final List<String> names = new ArrayList<>();
+            for (final JsonElement element : new JsonParser().parse(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)).getAsJsonArray()) {
+                names.add(element.getAsString());
+            }
+            if (rateLimits.getAndUpdate(i -> Math.max(0, i - 1)) > 0) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                exchange.sendResponseHeaders(429, -1);
+                exchange.close();
+                return;
+            }
+
+            requests.add(names);
+            final JsonArray profiles = new JsonArray();
+            for (final String name : names) {
+                if (!name.startsWith("player")) continue;
+
+                final JsonObject profile = new JsonObject();
+                profile.addProperty("id", uuid(name).toString().replace("-", ""));
+                profile.addProperty("name", name.toUpperCase(Locale.ROOT));
+                profiles.add(profile);
+            }
+
+            final byte[] response = profiles.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (final OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop(0);
+        Files.deleteIfExists(cacheFile.toPath());
+    }
+
+    @Test
+    void testBatchedLookups() throws Exception {
+        final UuidResolver resolver = createResolver();
+        try {
+            final List<CompletableFuture<UUID>> futures = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                futures.add(resolver.resolve("player" + i));
+            }
+            final CompletableFuture<UUID> unknown = resolver.resolve("unknown");
+            final CompletableFuture<UUID> invalid = resolver.resolve("not a name");
+
+            for (int i = 0; i < futures.size(); i++) {
+                assert futures.get(i).get(5, TimeUnit.SECONDS).equals(uuid("player" + i));
+            }
+            assert unknown.get(5, TimeUnit.SECONDS) == null;
+            assert invalid.get(5, TimeUnit.SECONDS) == null;
+
+            // At most 10 names per request
+            assert requests.size() == 3;
+            assert requests.stream().allMatch(names -> names.size() <= 10);
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    void testSingleFlight() throws Exception {
+        final UuidResolver resolver = createResolver();
+        try {
+            final CompletableFuture<UUID> first = resolver.resolve("player1");
+            final CompletableFuture<UUID> second = resolver.resolve("PLAYER1");
+            assert first == second;
+            assert first.get(5, TimeUnit.SECONDS).equals(uuid("player1"));
+
+            // Cached afterwards
+            assert resolver.resolve("Player1").get(5, TimeUnit.SECONDS).equals(uuid("player1"));
+            assert resolver.resolve("unknown").get(5, TimeUnit.SECONDS) == null;
+            assert resolver.resolve("unknown").get(5, TimeUnit.SECONDS) == null;
+            assert requests.size() == 2;
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    void testRateLimitBackoff() throws Exception {
+        rateLimits.set(1);
+        final UuidResolver resolver = createResolver();
+        try {
+            assert resolver.resolve("player1").get(10, TimeUnit.SECONDS).equals(uuid("player1"));
+            assert rateLimits.get() == 0;
+            assert requests.size() == 1;
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    void testPersistedCache() throws Exception {
+        UuidResolver resolver = createResolver();
+        assert resolver.resolve("player1").get(5, TimeUnit.SECONDS).equals(uuid("player1"));
+        assert resolver.resolve("unknown").get(5, TimeUnit.SECONDS) == null;
+        resolver.close();
+        assert cacheFile.exists();
+
+        resolver = createResolver();
+        try {
+            assert resolver.resolve("player1").get(5, TimeUnit.SECONDS).equals(uuid("player1"));
+            assert resolver.resolve("unknown").get(5, TimeUnit.SECONDS) == null;
+            assert requests.size() == 2;
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    void testLocalLookup() throws Exception {
+        final UUID local = UUID.randomUUID();
+        final UuidResolver resolver = new UuidResolver(LOGGER, name -> name.equals("KennyTV") ? local : null, cacheFile, profilesUrl());
+        try {
+            assert resolver.resolve("KennyTV").get(5, TimeUnit.SECONDS).equals(local);
+            assert requests.isEmpty();
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    void testUnreachable() throws Exception {
+        server.stop(0);
+        final UuidResolver resolver = createResolver();
+        try {
+            resolver.resolve("player1").get(10, TimeUnit.SECONDS);
+            assert false;
+        } catch (final ExecutionException ignored) {
+        } finally {
+            resolver.close();
+        }
+    }
+
+    @Test
+    void testClosed() throws Exception {
+        final UuidResolver resolver = createResolver();
+        resolver.close();
+        try {
+            resolver.resolve("player1").get(5, TimeUnit.SECONDS);
+            assert false;
+        } catch (final ExecutionException e) {
+            assert e.getCause() instanceof IllegalStateException;
+        }
+        assert requests.isEmpty();
+    }
+
+    private UuidResolver createResolver() {
+        return new UuidResolver(LOGGER, name -> null, cacheFile, profilesUrl());
+    }
+
+    private String profilesUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/profiles/minecraft";
+    }
+
+    private static UUID uuid(final String name) {
+        return UUID.nameUUIDFromBytes(name.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,85 @@
+package eu.kennytv.maintenance.core.whitelist;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class WhitelistImporterTest {
+
+    @Test
+    void testCsvImport() throws IOException, InterruptedException {
+        final UUID kenny = UUID.randomUUID();
+        final List<String> lines = new ArrayList<>();
+        lines.add("uuid,name");
+        lines.add(kenny + ",KennyTV");
+        lines.add("\"" + UUID.randomUUID().toString().replace("-", "") + "\";Notch");
+        lines.add("# comment");
+        lines.add("");
+        for (int i = 0; i < 2500; i++) {
+            lines.add("Player" + i);
+        }
+        lines.add("player0");
+        lines.add("Unknown");
+
+        final File file = Files.createTempFile("maintenance", ".csv").toFile();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Files.write(file.toPath(), lines, StandardCharsets.UTF_8);
+
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+            final AtomicInteger lookups = new AtomicInteger();
+            final List<Integer> progress = new ArrayList<>();
+            final WhitelistImporter importer = new WhitelistImporter(name -> CompletableFuture.supplyAsync(() -> {
+                lookups.incrementAndGet();
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                running.decrementAndGet();
+                return name.equals("Unknown") ? null : UUID.nameUUIDFromBytes(name.toLowerCase().getBytes(StandardCharsets.UTF_8));
+            }, executor), 3, amount -> {
+                synchronized (progress) {
+                    progress.add(amount);
+                }
+            });
+
+            final WhitelistImporter.Result result = importer.read(file);
+            assert result.getPlayers().size() == 2502;
+            assert result.getPlayers().get(kenny).equals("KennyTV");
+            assert result.getPlayers().containsValue("Notch");
+            assert result.getUnresolved().size() == 1 && result.getUnresolved().get(0).equals("Unknown");
+            // Names are only looked up once, with at most 3 lookups at the same time
+            assert lookups.get() == 2501;
+            assert maxRunning.get() <= 3;
+            assert progress.size() == 2;
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Test
+    void testResolve() throws IOException {
+        final File folder = Files.createTempDirectory("maintenance").toFile();
+        try {
+            assert WhitelistFile.resolve(folder, "whitelist.json").equals(new File(folder.getCanonicalFile(), "whitelist.json"));
+            assert WhitelistFile.resolve(folder, "../whitelist.json") == null;
+            assert WhitelistFile.resolve(folder, ".") == null;
+
+            // Plugin files may not be overwritten by exports
+            assert WhitelistFile.isWhitelistFile(new File(folder, "export.CSV"));
+            assert !WhitelistFile.isWhitelistFile(new File(folder, "config.yml"));
+            assert !WhitelistFile.isWhitelistFile(new File(folder, "storage.db"));
+        } finally {
+            Files.deleteIfExists(folder.toPath());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package eu.kennytv.maintenance.core.whitelist;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+class WhitelistIndexTest {
+
+    @Test
+    void testLookups() {
+        final Map<UUID, String> players = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            players.put(new UUID(i, -i), "Player" + i);
+        }
+        // Nil uuid and empty name are valid entries
+        players.put(new UUID(0, 0), "");
+
+        final WhitelistIndex index = WhitelistIndex.of(players);
+        assert index.size() == players.size();
+        assert index.equals(players);
+        for (final Map.Entry<UUID, String> entry : players.entrySet()) {
+            assert index.contains(entry.getKey());
+            assert index.get(entry.getKey()).equals(entry.getValue());
+            assert index.getUuid(entry.getValue()).equals(entry.getKey());
+        }
+
+        assert !index.contains(new UUID(1, 1));
+        assert index.get(new UUID(1, 1)) == null;
+        assert index.get("Player1") == null;
+        assert index.getUuid("player1234").equals(new UUID(1234, -1234));
+        assert index.getUuid("PLAYER1234").equals(new UUID(1234, -1234));
+        assert index.getUuid("Player10000") == null;
+    }
+
+    @Test
+    void testChanges() {
+        final UUID kenny = UUID.randomUUID();
+        final UUID notch = UUID.randomUUID();
+        final WhitelistIndex index = WhitelistIndex.EMPTY.withChanges(Collections.singletonMap(kenny, "KennyTV"));
+        assert index.size() == 1;
+        assert WhitelistIndex.EMPTY.isEmpty();
+
+        final Map<UUID, String> changes = new HashMap<>();
+        changes.put(kenny, "Kenny");
+        changes.put(notch, "Notch");
+        final WhitelistIndex changed = index.withChanges(changes);
+        assert changed.size() == 2;
+        assert changed.get(kenny).equals("Kenny");
+        assert changed.getUuid("kennytv") == null;
+        assert changed.getUuid("notch").equals(notch);
+        // The previous index stays untouched
+        assert index.get(kenny).equals("KennyTV");
+
+        final WhitelistIndex removed = changed.withChanges(Collections.singletonMap(kenny, null));
+        assert removed.size() == 1;
+        assert !removed.contains(kenny);
+        assert removed.getUuid("kenny") == null;
+        assert removed.contains(notch);
+    }
+
+    @Test
+    void testUnmodifiable() {
+        final WhitelistIndex index = WhitelistIndex.of(Collections.singletonMap(UUID.randomUUID(), "KennyTV"));
+        try {
+            index.put(UUID.randomUUID(), "Notch");
+            assert false;
+        } catch (final UnsupportedOperationException ignored) {
+        }
+        try {
+            index.keySet().clear();
+            assert false;
+        } catch (final UnsupportedOperationException ignored) {
+        }
+        assert index.size() == 1;
+    }
+}
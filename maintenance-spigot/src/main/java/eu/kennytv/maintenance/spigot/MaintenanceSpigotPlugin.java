@@ -24,6 +24,8 @@ import eu.kennytv.maintenance.core.MaintenancePlugin;
 import eu.kennytv.maintenance.core.Settings;
 import eu.kennytv.maintenance.core.dump.PluginDump;
 import eu.kennytv.maintenance.core.hook.ServerListPlusHook;
+import eu.kennytv.maintenance.core.icon.FaviconRotation;
+import eu.kennytv.maintenance.core.icon.MaintenanceIcon;
 import eu.kennytv.maintenance.core.util.SenderInfo;
 import eu.kennytv.maintenance.core.util.ServerType;
 import eu.kennytv.maintenance.core.util.Task;
@@ -49,9 +51,11 @@ import org.bukkit.plugin.PluginManager;
 import org.bukkit.util.CachedServerIcon;
 import org.jetbrains.annotations.Nullable;
 
-import javax.imageio.ImageIO;
 import java.io.File;
 import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
@@ -64,13 +68,15 @@ import java.util.stream.Collectors;
  */
 public final class MaintenanceSpigotPlugin extends MaintenancePlugin {
     private final MaintenanceSpigotBase plugin;
-    private CachedServerIcon favicon;
+    private final FaviconRotation<CachedServerIcon> favicons = new FaviconRotation<>();
+    private final Method cachedOfflinePlayerMethod;
 
     MaintenanceSpigotPlugin(final MaintenanceSpigotBase plugin) {
         super(plugin.getDescription().getVersion(), ServerType.SPIGOT);
         this.plugin = plugin;
+        this.cachedOfflinePlayerMethod = getCachedOfflinePlayerMethod();
 
-        settings = new Settings(this, "mysql", "proxied-maintenance-servers", "fallback", "waiting-server");
+        settings = new Settings(this, "mysql", "proxied-maintenance-servers", "fallback", "waiting-server", "ping-guard", "server-pingmessages", "server-status", "sync");
 
         sendEnableMessage();
 
@@ -169,11 +175,41 @@ public final class MaintenanceSpigotPlugin extends MaintenancePlugin {
         return player.getName() != null ? new BukkitOfflinePlayerInfo(player) : null;
     }
 
+    @Override
+    @Nullable
+    public SenderInfo getCachedPlayer(final String name) {
+        final Player onlinePlayer = getServer().getPlayerExact(name);
+        if (onlinePlayer != null) {
+            return new BukkitOfflinePlayerInfo(onlinePlayer);
+        }
+
+        // Server#getOfflinePlayer(String) may look the player up from Mojang on the calling thread
+        if (cachedOfflinePlayerMethod == null) return null;
+        try {
+            final OfflinePlayer player = (OfflinePlayer) cachedOfflinePlayerMethod.invoke(getServer(), name);
+            return player != null && player.getName() != null ? new BukkitOfflinePlayerInfo(player) : null;
+        } catch (final IllegalAccessException | InvocationTargetException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Nullable
+    private Method getCachedOfflinePlayerMethod() {
+        try {
+            // Only available on Paper
+            return Server.class.getMethod("getOfflinePlayerIfCached", String.class);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+    }
+
     @Override
     protected void kickPlayers() {
+        final String kickMessage = settings.getKickMessage();
         for (final Player p : getServer().getOnlinePlayers()) {
             if (!hasPermission(p, "bypass") && !settings.isWhitelisted(p.getUniqueId())) {
-                p.kickPlayer(settings.getKickMessage());
+                p.kickPlayer(kickMessage);
             }
         }
     }
@@ -220,8 +256,12 @@ public final class MaintenanceSpigotPlugin extends MaintenancePlugin {
     }
 
     @Override
-    protected void loadIcon(final File file) throws Exception {
-        favicon = plugin.getServer().loadServerIcon(ImageIO.read(file));
+    protected void loadIcons(final List<MaintenanceIcon> icons) throws Exception {
+        final List<CachedServerIcon> list = new ArrayList<>(icons.size());
+        for (final MaintenanceIcon icon : icons) {
+            list.add(plugin.getServer().loadServerIcon(icon.toImage()));
+        }
+        favicons.set(list);
     }
 
     public boolean hasPermission(final CommandSender sender, final String permission) {
@@ -232,7 +272,8 @@ public final class MaintenanceSpigotPlugin extends MaintenancePlugin {
         return plugin.getServer();
     }
 
+    @Nullable
     public CachedServerIcon getFavicon() {
-        return favicon;
+        return favicons.next();
     }
 }
@@ -22,11 +22,13 @@ import com.destroystokyo.paper.event.server.PaperServerListPingEvent;
 import com.destroystokyo.paper.profile.PlayerProfile;
 import com.destroystokyo.paper.profile.ProfileProperty;
 import com.mojang.authlib.GameProfile;
+import eu.kennytv.maintenance.core.PingResponse;
 import eu.kennytv.maintenance.core.Settings;
 import eu.kennytv.maintenance.spigot.MaintenanceSpigotPlugin;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.util.CachedServerIcon;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -45,24 +47,33 @@ public final class PaperServerListPingListener implements Listener {
     public void serverListPing(final PaperServerListPingEvent event) {
         if (!settings.isMaintenance()) return;
 
-        event.setMotd(settings.getRandomPingMessage());
+        final PingResponse response = settings.getPingResponse();
+        event.setMotd(response.getMotd());
 
-        if (settings.hasCustomPlayerCountMessage()) {
+        if (response.getVersionName() != null) {
             event.setProtocolVersion(-1);
-            event.setVersion(settings.getPlayerCountMessage()
-                    .replace("%ONLINE%", Integer.toString(plugin.getServer().getOnlinePlayers().size()))
-                    .replace("%MAX%", Integer.toString(plugin.getServer().getMaxPlayers())));
+            event.setVersion(response.getVersionName());
         }
 
         final List<PlayerProfile> sample = event.getPlayerSample();
         sample.clear();
-        for (final String string : settings.getPlayerCountHoverMessage().split("\n")) {
-            sample.add(new DummyProfile(string));
+        sample.addAll(response.getPlatformData(PaperServerListPingListener::createSample));
+
+        if (settings.hasCustomIcon()) {
+            final CachedServerIcon favicon = plugin.getFavicon();
+            if (favicon != null) {
+                event.setServerIcon(favicon);
+            }
         }
+    }
 
-        if (settings.hasCustomIcon() && plugin.getFavicon() != null) {
-            event.setServerIcon(plugin.getFavicon());
+    private static List<PlayerProfile> createSample(final PingResponse response) {
+        final String[] lines = response.getHoverLines();
+        final PlayerProfile[] profiles = new PlayerProfile[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            profiles[i] = new DummyProfile(lines[i]);
         }
+        return Arrays.asList(profiles);
     }
 
     // Less unnecessary object creation :>
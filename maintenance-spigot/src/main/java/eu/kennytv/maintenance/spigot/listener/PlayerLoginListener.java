@@ -51,7 +51,7 @@ public final class PlayerLoginListener extends JoinListenerBase implements Liste
     protected void broadcastJoinNotification(final String name) {
         for (final Player p : plugin.getServer().getOnlinePlayers()) {
             if (plugin.hasPermission(p, "joinnotification")) {
-                p.sendMessage(settings.getMessage("joinNotification").replace("%PLAYER%", name));
+                p.sendMessage(settings.getJoinNotification(name));
             }
         }
     }
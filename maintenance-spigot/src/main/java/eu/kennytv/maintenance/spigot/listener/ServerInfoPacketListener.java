@@ -23,8 +23,10 @@ import com.comphenix.protocol.ProtocolLibrary;
 import com.comphenix.protocol.events.ListenerPriority;
 import com.comphenix.protocol.events.PacketAdapter;
 import com.comphenix.protocol.events.PacketEvent;
+import com.comphenix.protocol.wrappers.WrappedChatComponent;
 import com.comphenix.protocol.wrappers.WrappedGameProfile;
 import com.comphenix.protocol.wrappers.WrappedServerPing;
+import eu.kennytv.maintenance.core.PingResponse;
 import eu.kennytv.maintenance.core.Settings;
 import eu.kennytv.maintenance.spigot.MaintenanceSpigotBase;
 import eu.kennytv.maintenance.spigot.MaintenanceSpigotPlugin;
@@ -32,13 +34,14 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.server.ServerListPingEvent;
+import org.bukkit.util.CachedServerIcon;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 public final class ServerInfoPacketListener extends PacketAdapter implements Listener {
-    private final UUID uuid = new UUID(0, 0);
+    private static final UUID DUMMY_UUID = new UUID(0, 0);
     private final MaintenanceSpigotPlugin plugin;
     private final Settings settings;
 
@@ -53,29 +56,37 @@ public final class ServerInfoPacketListener extends PacketAdapter implements Lis
     public void onPacketSending(final PacketEvent event) {
         if (!settings.isMaintenance() || !settings.isEnablePingMessages()) return;
 
+        // Motd components and the sample profiles are only created once per ping response
+        final PingResponse response = settings.getPingResponse();
         final WrappedServerPing ping = event.getPacket().getServerPings().read(0);
-        ping.setMotD(settings.getRandomPingMessage());
+        ping.setMotD(response.getMotd(WrappedChatComponent::fromLegacyText));
 
-        if (settings.hasCustomPlayerCountMessage()) {
+        if (response.getVersionName() != null) {
             ping.setVersionProtocol(1);
-            ping.setVersionName(settings.getPlayerCountMessage()
-                    .replace("%ONLINE%", Integer.toString(plugin.getServer().getOnlinePlayers().size()))
-                    .replace("%MAX%", Integer.toString(plugin.getServer().getMaxPlayers())));
+            ping.setVersionName(response.getVersionName());
         }
 
-        final List<WrappedGameProfile> players = new ArrayList<>();
-        for (final String string : settings.getPlayerCountHoverMessage().split("\n")) {
-            players.add(new WrappedGameProfile(uuid, string));
+        ping.setPlayers(response.getPlatformData(ServerInfoPacketListener::createPlayers));
+    }
+
+    private static List<WrappedGameProfile> createPlayers(final PingResponse response) {
+        final String[] lines = response.getHoverLines();
+        final List<WrappedGameProfile> players = new ArrayList<>(lines.length);
+        for (final String line : lines) {
+            players.add(new WrappedGameProfile(DUMMY_UUID, line));
         }
-        ping.setPlayers(players);
+        return players;
     }
 
     @EventHandler(priority = EventPriority.HIGHEST)
     public void serverListPing(final ServerListPingEvent event) {
         // Set the icon here, not in the packet listener, as it's broken for 1.13+ clients on older server versions
-        if (settings.isMaintenance() && settings.hasCustomIcon() && plugin.getFavicon() != null) {
+        if (!settings.isMaintenance() || !settings.hasCustomIcon()) return;
+
+        final CachedServerIcon favicon = plugin.getFavicon();
+        if (favicon != null) {
             try {
-                event.setServerIcon(plugin.getFavicon());
+                event.setServerIcon(favicon);
             } catch (final UnsupportedOperationException ignored) {
                 // Thrown in a ping that has not been requested through a status packet, we can just ignore that case
             }
@@ -24,6 +24,7 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.server.ServerListPingEvent;
+import org.bukkit.util.CachedServerIcon;
 
 public final class ServerListPingListener implements Listener {
     private final MaintenanceSpigotPlugin plugin;
@@ -42,11 +43,14 @@ public final class ServerListPingListener implements Listener {
             event.setMaxPlayers(0);
         }
 
-        event.setMotd(settings.getRandomPingMessage());
+        event.setMotd(settings.getPingResponse().getMotd());
 
-        if (settings.hasCustomIcon() && plugin.getFavicon() != null) {
+        if (!settings.hasCustomIcon()) return;
+
+        final CachedServerIcon favicon = plugin.getFavicon();
+        if (favicon != null) {
             try {
-                event.setServerIcon(plugin.getFavicon());
+                event.setServerIcon(favicon);
             } catch (final UnsupportedOperationException ignored) {
                 // Thrown in a ping that has not been requested through a status packet, we can just ignore that case
             }
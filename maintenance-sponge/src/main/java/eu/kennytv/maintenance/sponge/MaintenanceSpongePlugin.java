@@ -20,11 +20,16 @@ package eu.kennytv.maintenance.sponge;
 
 import com.google.inject.Inject;
 import eu.kennytv.maintenance.api.IMaintenance;
+import eu.kennytv.maintenance.api.event.MaintenanceReloadedEvent;
+import eu.kennytv.maintenance.api.event.manager.EventListener;
 import eu.kennytv.maintenance.api.sponge.MaintenanceSpongeAPI;
 import eu.kennytv.maintenance.core.MaintenancePlugin;
 import eu.kennytv.maintenance.core.Settings;
 import eu.kennytv.maintenance.core.dump.PluginDump;
 import eu.kennytv.maintenance.core.hook.ServerListPlusHook;
+import eu.kennytv.maintenance.core.icon.FaviconRotation;
+import eu.kennytv.maintenance.core.icon.MaintenanceIcon;
+import eu.kennytv.maintenance.core.text.ComponentCache;
 import eu.kennytv.maintenance.core.util.MaintenanceVersion;
 import eu.kennytv.maintenance.core.util.SenderInfo;
 import eu.kennytv.maintenance.core.util.ServerType;
@@ -36,6 +41,7 @@ import eu.kennytv.maintenance.sponge.util.LoggerWrapper;
 import eu.kennytv.maintenance.sponge.util.SpongeOfflinePlayerInfo;
 import eu.kennytv.maintenance.sponge.util.SpongeSenderInfo;
 import eu.kennytv.maintenance.sponge.util.SpongeTask;
+import eu.kennytv.maintenance.sponge.util.TextUtil;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.api.Game;
 import org.spongepowered.api.Platform;
@@ -55,15 +61,14 @@ import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.service.user.UserStorageService;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.action.TextActions;
-import org.spongepowered.api.text.serializer.TextSerializers;
 
-import javax.imageio.ImageIO;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -80,7 +85,8 @@ import java.util.stream.Collectors;
         dependencies = @Dependency(id = "serverlistplus", optional = true))
 public final class MaintenanceSpongePlugin extends MaintenancePlugin {
     private Logger logger;
-    private Favicon favicon;
+    private final ComponentCache<Text> texts = new ComponentCache<>(TextUtil::toText);
+    private final FaviconRotation<Favicon> favicons = new FaviconRotation<>();
     @Inject private Game game;
     @Inject private PluginContainer container;
     @Inject @ConfigDir(sharedRoot = false)
@@ -95,8 +101,14 @@ public final class MaintenanceSpongePlugin extends MaintenancePlugin {
     public void onEnable(final GameInitializationEvent event) {
         logger = new LoggerWrapper(container.getLogger());
 
-        settings = new Settings(this, "mysql", "proxied-maintenance-servers", "fallback", "waiting-server",
+        settings = new Settings(this, "mysql", "proxied-maintenance-servers", "fallback", "waiting-server", "ping-guard", "server-pingmessages", "server-status", "sync",
                 "playercountmessage", "enable-playercountmessage");
+        eventManager.registerListener(new EventListener<MaintenanceReloadedEvent>() {
+            @Override
+            public void onEvent(final MaintenanceReloadedEvent event) {
+                texts.invalidate();
+            }
+        }, MaintenanceReloadedEvent.class);
 
         sendEnableMessage();
 
@@ -187,9 +199,10 @@ public final class MaintenanceSpongePlugin extends MaintenancePlugin {
 
     @Override
     protected void kickPlayers() {
+        final Text kickMessage = getText(settings.getKickMessage());
         for (final Player p : getServer().getOnlinePlayers()) {
             if (!hasPermission(p, "bypass") && !settings.isWhitelisted(p.getUniqueId())) {
-                p.kick(Text.of(settings.getKickMessage()));
+                p.kick(kickMessage);
             }
         }
     }
@@ -242,8 +255,12 @@ public final class MaintenanceSpongePlugin extends MaintenancePlugin {
     }
 
     @Override
-    protected void loadIcon(final File file) throws IOException {
-        favicon = game.getRegistry().loadFavicon(ImageIO.read(file));
+    protected void loadIcons(final List<MaintenanceIcon> icons) throws IOException {
+        final List<Favicon> list = new ArrayList<>(icons.size());
+        for (final MaintenanceIcon icon : icons) {
+            list.add(game.getRegistry().loadFavicon(icon.getEncoded()));
+        }
+        favicons.set(list);
     }
 
     public boolean hasPermission(final CommandSource sender, final String permission) {
@@ -254,11 +271,23 @@ public final class MaintenanceSpongePlugin extends MaintenancePlugin {
         return game.getServer();
     }
 
+    @Nullable
     public Favicon getFavicon() {
-        return favicon;
+        return favicons.next();
     }
 
     public Text translate(final String s) {
-        return TextSerializers.LEGACY_FORMATTING_CODE.deserialize(s);
+        return TextUtil.fromLegacy(s);
+    }
+
+    /**
+     * Same as {@link #translate(String)}, but caches the text until the next reload.
+     * Should only be used for messages that are sent often and rarely change, like kick messages.
+     *
+     * @param s legacy message
+     * @return cached text
+     */
+    public Text getText(final String s) {
+        return texts.get(s);
     }
 }
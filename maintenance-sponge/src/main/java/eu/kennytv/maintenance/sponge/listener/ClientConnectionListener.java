@@ -41,7 +41,7 @@ public final class ClientConnectionListener extends JoinListenerBase {
         final Player player = event.getTargetUser().getPlayer().get();
         if (shouldKick(new SpongeSenderInfo(player), false)) {
             event.setCancelled(true);
-            event.setMessage(Text.of(settings.getKickMessage()));
+            event.setMessage(plugin.getText(settings.getKickMessage()));
             if (settings.isJoinNotifications()) {
                 broadcastJoinNotification(player.getName());
             }
@@ -55,7 +55,7 @@ public final class ClientConnectionListener extends JoinListenerBase {
 
     @Override
     protected void broadcastJoinNotification(final String name) {
-        final Text text = plugin.translate(settings.getMessage("joinNotification").replace("%PLAYER%", name));
+        final Text text = plugin.translate(settings.getJoinNotification(name));
         for (final Player p : Sponge.getServer().getOnlinePlayers()) {
             if (plugin.hasPermission(p, "joinnotification")) {
                 p.sendMessage(text);
@@ -18,19 +18,22 @@
 
 package eu.kennytv.maintenance.sponge.listener;
 
+import eu.kennytv.maintenance.core.PingResponse;
 import eu.kennytv.maintenance.core.Settings;
 import eu.kennytv.maintenance.sponge.MaintenanceSpongePlugin;
+import eu.kennytv.maintenance.sponge.util.TextUtil;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.Order;
 import org.spongepowered.api.event.server.ClientPingServerEvent;
+import org.spongepowered.api.network.status.Favicon;
 import org.spongepowered.api.profile.GameProfile;
-import org.spongepowered.api.text.Text;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
 public final class ClientPingServerListener {
-    private final UUID uuid = new UUID(0, 0);
+    private static final UUID DUMMY_UUID = new UUID(0, 0);
     private final MaintenanceSpongePlugin plugin;
     private final Settings settings;
 
@@ -50,17 +53,28 @@ public final class ClientPingServerListener {
             response.getPlayers().ifPresent(players -> players.setMax(0));
         }
 
-        response.setDescription(Text.of(settings.getRandomPingMessage()));
+        final PingResponse pingResponse = settings.getPingResponse();
+        response.setDescription(pingResponse.getMotd(TextUtil::fromLegacy));
         response.getPlayers().ifPresent(players -> {
             final List<GameProfile> profiles = players.getProfiles();
             profiles.clear();
-            for (final String string : settings.getPlayerCountHoverMessage().split("\n")) {
-                profiles.add(GameProfile.of(uuid, string));
-            }
+            profiles.addAll(pingResponse.getPlatformData(ClientPingServerListener::createProfiles));
         });
 
-        if (settings.hasCustomIcon() && plugin.getFavicon() != null) {
-            response.setFavicon(plugin.getFavicon());
+        if (settings.hasCustomIcon()) {
+            final Favicon favicon = plugin.getFavicon();
+            if (favicon != null) {
+                response.setFavicon(favicon);
+            }
+        }
+    }
+
+    private static List<GameProfile> createProfiles(final PingResponse response) {
+        final String[] lines = response.getHoverLines();
+        final List<GameProfile> profiles = new ArrayList<>(lines.length);
+        for (final String line : lines) {
+            profiles.add(GameProfile.of(DUMMY_UUID, line));
         }
+        return profiles;
     }
 }
@@ -22,7 +22,6 @@ import eu.kennytv.maintenance.core.util.SenderInfo;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.text.Text;
-import org.spongepowered.api.text.serializer.TextSerializers;
 
 import java.util.UUID;
 
@@ -50,7 +49,7 @@ public final class SpongeSenderInfo implements SenderInfo {
 
     @Override
     public void sendMessage(final String message) {
-        sender.sendMessage(TextSerializers.LEGACY_FORMATTING_CODE.deserialize(message));
+        sender.sendMessage(TextUtil.fromLegacy(message));
     }
 
     @Override
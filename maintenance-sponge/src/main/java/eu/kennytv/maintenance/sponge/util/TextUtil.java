@@ -0,0 +1,89 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.sponge.util;
+
+import eu.kennytv.maintenance.core.text.RichText;
+import eu.kennytv.maintenance.core.text.TextSegment;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColor;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.text.format.TextStyle;
+import org.spongepowered.api.text.format.TextStyles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class TextUtil {
+    private static final String COLOR_CODES = "0123456789abcdef";
+    private static final TextColor[] COLORS = {
+            TextColors.BLACK, TextColors.DARK_BLUE, TextColors.DARK_GREEN, TextColors.DARK_AQUA,
+            TextColors.DARK_RED, TextColors.DARK_PURPLE, TextColors.GOLD, TextColors.GRAY,
+            TextColors.DARK_GRAY, TextColors.BLUE, TextColors.GREEN, TextColors.AQUA,
+            TextColors.RED, TextColors.LIGHT_PURPLE, TextColors.YELLOW, TextColors.WHITE
+    };
+
+    private TextUtil() {
+    }
+
+    /**
+     * @param legacy message with § color codes, hex colors and gradients
+     * @return text of the message
+     */
+    public static Text fromLegacy(final String legacy) {
+        return toText(RichText.parse(legacy));
+    }
+
+    /**
+     * Converts the parsed message into a text, hex colors are replaced with the nearest legacy color.
+     *
+     * @param text parsed message
+     * @return text of the message
+     */
+    public static Text toText(final RichText text) {
+        final Text.Builder builder = Text.builder();
+        for (final TextSegment segment : text.getSegments()) {
+            final Text.Builder child = Text.builder(segment.getText());
+            if (segment.hasColor()) {
+                child.color(COLORS[COLOR_CODES.indexOf(segment.getLegacyColor())]);
+            }
+
+            final List<TextStyle> styles = new ArrayList<>();
+            if (segment.hasDecoration(TextSegment.BOLD)) {
+                styles.add(TextStyles.BOLD);
+            }
+            if (segment.hasDecoration(TextSegment.ITALIC)) {
+                styles.add(TextStyles.ITALIC);
+            }
+            if (segment.hasDecoration(TextSegment.UNDERLINED)) {
+                styles.add(TextStyles.UNDERLINE);
+            }
+            if (segment.hasDecoration(TextSegment.STRIKETHROUGH)) {
+                styles.add(TextStyles.STRIKETHROUGH);
+            }
+            if (segment.hasDecoration(TextSegment.OBFUSCATED)) {
+                styles.add(TextStyles.OBFUSCATED);
+            }
+            if (!styles.isEmpty()) {
+                child.style(styles.toArray(new TextStyle[0]));
+            }
+            builder.append(child.build());
+        }
+        return builder.build();
+    }
+}
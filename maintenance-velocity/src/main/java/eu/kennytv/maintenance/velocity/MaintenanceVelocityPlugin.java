@@ -33,12 +33,18 @@ import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerPing;
 import com.velocitypowered.api.util.Favicon;
+import eu.kennytv.maintenance.api.event.MaintenanceReloadedEvent;
+import eu.kennytv.maintenance.api.event.manager.EventListener;
 import eu.kennytv.maintenance.api.proxy.Server;
 import eu.kennytv.maintenance.core.dump.PluginDump;
 import eu.kennytv.maintenance.core.hook.ServerListPlusHook;
+import eu.kennytv.maintenance.core.icon.FaviconRotation;
+import eu.kennytv.maintenance.core.icon.MaintenanceIcon;
 import eu.kennytv.maintenance.core.proxy.MaintenanceProxyPlugin;
 import eu.kennytv.maintenance.core.proxy.SettingsProxy;
+import eu.kennytv.maintenance.core.text.ComponentCache;
 import eu.kennytv.maintenance.core.util.MaintenanceVersion;
 import eu.kennytv.maintenance.core.util.SenderInfo;
 import eu.kennytv.maintenance.core.util.ServerType;
@@ -46,6 +52,7 @@ import eu.kennytv.maintenance.core.util.Task;
 import eu.kennytv.maintenance.velocity.command.MaintenanceVelocityCommand;
 import eu.kennytv.maintenance.velocity.listener.ProxyPingListener;
 import eu.kennytv.maintenance.velocity.listener.ServerConnectListener;
+import eu.kennytv.maintenance.velocity.util.ComponentUtil;
 import eu.kennytv.maintenance.velocity.util.LoggerWrapper;
 import eu.kennytv.maintenance.velocity.util.VelocitySenderInfo;
 import eu.kennytv.maintenance.velocity.util.VelocityServer;
@@ -53,17 +60,21 @@ import eu.kennytv.maintenance.velocity.util.VelocityTask;
 import net.kyori.adventure.text.TextComponent;
 import net.kyori.adventure.text.event.ClickEvent;
 import net.kyori.adventure.text.event.HoverEvent;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import org.jetbrains.annotations.Nullable;
 
-import javax.imageio.ImageIO;
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -79,7 +90,9 @@ public final class MaintenanceVelocityPlugin extends MaintenanceProxyPlugin {
     private final ProxyServer server;
     private final Logger logger;
     private final File dataFolder;
-    private Favicon favicon;
+    private final ComponentCache<TextComponent> componentCache = new ComponentCache<>(ComponentUtil::toComponent);
+    private final FaviconRotation<Favicon> favicons = new FaviconRotation<>();
+    private volatile Map<String, Favicon> serverFavicons = Collections.emptyMap();
 
     @Inject
     public MaintenanceVelocityPlugin(final ProxyServer server, final org.slf4j.Logger logger, @DataDirectory final Path folder) {
@@ -93,6 +106,12 @@ public final class MaintenanceVelocityPlugin extends MaintenanceProxyPlugin {
     public void onEnable(final ProxyInitializeEvent event) {
         settingsProxy = new SettingsProxy(this);
         settings = settingsProxy;
+        eventManager.registerListener(new EventListener<MaintenanceReloadedEvent>() {
+            @Override
+            public void onEvent(final MaintenanceReloadedEvent event) {
+                componentCache.invalidate();
+            }
+        }, MaintenanceReloadedEvent.class);
 
         sendEnableMessage();
 
@@ -145,9 +164,10 @@ public final class MaintenanceVelocityPlugin extends MaintenanceProxyPlugin {
 
     @Override
     protected void kickPlayersFromProxy() {
+        final TextComponent kickMessage = getComponent(settingsProxy.getKickMessage());
         for (final Player p : server.getAllPlayers()) {
             if (!hasPermission(p, "bypass") && !settingsProxy.isWhitelisted(p.getUniqueId())) {
-                p.disconnect(translate(settingsProxy.getKickMessage()));
+                p.disconnect(kickMessage);
             }
         }
     }
@@ -156,20 +176,22 @@ public final class MaintenanceVelocityPlugin extends MaintenanceProxyPlugin {
     protected void kickPlayers(final Server server, final Server fallback) {
         final RegisteredServer fallbackServer = fallback != null ? ((VelocityServer) fallback).getServer() : null;
         final boolean checkForFallback = fallbackServer != null && !isMaintenance(fallback);
+        final TextComponent activatedMessage = translate(settingsProxy.getMessage("singleMaintenanceActivated").replace("%SERVER%", server.getName()));
+        final TextComponent kickMessage = getComponent(settingsProxy.getFullServerKickMessage(server.getName()));
         for (final Player player : ((VelocityServer) server).getServer().getPlayersConnected()) {
             if (!hasPermission(player, "bypass") && !settingsProxy.isWhitelisted(player.getUniqueId())) {
                 if (checkForFallback) {
-                    player.sendMessage(translate(settingsProxy.getMessage("singleMaintenanceActivated").replace("%SERVER%", server.getName())));
+                    player.sendMessage(activatedMessage);
                     // Kick the player if fallback server is not reachable
                     player.createConnectionRequest(fallbackServer).connect().whenComplete((result, e) -> {
                         if (!result.isSuccessful()) {
-                            player.disconnect(translate(settingsProxy.getFullServerKickMessage(server.getName())));
+                            player.disconnect(kickMessage);
                         }
                     });
                 } else
-                    player.disconnect(translate(settingsProxy.getFullServerKickMessage(server.getName())));
+                    player.disconnect(kickMessage);
             } else {
-                player.sendMessage(translate(settingsProxy.getMessage("singleMaintenanceActivated").replace("%SERVER%", server.getName())));
+                player.sendMessage(activatedMessage);
             }
         }
     }
@@ -178,6 +200,8 @@ public final class MaintenanceVelocityPlugin extends MaintenanceProxyPlugin {
     protected void kickPlayersTo(final Server server) {
         final RegisteredServer waitingServer = ((VelocityServer) server).getServer();
         // Notifications done in global method
+        final TextComponent sentMessage = translate(settingsProxy.getMessage("sentToWaitingServer").replace("%SERVER%", server.getName()));
+        final TextComponent kickMessage = getComponent(settingsProxy.getKickMessage());
         for (final Player player : this.server.getAllPlayers()) {
             if (hasPermission(player, "bypass") || settingsProxy.isWhitelisted(player.getUniqueId())) continue;
             if (player.getCurrentServer().isPresent() && player.getCurrentServer().get().getServerInfo().getName().equals(waitingServer.getServerInfo().getName()))
@@ -185,13 +209,13 @@ public final class MaintenanceVelocityPlugin extends MaintenanceProxyPlugin {
             if (!isMaintenance(waitingServer)) {
                 player.createConnectionRequest(waitingServer).connect().whenComplete((result, e) -> {
                     if (result.isSuccessful()) {
-                        player.sendMessage(translate(settingsProxy.getMessage("sentToWaitingServer").replace("%SERVER%", server.getName())));
+                        player.sendMessage(sentMessage);
                     } else {
-                        player.disconnect(translate(settingsProxy.getKickMessage()));
+                        player.disconnect(kickMessage);
                     }
                 });
             } else {
-                player.disconnect(translate(settingsProxy.getKickMessage()));
+                player.disconnect(kickMessage);
             }
         }
     }
@@ -201,6 +225,27 @@ public final class MaintenanceVelocityPlugin extends MaintenanceProxyPlugin {
         return new VelocityTask(server.getScheduler().buildTask(this, runnable).repeat(1, TimeUnit.SECONDS).schedule());
     }
 
+    @Override
+    public Collection<String> getServerNames() {
+        return server.getAllServers().stream().map(registeredServer -> registeredServer.getServerInfo().getName()).collect(Collectors.toList());
+    }
+
+    @Override
+    protected CompletableFuture<Integer> pingServer(final String serverName) {
+        final Optional<RegisteredServer> registeredServer = server.getServer(serverName);
+        if (!registeredServer.isPresent()) {
+            final CompletableFuture<Integer> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalArgumentException("Unknown server " + serverName));
+            return future;
+        }
+        return registeredServer.get().ping().thenApply(ping -> ping.getPlayers().map(ServerPing.Players::getOnline).orElse(0));
+    }
+
+    @Override
+    public Task scheduleAsyncRepeatingTask(final Runnable runnable, final long interval, final TimeUnit unit) {
+        return new VelocityTask(server.getScheduler().buildTask(this, runnable).repeat(interval, unit).schedule());
+    }
+
     @Override
     @Nullable
     public Server getServer(final String server) {
@@ -290,8 +335,33 @@ public final class MaintenanceVelocityPlugin extends MaintenanceProxyPlugin {
     }
 
     @Override
-    protected void loadIcon(final File file) throws IOException {
-        favicon = Favicon.create(ImageIO.read(file));
+    protected void loadIcons(final List<MaintenanceIcon> icons) {
+        final List<Favicon> list = new ArrayList<>(icons.size());
+        for (final MaintenanceIcon icon : icons) {
+            list.add(new Favicon(icon.getEncoded()));
+        }
+        favicons.set(list);
+    }
+
+    @Override
+    protected void loadServerIcons(final Map<String, MaintenanceIcon> icons) {
+        final Map<String, Favicon> map = new HashMap<>();
+        for (final Map.Entry<String, MaintenanceIcon> entry : icons.entrySet()) {
+            map.put(entry.getKey(), new Favicon(entry.getValue().getEncoded()));
+        }
+        serverFavicons = map;
+    }
+
+    @Override
+    protected Map<String, String> loadForcedHosts() {
+        final Map<String, String> forcedHosts = new HashMap<>();
+        for (final Map.Entry<String, List<String>> entry : server.getConfiguration().getForcedHosts().entrySet()) {
+            // Only the first server is tried by default
+            if (!entry.getValue().isEmpty()) {
+                forcedHosts.put(entry.getKey().toLowerCase(Locale.ROOT), entry.getValue().get(0));
+            }
+        }
+        return forcedHosts;
     }
 
     public boolean hasPermission(final CommandSource sender, final String permission) {
@@ -302,11 +372,33 @@ public final class MaintenanceVelocityPlugin extends MaintenanceProxyPlugin {
         return server;
     }
 
-    public Favicon getFavicon() {
-        return favicon;
+    /**
+     * @param server proxied server the ping is for, or null
+     * @return the server's own favicon if set, otherwise the next maintenance favicon
+     */
+    @Nullable
+    public Favicon getFavicon(@Nullable final String server) {
+        if (server != null) {
+            final Favicon favicon = serverFavicons.get(server);
+            if (favicon != null) {
+                return favicon;
+            }
+        }
+        return favicons.next();
     }
 
     public TextComponent translate(final String s) {
-        return LegacyComponentSerializer.legacySection().deserialize(s);
+        return ComponentUtil.fromLegacy(s);
+    }
+
+    /**
+     * Same as {@link #translate(String)}, but caches the component until the next reload.
+     * Should only be used for messages that are sent often and rarely change, like motds or kick messages.
+     *
+     * @param s legacy message
+     * @return cached component
+     */
+    public TextComponent getComponent(final String s) {
+        return componentCache.get(s);
     }
 }
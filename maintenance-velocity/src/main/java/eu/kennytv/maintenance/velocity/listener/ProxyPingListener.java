@@ -21,15 +21,21 @@ package eu.kennytv.maintenance.velocity.listener;
 import com.velocitypowered.api.event.EventHandler;
 import com.velocitypowered.api.event.proxy.ProxyPingEvent;
 import com.velocitypowered.api.proxy.server.ServerPing;
+import com.velocitypowered.api.util.Favicon;
+import eu.kennytv.maintenance.core.PingResponse;
 import eu.kennytv.maintenance.core.proxy.SettingsProxy;
+import eu.kennytv.maintenance.core.proxy.util.PingGuard;
 import eu.kennytv.maintenance.velocity.MaintenanceVelocityPlugin;
 
+import java.net.InetSocketAddress;
 import java.util.UUID;
 
 public final class ProxyPingListener implements EventHandler<ProxyPingEvent> {
+    private static final UUID DUMMY_UUID = new UUID(0, 0);
     private final MaintenanceVelocityPlugin plugin;
     private final SettingsProxy settings;
-    private final UUID uuid = new UUID(0, 0);
+    // Only the maintenance fields, applied to the ping of each limited client
+    private volatile PingResponse lastResponse;
 
     public ProxyPingListener(final MaintenanceVelocityPlugin plugin, final SettingsProxy settings) {
         this.plugin = plugin;
@@ -38,29 +44,50 @@ public final class ProxyPingListener implements EventHandler<ProxyPingEvent> {
 
     @Override
     public void execute(final ProxyPingEvent event) {
-        if (!settings.isMaintenance() || !settings.isEnablePingMessages()) return;
+        final PingGuard pingGuard = settings.getPingGuard();
+        if (pingGuard != null && !pingGuard.tryAcquire(event.getConnection().getRemoteAddress().getAddress())) {
+            // Pings can't be dropped on Velocity
+            final PingResponse lastResponse = this.lastResponse;
+            if (lastResponse != null) {
+                applyResponse(event, lastResponse);
+            }
+            return;
+        }
 
-        final ServerPing ping = event.getPing();
-        final ServerPing.Builder builder = ping.asBuilder();
-        if (settings.hasCustomPlayerCountMessage()) {
-            builder.version(new ServerPing.Version(1, settings.getPlayerCountMessage()
-                    .replace("%ONLINE%", Integer.toString(builder.getMaximumPlayers()))
-                    .replace("%MAX%", Integer.toString(builder.getOnlinePlayers()))));
+        final PingResponse response = plugin.getPingResponse(event.getConnection().getVirtualHost().map(InetSocketAddress::getHostString).orElse(null));
+        if (pingGuard != null) {
+            lastResponse = response;
+        }
+        if (response != null) {
+            applyResponse(event, response);
         }
+    }
 
-        final String[] split = settings.getPlayerCountHoverMessage().split("\n");
-        final ServerPing.SamplePlayer[] samplePlayers = new ServerPing.SamplePlayer[split.length];
-        for (int i = 0; i < split.length; i++) {
-            samplePlayers[i] = new ServerPing.SamplePlayer(split[i], uuid);
+    private void applyResponse(final ProxyPingEvent event, final PingResponse response) {
+        final ServerPing.Builder builder = event.getPing().asBuilder();
+        if (response.getVersionName() != null) {
+            builder.version(new ServerPing.Version(1, response.getVersionName()));
         }
 
-        builder.description(plugin.translate(settings.getRandomPingMessage()))
-                .samplePlayers(samplePlayers);
+        builder.description(response.getMotd(plugin::translate))
+                .samplePlayers(response.getPlatformData(ProxyPingListener::createSamplePlayers));
 
-        if (settings.hasCustomIcon() && plugin.getFavicon() != null) {
-            builder.favicon(plugin.getFavicon());
+        if (settings.hasCustomIcon()) {
+            final Favicon favicon = plugin.getFavicon(response.getServer());
+            if (favicon != null) {
+                builder.favicon(favicon);
+            }
         }
 
         event.setPing(builder.build());
     }
+
+    private static ServerPing.SamplePlayer[] createSamplePlayers(final PingResponse response) {
+        final String[] lines = response.getHoverLines();
+        final ServerPing.SamplePlayer[] samplePlayers = new ServerPing.SamplePlayer[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            samplePlayers[i] = new ServerPing.SamplePlayer(lines[i], DUMMY_UUID);
+        }
+        return samplePlayers;
+    }
 }
@@ -55,7 +55,7 @@ public final class ServerConnectListener extends ProxyJoinListenerBase {
             // Do the actual connecting in the ServerPreConnectEvent handler if a waiting server exists
             if (waitingServer != null) return;
 
-            event.setResult(ResultedEvent.ComponentResult.denied(plugin.translate(settings.getKickMessage())));
+            event.setResult(ResultedEvent.ComponentResult.denied(plugin.getComponent(settings.getKickMessage())));
             if (settings.isJoinNotifications()) {
                 broadcastJoinNotification(event.getPlayer().getUsername());
             }
@@ -82,7 +82,7 @@ public final class ServerConnectListener extends ProxyJoinListenerBase {
 
             // Player has no server to connect to
             if (!hasCurrentServer) {
-                player.disconnect(plugin.translate(settings.getKickMessage()));
+                player.disconnect(plugin.getComponent(settings.getKickMessage()));
             }
         } else if (connectResult.getTarget() != null) {
             final RegisteredServer newTarget = ((VelocityServer) connectResult.getTarget()).getServer();
@@ -101,7 +101,7 @@ public final class ServerConnectListener extends ProxyJoinListenerBase {
     }
 
     private void sendJoinMessage(final Iterable<Player> players, final String name) {
-        final TextComponent message = plugin.translate(settings.getMessage("joinNotification").replace("%PLAYER%", name));
+        final TextComponent message = plugin.translate(settings.getJoinNotification(name));
         for (final Player player : players) {
             if (plugin.hasPermission(player, "joinnotification")) {
                 player.sendMessage(message);
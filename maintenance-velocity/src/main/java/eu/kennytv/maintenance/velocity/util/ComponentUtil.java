@@ -0,0 +1,65 @@
+/*
+ * Maintenance - https://git.io/maintenancemode
+ * Copyright (C) 2018-2021 KennyTV (https://github.com/KennyTV)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package eu.kennytv.maintenance.velocity.util;
+
+import eu.kennytv.maintenance.core.text.RichText;
+import eu.kennytv.maintenance.core.text.TextSegment;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextColor;
+import net.kyori.adventure.text.format.TextDecoration;
+
+public final class ComponentUtil {
+
+    private ComponentUtil() {
+    }
+
+    /**
+     * @param legacy message with § color codes, hex colors and gradients
+     * @return component of the message
+     */
+    public static TextComponent fromLegacy(final String legacy) {
+        return toComponent(RichText.parse(legacy));
+    }
+
+    public static TextComponent toComponent(final RichText text) {
+        final TextComponent.Builder builder = Component.text();
+        for (final TextSegment segment : text.getSegments()) {
+            final TextComponent.Builder child = Component.text().content(segment.getText());
+            if (segment.hasColor()) {
+                final NamedTextColor namedColor = segment.isLegacyColor() ? NamedTextColor.ofExact(segment.getColor()) : null;
+                child.color(namedColor != null ? namedColor : TextColor.color(segment.getColor()));
+            }
+            decorate(child, segment, TextSegment.BOLD, TextDecoration.BOLD);
+            decorate(child, segment, TextSegment.ITALIC, TextDecoration.ITALIC);
+            decorate(child, segment, TextSegment.UNDERLINED, TextDecoration.UNDERLINED);
+            decorate(child, segment, TextSegment.STRIKETHROUGH, TextDecoration.STRIKETHROUGH);
+            decorate(child, segment, TextSegment.OBFUSCATED, TextDecoration.OBFUSCATED);
+            builder.append(child);
+        }
+        return builder.build();
+    }
+
+    private static void decorate(final TextComponent.Builder builder, final TextSegment segment, final int decoration, final TextDecoration textDecoration) {
+        if (segment.hasDecoration(decoration)) {
+            builder.decoration(textDecoration, true);
+        }
+    }
+}
@@ -23,7 +23,6 @@ import com.velocitypowered.api.proxy.Player;
 import eu.kennytv.maintenance.api.proxy.Server;
 import eu.kennytv.maintenance.core.proxy.util.ProxySenderInfo;
 import net.kyori.adventure.text.TextComponent;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 
 import java.util.UUID;
 
@@ -51,7 +50,7 @@ public final class VelocitySenderInfo implements ProxySenderInfo {
 
     @Override
     public void sendMessage(final String message) {
-        sender.sendMessage(fromLegacy(message));
+        sender.sendMessage(ComponentUtil.fromLegacy(message));
     }
 
     @Override
@@ -71,11 +70,7 @@ public final class VelocitySenderInfo implements ProxySenderInfo {
     @Override
     public void disconnect(final String message) {
         if (sender instanceof Player) {
-            ((Player) sender).disconnect(fromLegacy(message));
+            ((Player) sender).disconnect(ComponentUtil.fromLegacy(message));
         }
     }
-
-    private TextComponent fromLegacy(final String s) {
-        return LegacyComponentSerializer.legacySection().deserialize(s);
-    }
 }
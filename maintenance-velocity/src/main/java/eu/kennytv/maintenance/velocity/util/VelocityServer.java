@@ -22,7 +22,6 @@ import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
 import eu.kennytv.maintenance.api.proxy.Server;
 import net.kyori.adventure.text.TextComponent;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 
 public final class VelocityServer implements Server {
     private final RegisteredServer server;
@@ -43,7 +42,7 @@ public final class VelocityServer implements Server {
 
     @Override
     public void broadcast(final String message) {
-        final TextComponent s = LegacyComponentSerializer.legacySection().deserialize(message);
+        final TextComponent s = ComponentUtil.fromLegacy(message);
         for (final Player p : server.getPlayersConnected()) {
             p.sendMessage(s);
         }